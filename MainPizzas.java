@@ -1,25 +1,58 @@
 import java.io.IOException;
+import pizzas.Pizzaiolo;
+import web.ServeurPizzeria;
 
 /**
- * Classe d'essai de fonctionnement de l'application.
+ * Classe d'essai de fonctionnement de l'application. Elle démarre une
+ * pizzeria, vide ou chargée depuis une sauvegarde, et l'expose par HTTP
+ * jusqu'à ce que l'on appuie sur Entrée.
  *
  * @author Eric Cariou
  *
  */
 public class MainPizzas {
-  
+
+  /** Port d'écoute utilisé si aucun n'est précisé. */
+  private static final int PORT_PAR_DEFAUT = 8080;
+
   /**
    * Si le main() s'exécute, c'est que le projet est fonctionnel.
    *
-   * @param args inutiles ici.
+   * @param args le port d'écoute du serveur HTTP (optionnel, 8080 par
+   *        défaut), puis le fichier de sauvegarde à charger (optionnel).
    */
   public static void main(String[] args) {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT_PAR_DEFAUT;
+    Pizzaiolo pizzaiolo = new Pizzaiolo();
+    if (args.length > 1) {
+      try {
+        pizzaiolo.chargerDonnees(args[1]);
+      } catch (IOException e) {
+        System.err.println("Impossible de charger " + args[1] + " : " + e);
+        return;
+      }
+      System.out.println("Chargement : " + pizzaiolo.getRapportChargement());
+      pizzaiolo.getRapportChargement().fin().whenComplete((rapport, erreur) ->
+          System.out.println(erreur == null ? "Historique chargé : " + rapport
+              : "Historique non chargé : " + erreur));
+    }
+    ServeurPizzeria serveur;
+    try {
+      serveur = new ServeurPizzeria(pizzaiolo, port);
+    } catch (IOException e) {
+      System.err.println("Impossible d'ouvrir le port " + port + " : " + e);
+      return;
+    }
+    serveur.demarrer();
+    System.out.println("Pizzeria à l'écoute sur http://localhost:" + serveur.getPort());
+
     System.out.println("\nAppuyez sur Entrée pour terminer le programme ...");
     try {
       System.in.read();
     } catch (IOException e) {
       System.err.println("Vous avez réussi à casser le clavier : " + e);
     }
+    serveur.arreter();
     System.out.println("... terminé");
   }
 }
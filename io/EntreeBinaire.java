@@ -0,0 +1,224 @@
+package io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lecture des valeurs écrites par une {@link SortieBinaire} dans un fichier
+ * ou un autre canal, à travers un tampon direct.
+ */
+public class EntreeBinaire implements Closeable {
+
+    /** Canal lu, ou {@code null} si toutes les données sont dans le tampon. */
+    private final ReadableByteChannel canal;
+
+    /** Tampon des octets lus mais pas encore consommés. */
+    private final ByteBuffer tampon;
+
+    /**
+     * Ouvre un fichier en lecture.
+     *
+     * @param fichier le fichier à lire
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    public EntreeBinaire(Path fichier) throws IOException {
+        this(FileChannel.open(fichier, StandardOpenOption.READ));
+    }
+
+    /**
+     * Lit un canal à partir de sa position courante.
+     *
+     * @param canal le canal à lire, fermé avec l'entrée
+     */
+    public EntreeBinaire(ReadableByteChannel canal) {
+        this(canal, SortieBinaire.TAILLE_TAMPON);
+    }
+
+    /**
+     * Lit un canal à travers un tampon de taille donnée.
+     *
+     * @param canal  le canal à lire, fermé avec l'entrée
+     * @param taille la taille du tampon, au moins 16 octets
+     */
+    public EntreeBinaire(ReadableByteChannel canal, int taille) {
+        this.canal = canal;
+        this.tampon = ByteBuffer.allocateDirect(taille);
+        tampon.flip();
+    }
+
+    /**
+     * Lit des données déjà en mémoire, de la position à la limite d'un
+     * tampon.
+     *
+     * @param donnees le tampon des données, lu sans être copié
+     */
+    public EntreeBinaire(ByteBuffer donnees) {
+        this.canal = null;
+        this.tampon = donnees;
+    }
+
+    /**
+     * Garantit la présence de quelques octets dans le tampon, en lisant la
+     * suite du canal si besoin.
+     *
+     * @param taille le nombre d'octets nécessaires (au plus la taille du tampon)
+     * @throws EOFException si le fichier se termine avant
+     * @throws IOException  en cas d'erreur de lecture
+     */
+    private void exiger(int taille) throws IOException {
+        if (tampon.remaining() >= taille) {
+            return;
+        }
+        if (canal == null) {
+            throw new EOFException("Fin des données inattendue.");
+        }
+        tampon.compact();
+        while (tampon.position() < taille) {
+            if (canal.read(tampon) < 0) {
+                throw new EOFException("Fin de fichier inattendue.");
+            }
+        }
+        tampon.flip();
+    }
+
+    /**
+     * Indique si toutes les données du fichier ont été lues.
+     *
+     * @return {@code true} si le fichier est entièrement lu
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public boolean termine() throws IOException {
+        if (tampon.hasRemaining()) {
+            return false;
+        }
+        if (canal == null) {
+            return true;
+        }
+        tampon.clear();
+        int lus = canal.read(tampon);
+        tampon.flip();
+        return lus < 0;
+    }
+
+    /**
+     * Lit un octet non signé.
+     *
+     * @return l'octet, entre 0 et 255
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public int lireOctet() throws IOException {
+        exiger(Byte.BYTES);
+        return tampon.get() & 0xFF;
+    }
+
+    /**
+     * Lit un entier sur 4 octets.
+     *
+     * @return l'entier
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public int lireEntier() throws IOException {
+        exiger(Integer.BYTES);
+        return tampon.getInt();
+    }
+
+    /**
+     * Lit un entier long sur 8 octets.
+     *
+     * @return l'entier long
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public long lireLong() throws IOException {
+        exiger(Long.BYTES);
+        return tampon.getLong();
+    }
+
+    /**
+     * Lit un entier long écrit par {@link SortieBinaire#ecrireVariable(long)}.
+     *
+     * @return l'entier long
+     * @throws IOException en cas d'erreur de lecture ou de valeur invalide
+     */
+    public long lireVariable() throws IOException {
+        long valeur = 0;
+        for (int decalage = 0; decalage < 64; decalage += 7) {
+            exiger(1);
+            byte octet = tampon.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if (octet >= 0) {
+                return valeur;
+            }
+        }
+        throw new IOException("Entier de taille variable invalide.");
+    }
+
+    /**
+     * Lit un entier de taille variable compris entre 0 et
+     * {@link Integer#MAX_VALUE}.
+     *
+     * @return l'entier
+     * @throws IOException en cas d'erreur de lecture ou de valeur hors bornes
+     */
+    public int lireTaille() throws IOException {
+        long valeur = lireVariable();
+        if (valeur < 0 || valeur > Integer.MAX_VALUE) {
+            throw new IOException("Taille invalide : " + valeur);
+        }
+        return (int) valeur;
+    }
+
+    /**
+     * Lit un réel sur 8 octets.
+     *
+     * @return le réel
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public double lireReel() throws IOException {
+        exiger(Double.BYTES);
+        return tampon.getDouble();
+    }
+
+    /**
+     * Lit une chaîne, éventuellement nulle.
+     *
+     * @return la chaîne ou {@code null}
+     * @throws IOException en cas d'erreur de lecture ou de longueur invalide
+     */
+    public String lireTexte() throws IOException {
+        int longueur = lireEntier();
+        if (longueur == -1) {
+            return null;
+        }
+        if (longueur < 0) {
+            throw new IOException("Longueur de chaîne invalide : " + longueur);
+        }
+        byte[] octets = new byte[longueur];
+        int lus = 0;
+        while (lus < longueur) {
+            exiger(1);
+            int n = Math.min(tampon.remaining(), longueur - lus);
+            tampon.get(octets, lus, n);
+            lus += n;
+        }
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ferme le canal.
+     *
+     * @throws IOException en cas d'erreur de fermeture
+     */
+    @Override
+    public void close() throws IOException {
+        if (canal != null) {
+            canal.close();
+        }
+    }
+}
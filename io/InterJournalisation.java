@@ -0,0 +1,33 @@
+package io;
+
+import java.io.IOException;
+
+/**
+ * Définit les méthodes permettant de consigner chaque modification des
+ * données de l'application dans un journal, pour les retrouver après un arrêt
+ * brutal : l'état est reconstruit en chargeant la dernière sauvegarde puis en
+ * rejouant le journal.
+ */
+public interface InterJournalisation {
+
+  /**
+   * Ouvre le journal des modifications, en le créant s'il n'existe pas. Les
+   * modifications qu'il contient sont d'abord rejouées, puis chaque
+   * modification suivante y est ajoutée. Une sauvegarde complète vide le
+   * journal. Pour reprendre après un arrêt, la dernière sauvegarde doit être
+   * chargée avant l'ouverture du journal.
+   *
+   * @param nomFichier le fichier du journal
+   * @param politique  la politique de synchronisation du journal avec le disque
+   * @throws IOException en cas de problème de lecture ou d'écriture du journal
+   */
+  void ouvrirJournal(String nomFichier, Journal.Synchronisation politique) throws IOException;
+
+  /**
+   * Écrit les dernières modifications dans le journal et le ferme. Les
+   * modifications suivantes ne sont plus journalisées.
+   *
+   * @throws IOException en cas de problème d'écriture du journal
+   */
+  void fermerJournal() throws IOException;
+}
@@ -0,0 +1,694 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Journal des modifications d'une application, écrit à la suite dans un
+ * fichier.
+ * <p>
+ * Chaque enregistrement reçoit un numéro, dans l'ordre de son ajout. Les
+ * enregistrements ne sont pas écrits par les threads qui les ajoutent mais par
+ * le thread du journal, qui écrit d'un coup tous ceux en attente : c'est la
+ * validation groupée. Chaque lot est précédé de sa longueur et de sa somme de
+ * contrôle, pour qu'un lot incomplet à la suite d'un arrêt brutal soit
+ * détecté et ignoré.
+ * <p>
+ * Le fichier commence par une en-tête donnant le numéro du premier
+ * enregistrement. Après une sauvegarde complète de l'application, le journal
+ * peut être vidé par {@link #recommencer()} ; les enregistrements suivants
+ * continuent la numérotation. Une sauvegarde écrite pendant que
+ * l'application continue de journaliser marque plutôt le journal lors de sa
+ * capture par {@link #marquer()}, puis, une fois écrite, fait effacer par
+ * {@link #compacter(long)} les enregistrements qui précèdent la marque.
+ */
+public class Journal implements Closeable {
+
+    /**
+     * Politique de synchronisation du journal avec le disque.
+     */
+    public enum Synchronisation {
+
+        /**
+         * Le système écrit le journal sur le disque quand il le décide. Un arrêt
+         * du système peut perdre les derniers enregistrements.
+         */
+        AUCUNE,
+
+        /**
+         * Le journal est forcé sur le disque à intervalle régulier. Un arrêt du
+         * système peut perdre les enregistrements de la dernière période ; les
+         * threads qui ajoutent un enregistrement n'attendent pas.
+         */
+        PERIODIQUE,
+
+        /**
+         * Chaque lot est forcé sur le disque avant que les threads qui l'ont
+         * rempli ne reprennent la main. Aucun enregistrement ajouté n'est perdu.
+         */
+        IMMEDIATE,
+    }
+
+    /**
+     * Écriture d'un enregistrement, effectuée par le thread du journal.
+     */
+    @FunctionalInterface
+    public interface Enregistrement {
+
+        /**
+         * Écrit l'enregistrement.
+         *
+         * @param sortie la sortie du lot en cours
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        void ecrire(SortieBinaire sortie) throws IOException;
+    }
+
+    /**
+     * Relecture des enregistrements d'un journal existant, à son ouverture.
+     */
+    @FunctionalInterface
+    public interface Relecture {
+
+        /**
+         * Lit un enregistrement, entièrement, et l'applique si besoin.
+         *
+         * @param numero le numéro de l'enregistrement
+         * @param entree l'entrée positionnée au début de l'enregistrement
+         * @throws IOException si l'enregistrement est invalide
+         */
+        void relire(long numero, EntreeBinaire entree) throws IOException;
+    }
+
+    /** Période par défaut de la synchronisation périodique. */
+    public static final Duration PERIODE = Duration.ofMillis(10);
+
+    /** Signature des fichiers de journal ("CAJJ"). */
+    private static final int SIGNATURE = 0x43414A4A;
+
+    /** Version du format de journal. */
+    private static final int VERSION = 1;
+
+    /** Taille de l'en-tête : signature, version et numéro du premier enregistrement. */
+    private static final int ENTETE = 16;
+
+    /** Taille de l'en-tête d'un lot : longueur et somme de contrôle. */
+    private static final int ENTETE_LOT = 8;
+
+    /** Fichier du journal. */
+    private final Path fichier;
+
+    /**
+     * Canal du fichier du journal. Remplacé par le thread du journal lors
+     * d'un compactage.
+     */
+    private FileChannel canal;
+
+    /** Politique de synchronisation. */
+    private final Synchronisation politique;
+
+    /** Période de la synchronisation périodique, en nanosecondes. */
+    private final long periode;
+
+    /** Verrou des compteurs et de la file d'attente. */
+    private final ReentrantLock verrou = new ReentrantLock();
+
+    /** Signalé quand un enregistrement est ajouté ou que le journal se ferme. */
+    private final Condition ajout = verrou.newCondition();
+
+    /** Signalé quand un lot est écrit. */
+    private final Condition ecriture = verrou.newCondition();
+
+    /** Enregistrements en attente d'écriture, dans l'ordre de leur numéro. */
+    private List<Enregistrement> attente = new ArrayList<>();
+
+    /** Numéro du prochain enregistrement ajouté. */
+    private long prochain;
+
+    /** Numéro du premier enregistrement pas encore écrit. */
+    private long ecrits;
+
+    /** Numéro du premier enregistrement pas encore forcé sur le disque. */
+    private long durables;
+
+    /** Position de la fin du fichier. */
+    private long fin;
+
+    /** Erreur d'écriture qui a arrêté le journal, ou {@code null}. */
+    private IOException echec;
+
+    /** Indique que le journal est en cours de fermeture. */
+    private boolean ferme;
+
+    /** Numéro du prochain enregistrement lors de la dernière marque, ou -1. */
+    private long numeroMarque = -1;
+
+    /**
+     * Numéro du premier enregistrement écrit après la position marquée. Il
+     * précède le numéro marqué quand un lot en cours d'écriture lors de la
+     * marque contenait encore des enregistrements suivants.
+     */
+    private long premierMarque;
+
+    /** Position marquée dans le fichier, ou -1 tant qu'elle est inconnue. */
+    private long marque = -1;
+
+    /** Indique qu'un compactage est demandé au thread du journal. */
+    private boolean compactage;
+
+    /** Thread d'écriture du journal. */
+    private final Thread ecrivain;
+
+    /**
+     * Crée un journal sur un canal dont l'en-tête et les lots valides ont été
+     * lus.
+     *
+     * @param fichier   le fichier du journal
+     * @param canal     le canal du fichier
+     * @param politique la politique de synchronisation
+     * @param periode   la période de la synchronisation périodique
+     * @param prochain  le numéro du prochain enregistrement
+     * @param fin       la position de la fin du fichier
+     */
+    private Journal(Path fichier, FileChannel canal, Synchronisation politique,
+                    Duration periode, long prochain, long fin) {
+        this.fichier = fichier;
+        this.canal = canal;
+        this.politique = politique;
+        this.periode = periode.toNanos();
+        this.prochain = prochain;
+        this.ecrits = prochain;
+        this.durables = prochain;
+        this.fin = fin;
+        this.ecrivain = new Thread(this::ecrire, "journal-" + canal.hashCode());
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    /**
+     * Ouvre un journal, en le créant s'il n'existe pas. Les enregistrements
+     * d'un journal existant sont relus dans l'ordre ; un dernier lot incomplet
+     * ou corrompu est effacé.
+     *
+     * @param fichier   le fichier du journal
+     * @param politique la politique de synchronisation
+     * @param periode   la période de la synchronisation périodique
+     * @param depuis    le numéro du premier enregistrement absent de la
+     *                  sauvegarde complète de l'application (0 sans sauvegarde)
+     * @param relecture la relecture des enregistrements existants
+     * @return le journal, prêt à recevoir des enregistrements
+     * @throws IOException si le fichier ne peut pas être lu ou écrit, n'est pas
+     *                     un journal, ou commence après l'enregistrement
+     *                     <code>depuis</code>
+     */
+    public static Journal ouvrir(Path fichier, Synchronisation politique, Duration periode,
+                                 long depuis, Relecture relecture) throws IOException {
+        FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long numero = depuis;
+            long fin = 0;
+            long taille = canal.size();
+            if (taille >= ENTETE) {
+                ByteBuffer entete = lire(canal, 0, ENTETE);
+                if (entete.getInt() != SIGNATURE || entete.getInt() != VERSION) {
+                    throw new IOException("Ce fichier n'est pas un journal : " + fichier);
+                }
+                numero = entete.getLong();
+                if (numero > depuis) {
+                    throw new IOException("Le journal commence après la sauvegarde : "
+                            + numero + " > " + depuis);
+                }
+                fin = ENTETE;
+                CRC32 somme = new CRC32();
+                while (taille - fin >= ENTETE_LOT) {
+                    ByteBuffer tete = lire(canal, fin, ENTETE_LOT);
+                    int longueur = tete.getInt();
+                    int controle = tete.getInt();
+                    if (longueur <= 0 || longueur > taille - fin - ENTETE_LOT) {
+                        break;
+                    }
+                    ByteBuffer lot = lire(canal, fin + ENTETE_LOT, longueur);
+                    somme.reset();
+                    somme.update(lot.duplicate());
+                    if ((int) somme.getValue() != controle) {
+                        break;
+                    }
+                    EntreeBinaire entree = new EntreeBinaire(lot);
+                    while (!entree.termine()) {
+                        relecture.relire(numero++, entree);
+                    }
+                    fin += ENTETE_LOT + longueur;
+                }
+            }
+
+            if (numero <= depuis) {
+                // Journal neuf, ou entièrement contenu dans la sauvegarde
+                numero = depuis;
+                initialiser(canal, numero);
+                fin = ENTETE;
+            } else if (fin < taille) {
+                // Lot incomplet ou corrompu, écrit lors d'un arrêt brutal
+                canal.truncate(fin);
+                canal.force(false);
+            }
+            return new Journal(fichier, canal, politique, periode, numero, fin);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ouvre un journal avec la période de synchronisation par défaut.
+     *
+     * @param fichier   le fichier du journal
+     * @param politique la politique de synchronisation
+     * @param depuis    le numéro du premier enregistrement absent de la
+     *                  sauvegarde complète de l'application (0 sans sauvegarde)
+     * @param relecture la relecture des enregistrements existants
+     * @return le journal, prêt à recevoir des enregistrements
+     * @throws IOException si le fichier ne peut pas être lu ou écrit, n'est pas
+     *                     un journal, ou commence après l'enregistrement
+     *                     <code>depuis</code>
+     * @see #ouvrir(Path, Synchronisation, Duration, long, Relecture)
+     */
+    public static Journal ouvrir(Path fichier, Synchronisation politique, long depuis,
+                                 Relecture relecture) throws IOException {
+        return ouvrir(fichier, politique, PERIODE, depuis, relecture);
+    }
+
+    /**
+     * Lit une partie d'un fichier.
+     *
+     * @param canal    le canal du fichier
+     * @param position la position du premier octet
+     * @param taille   le nombre d'octets
+     * @return un tampon contenant les octets lus
+     * @throws IOException si le fichier se termine avant
+     */
+    private static ByteBuffer lire(FileChannel canal, long position, int taille) throws IOException {
+        ByteBuffer tampon = ByteBuffer.allocate(taille);
+        while (tampon.hasRemaining()) {
+            if (canal.read(tampon, position + tampon.position()) < 0) {
+                throw new EOFException("Fin de journal inattendue.");
+            }
+        }
+        tampon.flip();
+        return tampon;
+    }
+
+    /**
+     * Vide un fichier et y écrit l'en-tête d'un journal. Le fichier est vidé
+     * sur le disque avant l'écriture de la nouvelle en-tête, pour qu'un arrêt
+     * brutal ne puisse pas renuméroter d'anciens enregistrements.
+     *
+     * @param canal   le canal du fichier
+     * @param premier le numéro du premier enregistrement
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void initialiser(FileChannel canal, long premier) throws IOException {
+        canal.truncate(0);
+        canal.force(false);
+        ByteBuffer entete = ByteBuffer.allocate(ENTETE);
+        entete.putInt(SIGNATURE).putInt(VERSION).putLong(premier).flip();
+        while (entete.hasRemaining()) {
+            canal.write(entete, entete.position());
+        }
+        canal.force(false);
+    }
+
+    /**
+     * Ajoute un enregistrement au journal. Avec la politique
+     * {@link Synchronisation#IMMEDIATE}, attend qu'il soit sur le disque ;
+     * sinon, retourne sans attendre son écriture.
+     * <p>
+     * L'enregistrement est écrit plus tard par le thread du journal : il ne
+     * doit dépendre que de valeurs immuables, capturées lors de l'appel.
+     *
+     * @param enregistrement l'enregistrement
+     * @return le numéro de l'enregistrement
+     * @throws UncheckedIOException  si une écriture précédente du journal a
+     *                               échoué
+     * @throws IllegalStateException si le journal est fermé
+     */
+    public long ajouter(Enregistrement enregistrement) {
+        verrou.lock();
+        try {
+            verifier();
+            long numero = prochain++;
+            attente.add(enregistrement);
+            if (attente.size() == 1) {
+                ajout.signal();
+            }
+            if (politique == Synchronisation.IMMEDIATE) {
+                while (durables <= numero && echec == null) {
+                    ecriture.awaitUninterruptibly();
+                }
+                verifier();
+            }
+            return numero;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Retourne le numéro du prochain enregistrement ajouté, c'est-à-dire le
+     * nombre d'enregistrements ajoutés depuis la création du journal.
+     *
+     * @return le numéro du prochain enregistrement
+     */
+    public long prochainNumero() {
+        verrou.lock();
+        try {
+            return prochain;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Attend l'écriture des enregistrements ajoutés puis vide le journal, après
+     * une sauvegarde complète de l'application. Les enregistrements suivants
+     * continuent la numérotation.
+     *
+     * @return le numéro du prochain enregistrement, premier du journal vidé
+     * @throws IOException           en cas d'erreur d'écriture
+     * @throws IllegalStateException si le journal est fermé
+     */
+    public long recommencer() throws IOException {
+        verrou.lock();
+        try {
+            while ((ecrits < prochain || compactage) && echec == null) {
+                ecriture.awaitUninterruptibly();
+            }
+            if (echec != null) {
+                throw new IOException("Échec d'écriture du journal.", echec);
+            }
+            if (ferme) {
+                throw new IllegalStateException("Journal fermé.");
+            }
+            initialiser(canal, prochain);
+            fin = ENTETE;
+            durables = prochain;
+            numeroMarque = -1;
+            marque = -1;
+            return prochain;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Marque le journal lors de la capture de l'état de l'application pour
+     * une sauvegarde. Aucun enregistrement ne doit être ajouté pendant
+     * l'appel. Une seule marque est gardée : la précédente est oubliée.
+     *
+     * @return le numéro du prochain enregistrement, premier enregistrement
+     *         absent de la sauvegarde
+     * @throws UncheckedIOException  si une écriture du journal a échoué
+     * @throws IllegalStateException si le journal est fermé
+     */
+    public long marquer() {
+        verrou.lock();
+        try {
+            verifier();
+            numeroMarque = prochain;
+            if (ecrits == prochain && !compactage) {
+                // Rien en cours d'écriture : la fin du fichier est stable
+                marque = fin;
+                premierMarque = prochain;
+            } else {
+                // Position relevée par le thread du journal après son lot
+                marque = -1;
+            }
+            return prochain;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Efface du journal les enregistrements qui précèdent la marque, une fois
+     * écrite la sauvegarde capturée lors de celle-ci. Les enregistrements
+     * suivants sont recopiés dans un nouveau fichier, forcé sur le disque, qui
+     * remplace atomiquement l'ancien : un arrêt brutal laisse l'un ou l'autre.
+     * Le journal continue de recevoir des enregistrements pendant la copie.
+     *
+     * @param numero le numéro retourné par {@link #marquer()} ; sans effet si
+     *               le journal a été marqué ou vidé depuis
+     * @throws IOException           en cas d'erreur d'écriture
+     * @throws IllegalStateException si le journal est fermé
+     */
+    public void compacter(long numero) throws IOException {
+        verrou.lock();
+        try {
+            while ((marque < 0 || compactage) && numeroMarque == numero && echec == null) {
+                ecriture.awaitUninterruptibly();
+            }
+            if (echec != null) {
+                throw new IOException("Échec d'écriture du journal.", echec);
+            }
+            if (ferme) {
+                throw new IllegalStateException("Journal fermé.");
+            }
+            if (numeroMarque != numero) {
+                return;
+            }
+            compactage = true;
+            ajout.signal();
+            while (compactage && echec == null) {
+                ecriture.awaitUninterruptibly();
+            }
+            if (echec != null) {
+                throw new IOException("Échec du compactage du journal.", echec);
+            }
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Vérifie que le journal peut recevoir des enregistrements. Doit être
+     * appelée en tenant le verrou.
+     */
+    private void verifier() {
+        if (echec != null) {
+            throw new UncheckedIOException("Échec d'écriture du journal.", echec);
+        }
+        if (ferme) {
+            throw new IllegalStateException("Journal fermé.");
+        }
+    }
+
+    /**
+     * Boucle du thread du journal : écrit les enregistrements en attente par
+     * lots, et force le fichier sur le disque selon la politique.
+     */
+    private void ecrire() {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        SortieBinaire sortie = new SortieBinaire(Channels.newChannel(octets), 1 << 16);
+        CRC32 somme = new CRC32();
+        boolean nonForce = false;
+        long echeance = 0;
+        try {
+            while (true) {
+                List<Enregistrement> lot;
+                boolean compacte;
+                verrou.lock();
+                try {
+                    while (attente.isEmpty() && !ferme && !compactage) {
+                        if (!nonForce) {
+                            ajout.await();
+                        } else if (ajout.awaitNanos(echeance - System.nanoTime()) <= 0) {
+                            break;
+                        }
+                    }
+                    if (attente.isEmpty() && ferme && !compactage) {
+                        return;
+                    }
+                    compacte = compactage;
+                    lot = attente;
+                    attente = new ArrayList<>();
+                } finally {
+                    verrou.unlock();
+                }
+
+                if (compacte) {
+                    // Les lots déjà écrits précèdent ceux du lot pris
+                    compacterFichier();
+                }
+                if (!lot.isEmpty()) {
+                    ecrireLot(lot, octets, sortie, somme);
+                    if (!nonForce && politique != Synchronisation.AUCUNE) {
+                        nonForce = true;
+                        echeance = System.nanoTime() + periode;
+                    }
+                }
+                boolean force = false;
+                if (nonForce && (politique == Synchronisation.IMMEDIATE
+                        || System.nanoTime() - echeance >= 0)) {
+                    canal.force(false);
+                    nonForce = false;
+                    force = true;
+                }
+
+                verrou.lock();
+                try {
+                    ecrits += lot.size();
+                    if (force || politique != Synchronisation.IMMEDIATE) {
+                        durables = ecrits;
+                    }
+                    if (compacte) {
+                        compactage = false;
+                        if (marque >= 0) {
+                            // Marque consommée, sauf si une autre l'a remplacée
+                            numeroMarque = -1;
+                            marque = -1;
+                        }
+                    }
+                    if (numeroMarque >= 0 && marque < 0) {
+                        // Premier lot terminé depuis la marque
+                        marque = fin;
+                        premierMarque = ecrits;
+                    }
+                    ecriture.signalAll();
+                } finally {
+                    verrou.unlock();
+                }
+            }
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            verrou.lock();
+            try {
+                echec = e instanceof IOException ? (IOException) e
+                        : new IOException("Échec d'écriture du journal.", e);
+                ecriture.signalAll();
+            } finally {
+                verrou.unlock();
+            }
+        }
+    }
+
+    /**
+     * Recopie les lots écrits depuis la marque dans un nouveau fichier qui
+     * remplace celui du journal. Appelée par le thread du journal, seul à
+     * écrire dans le canal.
+     *
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private void compacterFichier() throws IOException {
+        long debut;
+        long premier;
+        verrou.lock();
+        try {
+            debut = marque;
+            premier = premierMarque;
+        } finally {
+            verrou.unlock();
+        }
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        FileChannel nouveau = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            initialiser(nouveau, premier);
+            nouveau.position(ENTETE);
+            for (long position = debut; position < fin; ) {
+                position += canal.transferTo(position, fin - position, nouveau);
+            }
+            nouveau.force(false);
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            nouveau.close();
+            throw e;
+        }
+        canal.close();
+        canal = nouveau;
+        fin = ENTETE + fin - debut;
+    }
+
+    /**
+     * Écrit un lot d'enregistrements à la fin du fichier, précédé de sa
+     * longueur et de sa somme de contrôle.
+     *
+     * @param lot    les enregistrements, dans l'ordre de leur numéro
+     * @param octets le tampon du lot, réutilisé d'un lot à l'autre
+     * @param sortie la sortie écrivant dans <code>octets</code>
+     * @param somme  le calcul de la somme de contrôle
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private void ecrireLot(List<Enregistrement> lot, ByteArrayOutputStream octets,
+                           SortieBinaire sortie, CRC32 somme) throws IOException {
+        octets.reset();
+        sortie.ecrireLong(0);
+        for (Enregistrement enregistrement : lot) {
+            enregistrement.ecrire(sortie);
+        }
+        sortie.vider();
+        ByteBuffer tampon = ByteBuffer.wrap(octets.toByteArray());
+        int longueur = tampon.remaining() - ENTETE_LOT;
+        somme.reset();
+        somme.update(tampon.array(), ENTETE_LOT, longueur);
+        tampon.putInt(0, longueur).putInt(Integer.BYTES, (int) somme.getValue());
+        while (tampon.hasRemaining()) {
+            fin += canal.write(tampon, fin);
+        }
+    }
+
+    /**
+     * Écrit les enregistrements en attente, force le fichier sur le disque et
+     * le ferme.
+     *
+     * @throws IOException si une écriture du journal a échoué
+     */
+    @Override
+    public void close() throws IOException {
+        verrou.lock();
+        try {
+            if (ferme) {
+                return;
+            }
+            ferme = true;
+            ajout.signal();
+        } finally {
+            verrou.unlock();
+        }
+        boolean interrompu = false;
+        while (ecrivain.isAlive()) {
+            try {
+                ecrivain.join();
+            } catch (InterruptedException e) {
+                interrompu = true;
+            }
+        }
+        if (interrompu) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (echec != null) {
+                throw echec;
+            }
+            canal.force(false);
+        } finally {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Écriture de valeurs binaires dans un fichier, ou plus généralement dans un
+ * canal, à travers un tampon direct.
+ * Les valeurs de taille fixe sont écrites dans l'ordre réseau (poids fort en
+ * tête). Les entiers de taille variable occupent 7 bits par octet, poids
+ * faible en tête, le bit de poids fort indiquant qu'un octet suit : les
+ * petites valeurs positives tiennent sur un ou deux octets. Les chaînes sont
+ * précédées de leur longueur en octets UTF-8, -1 pour {@code null}.
+ */
+public class SortieBinaire implements Closeable {
+
+    /** Taille par défaut du tampon, en octets. */
+    public static final int TAILLE_TAMPON = 1 << 20;
+
+    /** Canal écrit. */
+    private final WritableByteChannel canal;
+
+    /** Tampon des octets pas encore écrits dans le canal. */
+    private final ByteBuffer tampon;
+
+    /**
+     * Ouvre un fichier en écriture, en le créant ou en écrasant son contenu.
+     *
+     * @param fichier le fichier à écrire
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    public SortieBinaire(Path fichier) throws IOException {
+        this(FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Écrit dans un canal à partir de sa position courante.
+     *
+     * @param canal le canal à écrire, fermé avec la sortie
+     */
+    public SortieBinaire(WritableByteChannel canal) {
+        this(canal, TAILLE_TAMPON);
+    }
+
+    /**
+     * Écrit dans un canal à travers un tampon de taille donnée.
+     *
+     * @param canal  le canal à écrire, fermé avec la sortie
+     * @param taille la taille du tampon, au moins 16 octets
+     */
+    public SortieBinaire(WritableByteChannel canal, int taille) {
+        this.canal = canal;
+        this.tampon = ByteBuffer.allocateDirect(taille);
+    }
+
+    /**
+     * Garantit la place de quelques octets dans le tampon, en le vidant si
+     * besoin.
+     *
+     * @param taille le nombre d'octets nécessaires (au plus la taille du tampon)
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private void reserver(int taille) throws IOException {
+        if (tampon.remaining() < taille) {
+            vider();
+        }
+    }
+
+    /**
+     * Écrit le contenu du tampon dans le canal.
+     *
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void vider() throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining()) {
+            canal.write(tampon);
+        }
+        tampon.clear();
+    }
+
+    /**
+     * Écrit un octet.
+     *
+     * @param valeur l'octet
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireOctet(int valeur) throws IOException {
+        reserver(Byte.BYTES);
+        tampon.put((byte) valeur);
+    }
+
+    /**
+     * Écrit un entier sur 4 octets.
+     *
+     * @param valeur l'entier
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireEntier(int valeur) throws IOException {
+        reserver(Integer.BYTES);
+        tampon.putInt(valeur);
+    }
+
+    /**
+     * Écrit un entier long sur 8 octets.
+     *
+     * @param valeur l'entier long
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireLong(long valeur) throws IOException {
+        reserver(Long.BYTES);
+        tampon.putLong(valeur);
+    }
+
+    /**
+     * Écrit un entier long sur 1 à 10 octets. Les valeurs négatives occupent
+     * toujours 10 octets.
+     *
+     * @param valeur l'entier long
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireVariable(long valeur) throws IOException {
+        reserver(10);
+        while ((valeur & ~0x7FL) != 0) {
+            tampon.put((byte) ((valeur & 0x7F) | 0x80));
+            valeur >>>= 7;
+        }
+        tampon.put((byte) valeur);
+    }
+
+    /**
+     * Écrit un réel sur 8 octets.
+     *
+     * @param valeur le réel
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireReel(double valeur) throws IOException {
+        reserver(Double.BYTES);
+        tampon.putDouble(valeur);
+    }
+
+    /**
+     * Écrit une chaîne, éventuellement nulle.
+     *
+     * @param valeur la chaîne ou {@code null}
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireTexte(String valeur) throws IOException {
+        if (valeur == null) {
+            ecrireEntier(-1);
+            return;
+        }
+        byte[] octets = valeur.getBytes(StandardCharsets.UTF_8);
+        ecrireEntier(octets.length);
+        ecrireOctets(octets);
+    }
+
+    /**
+     * Écrit des octets tels quels, sans leur longueur.
+     *
+     * @param octets les octets
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void ecrireOctets(byte[] octets) throws IOException {
+        int ecrits = 0;
+        while (ecrits < octets.length) {
+            reserver(1);
+            int n = Math.min(tampon.remaining(), octets.length - ecrits);
+            tampon.put(octets, ecrits, n);
+            ecrits += n;
+        }
+    }
+
+    /**
+     * Vide le tampon et force l'écriture du fichier sur le disque, si le
+     * canal est celui d'un fichier.
+     *
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void synchroniser() throws IOException {
+        vider();
+        if (canal instanceof FileChannel) {
+            ((FileChannel) canal).force(false);
+        }
+    }
+
+    /**
+     * Vide le tampon et ferme le canal.
+     *
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            vider();
+        } finally {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package pizzas;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Archive des commandes traitées (statut TRAITEE).
+ * <p>
+ * Une commande traitée ne change plus : au lieu de la garder en mémoire sous
+ * forme d'objets, l'archive la range dans des enregistrements de taille fixe,
+ * hors du tas, dans des fichiers temporaires projetés en mémoire. Chaque
+ * commande occupe un enregistrement de {@value #TAILLE_COMMANDE} octets et
+ * chacune de ses lignes un enregistrement de {@value #TAILLE_LIGNE} octets ;
+ * pizzas et clients y sont désignés par leur rang dans deux tables. Les
+ * seules structures gardées sur le tas sont ces tables et les index, des
+ * tableaux d'entiers donnant les rangs des commandes par identifiant
+ * croissant, globalement et pour chaque client.
+ * <p>
+ * Les lectures retournent des vues qui ne décodent une commande en objet
+ * qu'au moment où elle est demandée. Les accès sont protégés par un verrou
+ * en lecture et écriture ; un enregistrement écrit n'est plus jamais
+ * modifié.
+ */
+final class ArchiveCommandes {
+
+    // Enregistrement d'une commande : identifiant, secondes UTC de la date,
+    // nanosecondes, rang du client, rang de la première ligne, nombre de
+    // lignes et 4 octets réservés. Enregistrement d'une ligne : rang de la
+    // pizza et quantité.
+
+    /** Taille de l'enregistrement d'une commande, en octets. */
+    static final int TAILLE_COMMANDE = 40;
+
+    /** Taille de l'enregistrement d'une ligne, en octets. */
+    static final int TAILLE_LIGNE = 8;
+
+    /** Nombre d'enregistrements par fichier projeté. */
+    private static final int PAR_SEGMENT = 1 << 19;
+
+    /**
+     * Suite d'enregistrements de taille fixe, répartis dans des fichiers
+     * temporaires projetés en mémoire d'au plus {@link #PAR_SEGMENT}
+     * enregistrements. Un fichier est supprimé dès sa projection : il
+     * disparaît avec elle.
+     */
+    private static final class Segments {
+
+        /** Taille d'un enregistrement, en octets. */
+        private final int taille;
+
+        /** Fichiers projetés, dans l'ordre. */
+        private final List<MappedByteBuffer> fichiers = new ArrayList<>();
+
+        /**
+         * Crée une suite vide.
+         *
+         * @param taille la taille d'un enregistrement
+         */
+        private Segments(int taille) {
+            this.taille = taille;
+        }
+
+        /**
+         * Retourne le fichier contenant un enregistrement, en le créant au
+         * besoin.
+         *
+         * @param rang le rang de l'enregistrement, au plus le nombre
+         *             d'enregistrements déjà écrits
+         * @return le fichier projeté
+         */
+        private ByteBuffer fichier(long rang) {
+            int numero = (int) (rang / PAR_SEGMENT);
+            if (numero == fichiers.size()) {
+                fichiers.add(projeter((long) taille * PAR_SEGMENT));
+            }
+            return fichiers.get(numero);
+        }
+
+        /**
+         * Retourne la position d'un enregistrement dans son fichier.
+         *
+         * @param rang le rang de l'enregistrement
+         * @return la position de son premier octet
+         */
+        private int position(long rang) {
+            return (int) (rang % PAR_SEGMENT) * taille;
+        }
+
+        /**
+         * Crée et projette en mémoire un fichier temporaire.
+         *
+         * @param octets la taille du fichier
+         * @return le fichier projeté
+         * @throws UncheckedIOException si le fichier ne peut pas être créé
+         */
+        private static MappedByteBuffer projeter(long octets) {
+            try {
+                Path fichier = Files.createTempFile("commandes", ".archive");
+                try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                    return canal.map(FileChannel.MapMode.READ_WRITE, 0, octets);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Impossible de créer l'archive des commandes.", e);
+            }
+        }
+    }
+
+    /**
+     * Rangs de commandes archivées, ordonnés par identifiant croissant.
+     */
+    private final class Index {
+
+        /** Rangs des commandes. */
+        private int[] rangs = new int[16];
+
+        /** Nombre de rangs utilisés. */
+        private int taille;
+
+        /**
+         * Insère une commande à sa place. Les commandes étant archivées à peu
+         * près dans l'ordre de leur identifiant, l'insertion se fait presque
+         * toujours en fin de tableau ; l'historique lu en arrière-plan, plus
+         * ancien que les commandes traitées entre-temps, se place par
+         * dichotomie.
+         *
+         * @param rang le rang de la commande
+         * @param id   son identifiant
+         */
+        private void inserer(int rang, long id) {
+            if (taille == rangs.length) {
+                rangs = Arrays.copyOf(rangs, taille * 2);
+            }
+            int i = taille;
+            if (i > 0 && identifiant(rangs[i - 1]) > id) {
+                int bas = 0;
+                int haut = taille - 1;
+                while (bas < haut) {
+                    int milieu = (bas + haut) >>> 1;
+                    if (identifiant(rangs[milieu]) > id) {
+                        haut = milieu;
+                    } else {
+                        bas = milieu + 1;
+                    }
+                }
+                i = bas;
+            }
+            System.arraycopy(rangs, i, rangs, i + 1, taille - i);
+            rangs[i] = rang;
+            taille++;
+        }
+
+        /**
+         * Cherche une commande par identifiant.
+         *
+         * @param id l'identifiant recherché
+         * @return le rang de la commande, ou -1 si elle n'est pas archivée
+         */
+        private int chercher(long id) {
+            int bas = 0;
+            int haut = taille - 1;
+            while (bas <= haut) {
+                int milieu = (bas + haut) >>> 1;
+                long courant = identifiant(rangs[milieu]);
+                if (courant < id) {
+                    bas = milieu + 1;
+                } else if (courant > id) {
+                    haut = milieu - 1;
+                } else {
+                    return rangs[milieu];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Retourne une vue figée des commandes de l'index.
+         *
+         * @return la vue, décodant chaque commande à la demande
+         */
+        private List<Commande> vue() {
+            return new Vue(Arrays.copyOf(rangs, taille));
+        }
+    }
+
+    /**
+     * Vue non modifiable d'une liste de commandes archivées, chacune décodée
+     * lorsqu'elle est demandée.
+     */
+    private final class Vue extends AbstractList<Commande> implements RandomAccess {
+
+        /** Rangs des commandes de la vue, ou {@code null} pour les premiers rangs. */
+        private final int[] rangs;
+
+        /** Nombre de commandes de la vue. */
+        private final int taille;
+
+        /**
+         * Crée une vue.
+         *
+         * @param rangs les rangs des commandes
+         */
+        private Vue(int[] rangs) {
+            this.rangs = rangs;
+            this.taille = rangs.length;
+        }
+
+        /**
+         * Crée une vue des premières commandes archivées, dans l'ordre de leur
+         * archivage.
+         *
+         * @param taille le nombre de commandes
+         */
+        private Vue(int taille) {
+            this.rangs = null;
+            this.taille = taille;
+        }
+
+        @Override
+        public Commande get(int index) {
+            if (rangs == null) {
+                Objects.checkIndex(index, taille);
+                return decoder(index);
+            }
+            return decoder(rangs[index]);
+        }
+
+        @Override
+        public int size() {
+            return taille;
+        }
+    }
+
+    /** Verrou de l'archive. */
+    private final ReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    /** Enregistrements des commandes. */
+    private final Segments commandes = new Segments(TAILLE_COMMANDE);
+
+    /** Enregistrements des lignes. */
+    private final Segments lignes = new Segments(TAILLE_LIGNE);
+
+    /** Nombre de commandes archivées. */
+    private int nombreCommandes;
+
+    /** Nombre de lignes archivées. */
+    private long nombreLignes;
+
+    /** Pizzas des commandes archivées, par rang. */
+    private final List<Pizza> pizzas = new ArrayList<>();
+
+    /** Rang de chaque pizza dans {@link #pizzas}. */
+    private final Map<Pizza, Integer> rangsPizzas = new HashMap<>();
+
+    /** Clients des commandes archivées, par rang. */
+    private final List<InformationPersonnelle> clients = new ArrayList<>();
+
+    /**
+     * Rang de chaque client dans {@link #clients}. Les clients sont comparés
+     * par identité (voir {@link CleClient}) : modifier leurs informations ne
+     * change pas leur rang.
+     */
+    private final Map<InformationPersonnelle, Integer> rangsClients = new IdentityHashMap<>();
+
+    /** Toutes les commandes, par identifiant. */
+    private final Index parId = new Index();
+
+    /** Commandes de chaque client, par identifiant, indexées par rang du client. */
+    private final List<Index> parClient = new ArrayList<>();
+
+    /**
+     * Archive une commande traitée.
+     *
+     * @param id     l'identifiant de la commande
+     * @param date   sa date de création
+     * @param client son client
+     * @param lignes ses lignes : nombre d'exemplaires de chaque pizza
+     */
+    void ajouter(long id, LocalDateTime date, InformationPersonnelle client,
+                 Map<Pizza, Integer> lignes) {
+        verrou.writeLock().lock();
+        try {
+            Integer rangClient = rangsClients.get(client);
+            if (rangClient == null) {
+                rangClient = clients.size();
+                clients.add(client);
+                rangsClients.put(client, rangClient);
+                parClient.add(new Index());
+            }
+
+            long premiere = nombreLignes;
+            for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+                Integer rangPizza = rangsPizzas.get(ligne.getKey());
+                if (rangPizza == null) {
+                    rangPizza = pizzas.size();
+                    pizzas.add(ligne.getKey());
+                    rangsPizzas.put(ligne.getKey(), rangPizza);
+                }
+                ByteBuffer f = this.lignes.fichier(nombreLignes);
+                int p = this.lignes.position(nombreLignes);
+                f.putInt(p, rangPizza);
+                f.putInt(p + 4, ligne.getValue());
+                nombreLignes++;
+            }
+
+            int rang = nombreCommandes;
+            ByteBuffer f = commandes.fichier(rang);
+            int p = commandes.position(rang);
+            f.putLong(p, id);
+            f.putLong(p + 8, date.toEpochSecond(ZoneOffset.UTC));
+            f.putInt(p + 16, date.getNano());
+            f.putInt(p + 20, rangClient);
+            f.putLong(p + 24, premiere);
+            f.putInt(p + 32, lignes.size());
+            nombreCommandes++;
+
+            parId.inserer(rang, id);
+            parClient.get(rangClient).inserer(rang, id);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne le nombre de commandes archivées.
+     *
+     * @return le nombre de commandes
+     */
+    int taille() {
+        verrou.readLock().lock();
+        try {
+            return nombreCommandes;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne une commande archivée.
+     *
+     * @param id l'identifiant de la commande
+     * @return la commande décodée, ou {@code null} si elle n'est pas archivée
+     */
+    Commande get(long id) {
+        verrou.readLock().lock();
+        try {
+            int rang = parId.chercher(id);
+            return rang < 0 ? null : decoder(rang);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne les commandes archivées, de la plus ancienne à la plus récente.
+     *
+     * @return une vue figée, non modifiable, décodant chaque commande à la
+     *         demande
+     */
+    List<Commande> commandes() {
+        verrou.readLock().lock();
+        try {
+            return parId.vue();
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne les commandes archivées jusqu'ici, dans l'ordre de leur
+     * archivage. Les enregistrements ne changeant plus, la vue ne copie rien :
+     * les commandes archivées ensuite n'y apparaissent pas.
+     *
+     * @return une vue figée, non modifiable, décodant chaque commande à la
+     *         demande
+     */
+    List<Commande> instantane() {
+        verrou.readLock().lock();
+        try {
+            return new Vue(nombreCommandes);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne les commandes archivées d'un client, de la plus ancienne à la
+     * plus récente.
+     *
+     * @param client le client concerné
+     * @return une vue figée, non modifiable, décodant chaque commande à la
+     *         demande
+     */
+    List<Commande> commandes(InformationPersonnelle client) {
+        verrou.readLock().lock();
+        try {
+            Integer rangClient = rangsClients.get(client);
+            return rangClient == null ? List.of() : parClient.get(rangClient).vue();
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne l'identifiant d'une commande archivée. Doit être appelée en
+     * tenant le verrou.
+     *
+     * @param rang le rang de la commande
+     * @return son identifiant
+     */
+    private long identifiant(int rang) {
+        return commandes.fichier(rang).getLong(commandes.position(rang));
+    }
+
+    /**
+     * Décode une commande archivée.
+     *
+     * @param rang le rang de la commande
+     * @return une nouvelle commande, au statut TRAITEE
+     */
+    private Commande decoder(int rang) {
+        verrou.readLock().lock();
+        try {
+            ByteBuffer f = commandes.fichier(rang);
+            int p = commandes.position(rang);
+            LocalDateTime date = LocalDateTime.ofEpochSecond(f.getLong(p + 8), f.getInt(p + 16),
+                    ZoneOffset.UTC);
+            Commande cmd = new Commande(f.getLong(p), date, clients.get(f.getInt(p + 20)));
+            long premiere = f.getLong(p + 24);
+            int nombre = f.getInt(p + 32);
+            Map<Pizza, Integer> contenu = new LinkedHashMap<>();
+            for (long l = premiere; l < premiere + nombre; l++) {
+                ByteBuffer fl = lignes.fichier(l);
+                int pl = lignes.position(l);
+                contenu.put(pizzas.get(fl.getInt(pl)), fl.getInt(pl + 4));
+            }
+            cmd.ajouterPizzas(contenu);
+            cmd.setStatut(StatutCommande.TRAITEE);
+            return cmd;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package pizzas;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface asynchrone des services client, sur le modèle de
+ * {@link InterClientSession}.
+ * <p>
+ * Chaque méthode rend la main immédiatement et retourne un
+ * {@link CompletableFuture}. Les exceptions des services synchrones
+ * ({@link CommandeException}, {@link NonConnecteException}) ne sont pas
+ * levées mais terminent le futur exceptionnellement. Les opérations portant
+ * sur un même client (par sa session ou par l'une de ses commandes)
+ * s'exécutent dans l'ordre de leurs appels ; les autres s'exécutent en
+ * parallèle.
+ */
+public interface AsyncInterClient {
+
+    /**
+     * Inscription d'un client.
+     *
+     * @param email l'adresse email (unique) du client
+     * @param mdp   le mot de passe du client
+     * @param info  les informations personnelles sur le client
+     * @return le futur code de résultat de l'inscription
+     * @see InterClient#inscription(String, String, InformationPersonnelle)
+     */
+    CompletableFuture<Integer> inscription(String email, String mdp, InformationPersonnelle info);
+
+    /**
+     * Connexion d'un client et ouverture d'une nouvelle session.
+     *
+     * @param email l'email du client
+     * @param mdp   le mot de passe du client
+     * @return le futur jeton de la session ; le futur échoue avec une
+     *         {@link NonConnecteException} en cas de couple email/mot de
+     *         passe invalide
+     * @see InterClientSession#ouvrirSession(String, String)
+     */
+    CompletableFuture<String> ouvrirSession(String email, String mdp);
+
+    /**
+     * Ferme une session.
+     *
+     * @param session le jeton de la session
+     * @return un futur terminé une fois la session fermée
+     * @see InterClientSession#fermerSession(String)
+     */
+    CompletableFuture<Void> fermerSession(String session);
+
+    /**
+     * Crée une nouvelle commande pour le client de la session.
+     *
+     * @param session le jeton de la session
+     * @return la future commande créée
+     * @see InterClientSession#debuterCommande(String)
+     */
+    CompletableFuture<Commande> debuterCommande(String session);
+
+    /**
+     * Ajoute une certaine pizza à une commande du client de la session.
+     *
+     * @param session le jeton de la session
+     * @param pizza   la pizza que l'on commande
+     * @param nombre  le nombre de cette pizza que l'on commande
+     * @param cmd     la commande en cours
+     * @return un futur terminé une fois les pizzas ajoutées
+     * @see InterClientSession#ajouterPizza(String, Pizza, int, Commande)
+     */
+    CompletableFuture<Void> ajouterPizza(String session, Pizza pizza, int nombre, Commande cmd);
+
+    /**
+     * Ajoute plusieurs pizzas à une commande du client de la session.
+     *
+     * @param session le jeton de la session
+     * @param pizzas  le nombre d'exemplaires commandés de chaque pizza
+     * @param cmd     la commande en cours
+     * @return un futur terminé une fois les pizzas ajoutées
+     * @see InterClientSession#ajouterPizzas(String, Map, Commande)
+     */
+    CompletableFuture<Void> ajouterPizzas(String session, Map<Pizza, Integer> pizzas,
+                                          Commande cmd);
+
+    /**
+     * Valide une commande en cours du client de la session.
+     *
+     * @param session le jeton de la session
+     * @param cmd     la commande à valider
+     * @return un futur terminé une fois la commande validée
+     * @see InterClientSession#validerCommande(String, Commande)
+     */
+    CompletableFuture<Void> validerCommande(String session, Commande cmd);
+
+    /**
+     * Annule une commande en cours du client de la session.
+     *
+     * @param session le jeton de la session
+     * @param cmd     la commande à annuler
+     * @return un futur terminé une fois la commande annulée
+     * @see InterClientSession#annulerCommande(String, Commande)
+     */
+    CompletableFuture<Void> annulerCommande(String session, Commande cmd);
+
+    /**
+     * Renvoie une commande du client de la session à partir de son
+     * identifiant.
+     *
+     * @param session le jeton de la session
+     * @param id      l'identifiant de la commande
+     * @return la future commande, ou {@code null} si aucune commande du client
+     *         ne porte cet identifiant
+     * @see InterClientSession#getCommande(String, long)
+     */
+    CompletableFuture<Commande> getCommande(String session, long id);
+
+    /**
+     * Renvoie les commandes en cours du client de la session.
+     *
+     * @param session le jeton de la session
+     * @return les futures commandes en cours, de la plus ancienne à la plus
+     *         récente
+     * @see InterClientSession#getCommandesEncours(String)
+     */
+    CompletableFuture<List<Commande>> getCommandesEncours(String session);
+
+    /**
+     * Renvoie les commandes passées du client de la session.
+     *
+     * @param session le jeton de la session
+     * @return les futures commandes passées, de la plus ancienne à la plus
+     *         récente
+     * @see InterClientSession#getCommandePassees(String)
+     */
+    CompletableFuture<List<Commande>> getCommandePassees(String session);
+
+    /**
+     * Renvoie l'ensemble des pizzas en vente.
+     *
+     * @return le futur ensemble des pizzas
+     * @see InterClient#getPizzas()
+     */
+    CompletableFuture<Set<Pizza>> getPizzas();
+
+    /**
+     * Sélectionne les pizzas qui valident des filtres donnés, sans toucher aux
+     * filtres de la session. Les paramètres {@code null} ne sont pas filtrés.
+     *
+     * @param session     le jeton de la session
+     * @param type        le type de pizza à conserver ou {@code null}
+     * @param prixMinimum le prix minimum des pizzas ou {@code null}
+     * @param prixMaximum le prix maximum des pizzas ou {@code null}
+     * @param ingredients les ingrédients que doivent contenir les pizzas
+     * @return le futur ensemble filtré des pizzas
+     * @see InterClientSession#selectionPizzas(String, TypePizza, Double, Double, String...)
+     */
+    CompletableFuture<Set<Pizza>> selectionPizzas(String session, TypePizza type,
+                                                  Double prixMinimum, Double prixMaximum,
+                                                  String... ingredients);
+
+    /**
+     * Ajoute une évaluation à une pizza de la part du client de la session.
+     *
+     * @param session     le jeton de la session
+     * @param pizza       la pizza que le client évalue
+     * @param note        la note entre 0 et 5
+     * @param commentaire le commentaire ou {@code null}
+     * @return le futur résultat : {@code true} si l'évaluation a été ajoutée
+     * @see InterClientSession#ajouterEvaluation(String, Pizza, int, String)
+     */
+    CompletableFuture<Boolean> ajouterEvaluation(String session, Pizza pizza, int note,
+                                                 String commentaire);
+}
@@ -0,0 +1,604 @@
+package pizzas;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Version figée de la carte de la pizzeria : ingrédients, pizzas, composition
+ * et prix des pizzas, restrictions d'ingrédients et index des filtres.
+ * <p>
+ * Une carte n'est jamais modifiée après sa construction : elle peut donc être
+ * lue depuis plusieurs threads sans verrou. Une {@link Modification} du
+ * pizzaïolo produit la carte suivante, de numéro de version supérieur, qui
+ * remplace la précédente. {@link Pizzaiolo#getCarte()} donne la carte
+ * courante, pour lire plusieurs informations dans une même version.
+ * <p>
+ * Ingrédients et pizzas reçoivent à leur première apparition un numéro dense
+ * qu'ils gardent dans toutes les versions suivantes. Les données de chaque
+ * numéro sont rangées dans des {@link VecteurPersistant} : une modification
+ * ne recopie que ce qu'elle change et partage le reste avec la carte
+ * précédente, quelle que soit la taille de la carte.
+ * <p>
+ * Les numéros des pizzas sont aussi rangés par prix de vente croissant : une
+ * plage de prix se trouve par recherche dichotomique, sans parcourir les
+ * pizzas hors de la plage. Ce classement n'est recalculé que si la
+ * modification change un prix ou ajoute une pizza.
+ */
+public final class Carte {
+
+    /**
+     * Données d'une pizza dans une version de la carte. La composition est
+     * celle de la pizza au moment de la publication.
+     */
+    private static final class Fiche {
+
+        /** La pizza. */
+        private final Pizza pizza;
+
+        /** Ses ingrédients, ensemble non modifiable. */
+        private final Set<Ingredient> composition;
+
+        /** Son prix de vente. */
+        private final double prixVente;
+
+        /** Son prix minimal. */
+        private final double prixMinimal;
+
+        /**
+         * Crée une fiche.
+         *
+         * @param pizza       la pizza
+         * @param prixVente   son prix de vente
+         * @param prixMinimal son prix minimal
+         */
+        private Fiche(Pizza pizza, double prixVente, double prixMinimal) {
+            this.pizza = pizza;
+            this.composition = pizza.getIngredients();
+            this.prixVente = prixVente;
+            this.prixMinimal = prixMinimal;
+        }
+    }
+
+    /**
+     * Numéros des ingrédients et des pizzas, partagés par toutes les versions
+     * d'une même carte. Les numéros ne sont jamais retirés ni changés ; une
+     * version ne tient compte que de ceux inférieurs à sa taille.
+     */
+    private static final class Registre {
+
+        /** Numéro de chaque ingrédient, par nom. */
+        private final Map<String, Integer> ingredients = new ConcurrentHashMap<>();
+
+        /** Numéro de chaque pizza, par nom. */
+        private final Map<String, Integer> pizzas = new ConcurrentHashMap<>();
+    }
+
+    /** Numéros des ingrédients et des pizzas. */
+    private final Registre registre;
+
+    /** Numéro de version de la carte. */
+    private final long version;
+
+    /** Ingrédients connus, par numéro. */
+    private final VecteurPersistant<Ingredient> ingredients;
+
+    /** Pour chaque numéro d'ingrédient, les types de pizzas où il est interdit. */
+    private final VecteurPersistant<Set<TypePizza>> interdits;
+
+    /** Pizzas en vente, par numéro. */
+    private final VecteurPersistant<Fiche> fiches;
+
+    /** Index des filtres. */
+    private final IndexFiltres index;
+
+    /**
+     * Numéros des pizzas par prix de vente croissant, puis par numéro. Jamais
+     * modifié une fois la carte publiée.
+     */
+    private final int[] numerosParPrix;
+
+    /** Prix de vente des pizzas de {@link #numerosParPrix}, au même rang. */
+    private final double[] prixTries;
+
+    /** Vue des pizzas en vente. */
+    private final Set<Pizza> pizzas = new AbstractSet<>() {
+        @Override
+        public Iterator<Pizza> iterator() {
+            return new Iterator<>() {
+                private int suivante;
+
+                @Override
+                public boolean hasNext() {
+                    return suivante < fiches.taille();
+                }
+
+                @Override
+                public Pizza next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return fiches.get(suivante++).pizza;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return fiches.taille();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Pizza && contient((Pizza) o);
+        }
+    };
+
+    /**
+     * Crée une carte.
+     *
+     * @param registre    les numéros des ingrédients et des pizzas
+     * @param version     le numéro de version
+     * @param ingredients les ingrédients, par numéro
+     * @param interdits   les types interdits, par numéro d'ingrédient
+     * @param fiches         les pizzas, par numéro
+     * @param index          l'index des filtres
+     * @param numerosParPrix les numéros des pizzas par prix croissant
+     * @param prixTries      leurs prix de vente, au même rang
+     */
+    private Carte(Registre registre, long version, VecteurPersistant<Ingredient> ingredients,
+                  VecteurPersistant<Set<TypePizza>> interdits, VecteurPersistant<Fiche> fiches,
+                  IndexFiltres index, int[] numerosParPrix, double[] prixTries) {
+        this.registre = registre;
+        this.version = version;
+        this.ingredients = ingredients;
+        this.interdits = interdits;
+        this.fiches = fiches;
+        this.index = index;
+        this.numerosParPrix = numerosParPrix;
+        this.prixTries = prixTries;
+    }
+
+    /**
+     * Crée une carte vide, de version 0, qui ne partage rien avec les autres
+     * cartes.
+     *
+     * @return une nouvelle carte vide
+     */
+    static Carte vide() {
+        return new Carte(new Registre(), 0, VecteurPersistant.vide(), VecteurPersistant.vide(),
+                VecteurPersistant.vide(), IndexFiltres.VIDE, new int[0], new double[0]);
+    }
+
+    /**
+     * Commence la construction de la carte suivante.
+     *
+     * @return une modification partant de cette carte
+     */
+    Modification modifier() {
+        return new Modification(this);
+    }
+
+    /**
+     * Retourne le numéro de version de la carte.
+     *
+     * @return le numéro de version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Retourne le numéro d'un ingrédient dans cette version.
+     *
+     * @param nom le nom de l'ingrédient
+     * @return son numéro, ou -1 s'il n'existe pas dans cette version
+     */
+    private int numeroIngredient(String nom) {
+        Integer numero = nom == null ? null : registre.ingredients.get(nom);
+        return numero != null && numero < ingredients.taille()
+                && ingredients.get(numero).getNom().equals(nom) ? numero : -1;
+    }
+
+    /**
+     * Retourne le numéro d'une pizza dans cette version.
+     *
+     * @param nom le nom de la pizza
+     * @return son numéro, ou -1 si elle n'est pas en vente dans cette version
+     */
+    private int numeroPizza(String nom) {
+        Integer numero = nom == null ? null : registre.pizzas.get(nom);
+        return numero != null && numero < fiches.taille()
+                && fiches.get(numero).pizza.getNom().equals(nom) ? numero : -1;
+    }
+
+    /**
+     * Retourne la fiche d'une pizza en vente.
+     *
+     * @param pizza la pizza (en vente)
+     * @return sa fiche
+     * @throws IllegalArgumentException si la pizza n'est pas en vente
+     */
+    private Fiche fiche(Pizza pizza) {
+        int numero = numeroPizza(pizza.getNom());
+        if (numero < 0) {
+            throw new IllegalArgumentException("Pizza absente de la carte : " + pizza.getNom());
+        }
+        return fiches.get(numero);
+    }
+
+    /**
+     * Retourne l'ingrédient portant un nom.
+     *
+     * @param nom le nom de l'ingrédient
+     * @return l'ingrédient ou {@code null} s'il n'existe pas
+     */
+    Ingredient ingredient(String nom) {
+        int numero = numeroIngredient(nom);
+        return numero < 0 ? null : ingredients.get(numero);
+    }
+
+    /**
+     * Retourne la pizza portant un nom.
+     *
+     * @param nom le nom de la pizza
+     * @return la pizza ou {@code null} si aucune pizza de ce nom n'est en vente
+     */
+    public Pizza pizza(String nom) {
+        int numero = numeroPizza(nom);
+        return numero < 0 ? null : fiches.get(numero).pizza;
+    }
+
+    /**
+     * Indique si une pizza est en vente.
+     *
+     * @param pizza la pizza
+     * @return {@code true} si la pizza est non nulle et en vente
+     */
+    public boolean contient(Pizza pizza) {
+        return pizza != null && numeroPizza(pizza.getNom()) >= 0;
+    }
+
+    /**
+     * Retourne l'ensemble non modifiable des pizzas en vente.
+     *
+     * @return les pizzas en vente
+     */
+    public Set<Pizza> pizzas() {
+        return pizzas;
+    }
+
+    /**
+     * Retourne la composition d'une pizza dans cette version.
+     *
+     * @param pizza la pizza (en vente)
+     * @return l'ensemble non modifiable de ses ingrédients
+     * @throws IllegalArgumentException si la pizza n'est pas en vente
+     */
+    public Set<Ingredient> composition(Pizza pizza) {
+        return fiche(pizza).composition;
+    }
+
+    /**
+     * Retourne le prix de vente d'une pizza.
+     *
+     * @param pizza la pizza (en vente)
+     * @return son prix de vente
+     * @throws IllegalArgumentException si la pizza n'est pas en vente
+     */
+    public double prixVente(Pizza pizza) {
+        return fiche(pizza).prixVente;
+    }
+
+    /**
+     * Retourne le prix minimal d'une pizza.
+     *
+     * @param pizza la pizza (en vente)
+     * @return son prix minimal
+     */
+    double prixMinimal(Pizza pizza) {
+        return fiche(pizza).prixMinimal;
+    }
+
+    /**
+     * Retourne le bénéfice réalisé sur la vente d'un exemplaire d'une pizza :
+     * la différence entre son prix de vente et son prix minimal, au moins 0.
+     *
+     * @param pizza la pizza (en vente)
+     * @return le bénéfice unitaire
+     */
+    double beneficeUnitaire(Pizza pizza) {
+        Fiche f = fiche(pizza);
+        return Math.max(f.prixVente - f.prixMinimal, 0);
+    }
+
+    /**
+     * Retourne les noms des ingrédients d'une pizza interdits pour son type.
+     *
+     * @param pizza la pizza (en vente)
+     * @return un nouvel ensemble de noms d'ingrédients
+     */
+    Set<String> ingredientsInterdits(Pizza pizza) {
+        Set<String> resultat = new HashSet<>();
+        TypePizza type = pizza.getTypePizza();
+        for (Ingredient ing : composition(pizza)) {
+            int numero = numeroIngredient(ing.getNom());
+            if (numero >= 0 && interdits.get(numero).contains(type)) {
+                resultat.add(ing.getNom());
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Cherche une position dans un classement par prix : le premier rang, entre
+     * deux bornes, dont la pizza vient après un couple (prix, numéro) ou lui
+     * est égale.
+     *
+     * @param numeros les numéros des pizzas par prix croissant, puis par numéro
+     * @param prix    leurs prix de vente, au même rang
+     * @param debut   le premier rang examiné
+     * @param fin     le rang suivant le dernier rang examiné
+     * @param p       le prix recherché
+     * @param numero  le numéro recherché
+     * @return un rang entre {@code debut} et {@code fin}
+     */
+    private static int rang(int[] numeros, double[] prix, int debut, int fin,
+                            double p, int numero) {
+        int bas = debut;
+        int haut = fin;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            int c = Double.compare(prix[milieu], p);
+            if (c < 0 || (c == 0 && numeros[milieu] < numero)) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    /**
+     * Sélectionne les pizzas d'un type donné contenant tous les ingrédients
+     * demandés et dont le prix de vente est compris dans une plage. Les
+     * ingrédients sont intersectés dans l'index ; les bornes de la plage de
+     * prix sont cherchées dans le classement par prix et seules les pizzas
+     * comprises entre elles sont retenues.
+     *
+     * @param type        le type recherché, ou {@code null} pour tous les types
+     * @param ingredients les ingrédients que doivent contenir les pizzas
+     * @param prixMin     le prix minimum inclus, ou {@code null} si aucun
+     * @param prixMax     le prix maximum inclus, ou {@code null} si aucun
+     * @return un nouvel ensemble de pizzas
+     */
+    Set<Pizza> selection(TypePizza type, Collection<Ingredient> ingredients,
+                         Double prixMin, Double prixMax) {
+        Set<Pizza> resultat = new HashSet<>();
+        int[] numeros = new int[ingredients.size()];
+        int n = 0;
+        for (Ingredient ing : ingredients) {
+            int numero = numeroIngredient(ing.getNom());
+            if (numero < 0) {
+                return resultat;
+            }
+            numeros[n++] = numero;
+        }
+        BitSet selection = index.selection(type, numeros, fiches.taille());
+        if (prixMin != null || prixMax != null) {
+            int debut = prixMin == null ? 0 : rang(numerosParPrix, prixTries, 0,
+                    prixTries.length, prixMin, Integer.MIN_VALUE);
+            int fin = prixMax == null ? prixTries.length : rang(numerosParPrix, prixTries, 0,
+                    prixTries.length, prixMax, Integer.MAX_VALUE);
+            BitSet dansPlage = new BitSet(fiches.taille());
+            for (int rang = debut; rang < fin; rang++) {
+                dansPlage.set(numerosParPrix[rang]);
+            }
+            selection.and(dansPlage);
+        }
+        for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+            resultat.add(fiches.get(i).pizza);
+        }
+        return resultat;
+    }
+
+    /**
+     * Construction de la carte suivante. Plusieurs changements peuvent être
+     * regroupés dans une même modification, qui ne publie qu'une carte. Une
+     * modification n'est utilisée que par un thread et ne sert plus une fois
+     * publiée.
+     */
+    static final class Modification {
+
+        /** Carte de départ. */
+        private final Carte base;
+
+        /** Ingrédients, par numéro. */
+        private VecteurPersistant<Ingredient> ingredients;
+
+        /** Types interdits, par numéro d'ingrédient. */
+        private VecteurPersistant<Set<TypePizza>> interdits;
+
+        /** Pizzas, par numéro. */
+        private VecteurPersistant<Fiche> fiches;
+
+        /** Modification de l'index des filtres. */
+        private final IndexFiltres.Modification index;
+
+        /** Numéros des pizzas ajoutées ou dont le prix de vente a changé. */
+        private final BitSet prixChanges = new BitSet();
+
+        /**
+         * Crée une modification.
+         *
+         * @param base la carte de départ
+         */
+        private Modification(Carte base) {
+            this.base = base;
+            this.ingredients = base.ingredients;
+            this.interdits = base.interdits;
+            this.fiches = base.fiches;
+            this.index = base.index.modifier();
+        }
+
+        /**
+         * Retourne le numéro d'un ingrédient déjà présent dans la modification.
+         *
+         * @param ing l'ingrédient
+         * @return son numéro
+         * @throws IllegalArgumentException si l'ingrédient est inconnu
+         */
+        private int numeroIngredient(Ingredient ing) {
+            Integer numero = base.registre.ingredients.get(ing.getNom());
+            if (numero == null || numero >= ingredients.taille()
+                    || !ingredients.get(numero).getNom().equals(ing.getNom())) {
+                throw new IllegalArgumentException("Ingrédient inconnu : " + ing.getNom());
+            }
+            return numero;
+        }
+
+        /**
+         * Ajoute un ingrédient, ou remplace l'ingrédient de même nom.
+         *
+         * @param ing l'ingrédient
+         * @return cette modification
+         */
+        Modification ingredient(Ingredient ing) {
+            Integer numero = base.registre.ingredients.get(ing.getNom());
+            if (numero != null && numero < ingredients.taille()
+                    && ingredients.get(numero).getNom().equals(ing.getNom())) {
+                ingredients = ingredients.avec(numero, ing);
+            } else {
+                base.registre.ingredients.put(ing.getNom(), ingredients.taille());
+                ingredients = ingredients.ajouter(ing);
+                interdits = interdits.ajouter(Set.of());
+                index.ajouterIngredient();
+            }
+            return this;
+        }
+
+        /**
+         * Fixe les types de pizzas où un ingrédient est interdit.
+         *
+         * @param ing   l'ingrédient, déjà présent
+         * @param types les types interdits
+         * @return cette modification
+         */
+        Modification interdits(Ingredient ing, Set<TypePizza> types) {
+            interdits = interdits.avec(numeroIngredient(ing), Set.copyOf(types));
+            return this;
+        }
+
+        /**
+         * Ajoute une pizza, ou met à jour la pizza de même nom, avec sa
+         * composition actuelle. Ses ingrédients doivent déjà être présents.
+         *
+         * @param pizza       la pizza
+         * @param prixVente   son prix de vente
+         * @param prixMinimal son prix minimal
+         * @return cette modification
+         */
+        Modification pizza(Pizza pizza, double prixVente, double prixMinimal) {
+            Fiche fiche = new Fiche(pizza, prixVente, prixMinimal);
+            Integer numero = base.registre.pizzas.get(pizza.getNom());
+            Set<Ingredient> ancienne;
+            if (numero != null && numero < fiches.taille()
+                    && fiches.get(numero).pizza.getNom().equals(pizza.getNom())) {
+                Fiche precedente = fiches.get(numero);
+                ancienne = precedente.composition;
+                if (Double.compare(precedente.prixVente, prixVente) != 0) {
+                    prixChanges.set(numero);
+                }
+                fiches = fiches.avec(numero, fiche);
+            } else {
+                numero = fiches.taille();
+                ancienne = Set.of();
+                base.registre.pizzas.put(pizza.getNom(), numero);
+                fiches = fiches.ajouter(fiche);
+                index.ajouterPizza(numero, pizza.getTypePizza());
+                prixChanges.set(numero);
+            }
+            if (ancienne != fiche.composition) {
+                for (Ingredient ing : fiche.composition) {
+                    if (!ancienne.contains(ing)) {
+                        index.changerIngredient(numeroIngredient(ing), numero, true);
+                    }
+                }
+                for (Ingredient ing : ancienne) {
+                    if (!fiche.composition.contains(ing)) {
+                        index.changerIngredient(numeroIngredient(ing), numero, false);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Termine la modification. Le classement par prix de la carte de
+         * départ est repris tel quel si aucun prix n'a changé. Sinon, l'ancien
+         * rang et la nouvelle place de chaque pizza changée sont cherchés par
+         * dichotomie dans le classement de départ, puis le nouveau classement
+         * est recopié par blocs entre ces positions.
+         *
+         * @return la carte suivante
+         */
+        Carte publier() {
+            int[] numerosParPrix = base.numerosParPrix;
+            double[] prixTries = base.prixTries;
+            if (!prixChanges.isEmpty()) {
+                int[] anciens = base.numerosParPrix;
+                double[] anciensPrix = base.prixTries;
+                int[] retires = prixChanges.stream()
+                        .filter(n -> n < base.fiches.taille())
+                        .map(n -> rang(anciens, anciensPrix, 0, anciens.length,
+                                base.fiches.get(n).prixVente, n))
+                        .sorted()
+                        .toArray();
+                Integer[] changees = prixChanges.stream().boxed().toArray(Integer[]::new);
+                Arrays.sort(changees, (a, b) -> {
+                    int c = Double.compare(fiches.get(a).prixVente, fiches.get(b).prixVente);
+                    return c != 0 ? c : Integer.compare(a, b);
+                });
+
+                numerosParPrix = new int[fiches.taille()];
+                prixTries = new double[fiches.taille()];
+                int depuis = 0;
+                int vers = 0;
+                int i = 0;
+                int j = 0;
+                while (i < retires.length || j < changees.length) {
+                    int place = j < changees.length
+                            ? rang(anciens, anciensPrix, depuis, anciens.length,
+                                    fiches.get(changees[j]).prixVente, changees[j])
+                            : anciens.length;
+                    boolean inserer = i == retires.length || place <= retires[i];
+                    int borne = inserer ? place : retires[i];
+                    System.arraycopy(anciens, depuis, numerosParPrix, vers, borne - depuis);
+                    System.arraycopy(anciensPrix, depuis, prixTries, vers, borne - depuis);
+                    vers += borne - depuis;
+                    depuis = borne;
+                    if (inserer) {
+                        numerosParPrix[vers] = changees[j];
+                        prixTries[vers] = fiches.get(changees[j]).prixVente;
+                        vers++;
+                        j++;
+                    } else {
+                        depuis++;
+                        i++;
+                    }
+                }
+                System.arraycopy(anciens, depuis, numerosParPrix, vers, anciens.length - depuis);
+                System.arraycopy(anciensPrix, depuis, prixTries, vers, anciens.length - depuis);
+            }
+            return new Carte(base.registre, base.version + 1, ingredients, interdits, fiches,
+                    index.publier(), numerosParPrix, prixTries);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package pizzas;
+
+/**
+ * Clé désignant un client dans les index de la pizzeria.
+ * <p>
+ * Les informations personnelles d'un client ne peuvent pas servir de clé :
+ * son adresse et son âge sont modifiables et entrent dans leur code de
+ * hachage. En revanche, un compte client garde le même objet
+ * {@link InformationPersonnelle} toute sa vie, et ses commandes et ses
+ * évaluations y font référence. La clé compare donc cet objet par identité.
+ */
+final class CleClient {
+
+    /** Les informations personnelles du client. */
+    private final InformationPersonnelle info;
+
+    /**
+     * Crée la clé d'un client.
+     *
+     * @param info les informations personnelles du client
+     */
+    CleClient(InformationPersonnelle info) {
+        this.info = info;
+    }
+
+    /**
+     * Retourne les informations personnelles du client.
+     *
+     * @return les informations personnelles
+     */
+    InformationPersonnelle getInfo() {
+        return info;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CleClient && ((CleClient) obj).info == info;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(info);
+    }
+}
@@ -0,0 +1,262 @@
+package pizzas;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Façade asynchrone des services client d'une pizzeria.
+ * <p>
+ * Les opérations sont exécutées par un {@link Executor}. Pour garder l'ordre
+ * des opérations d'un même client, chacune est chaînée derrière la
+ * précédente opération du client : la façade conserve, pour chaque client
+ * ayant une opération en attente, le futur de sa dernière opération. Les
+ * clients y sont désignés par une {@link CleClient}, que la modification de
+ * leurs informations personnelles ne change pas. Les opérations qui ne
+ * concernent aucun client sont soumises directement.
+ */
+public class ClientAsynchrone implements AsyncInterClient {
+
+    /**
+     * Opération synchrone pouvant lever les exceptions des services client.
+     *
+     * @param <T> le type du résultat
+     */
+    @FunctionalInterface
+    private interface Operation<T> {
+
+        /**
+         * Exécute l'opération.
+         *
+         * @return le résultat de l'opération
+         * @throws Exception en cas d'échec de l'opération
+         */
+        T executer() throws Exception;
+    }
+
+    /** La pizzeria servie. */
+    private final Pizzaiolo pizzeria;
+
+    /** Exécuteur des opérations. */
+    private final Executor executeur;
+
+    /**
+     * Dernière opération soumise pour chaque client ayant une opération en
+     * attente ou en cours.
+     */
+    private final Map<CleClient, CompletableFuture<?>> dernieres =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Crée une façade exécutant les opérations dans le pool commun.
+     *
+     * @param pizzeria la pizzeria servie
+     */
+    public ClientAsynchrone(Pizzaiolo pizzeria) {
+        this(pizzeria, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Crée une façade.
+     *
+     * @param pizzeria  la pizzeria servie
+     * @param executeur l'exécuteur des opérations
+     */
+    public ClientAsynchrone(Pizzaiolo pizzeria, Executor executeur) {
+        this.pizzeria = pizzeria;
+        this.executeur = executeur;
+    }
+
+    /**
+     * Exécute une opération et termine un futur avec son résultat ou son
+     * exception. Une {@link Error} termine aussi le futur, pour ne pas laisser
+     * l'appelant attendre indéfiniment, puis est relancée vers l'exécuteur.
+     *
+     * @param operation l'opération à exécuter
+     * @param resultat  le futur à terminer
+     * @param <T>       le type du résultat
+     */
+    private static <T> void executer(Operation<T> operation, CompletableFuture<T> resultat) {
+        try {
+            resultat.complete(operation.executer());
+        } catch (Exception e) {
+            resultat.completeExceptionally(e);
+        } catch (Throwable e) {
+            resultat.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Soumet une opération sans contrainte d'ordre.
+     *
+     * @param operation l'opération à exécuter
+     * @param <T>       le type du résultat
+     * @return le futur résultat de l'opération
+     */
+    private <T> CompletableFuture<T> soumettre(Operation<T> operation) {
+        CompletableFuture<T> resultat = new CompletableFuture<>();
+        executeur.execute(() -> executer(operation, resultat));
+        return resultat;
+    }
+
+    /**
+     * Soumet une opération à exécuter après toutes les opérations déjà
+     * soumises pour le même client.
+     *
+     * @param client    le client concerné, ou {@code null} s'il est inconnu
+     * @param operation l'opération à exécuter
+     * @param <T>       le type du résultat
+     * @return le futur résultat de l'opération
+     */
+    private <T> CompletableFuture<T> soumettre(InformationPersonnelle client,
+                                               Operation<T> operation) {
+        if (client == null) {
+            return soumettre(operation);
+        }
+        CleClient cle = new CleClient(client);
+        CompletableFuture<T> resultat = new CompletableFuture<>();
+        CompletableFuture<?> suivante = dernieres.compute(cle, (k, derniere) ->
+                (derniere == null ? CompletableFuture.completedFuture(null) : derniere)
+                        .handleAsync((r, e) -> {
+                            executer(operation, resultat);
+                            return null;
+                        }, executeur));
+        // Le client n'est plus suivi dès que sa dernière opération est finie
+        suivante.whenComplete((r, e) -> dernieres.remove(cle, suivante));
+        return resultat;
+    }
+
+    /**
+     * Soumet une opération portant sur le client d'une session.
+     *
+     * @param session   le jeton de la session
+     * @param operation l'opération à exécuter
+     * @param <T>       le type du résultat
+     * @return le futur résultat de l'opération
+     */
+    private <T> CompletableFuture<T> pourSession(String session, Operation<T> operation) {
+        return soumettre(pizzeria.clientSession(session), operation);
+    }
+
+    /**
+     * Soumet une opération portant sur une commande, dans l'ordre des
+     * opérations de son client.
+     *
+     * @param cmd       la commande concernée
+     * @param session   le jeton de la session, utilisé si la commande est nulle
+     * @param operation l'opération à exécuter
+     * @param <T>       le type du résultat
+     * @return le futur résultat de l'opération
+     */
+    private <T> CompletableFuture<T> pourCommande(Commande cmd, String session,
+                                                  Operation<T> operation) {
+        if (cmd == null) {
+            return pourSession(session, operation);
+        }
+        return soumettre(cmd.getClient(), operation);
+    }
+
+    @Override
+    public CompletableFuture<Integer> inscription(String email, String mdp,
+                                                  InformationPersonnelle info) {
+        return soumettre(() -> pizzeria.inscription(email, mdp, info));
+    }
+
+    @Override
+    public CompletableFuture<String> ouvrirSession(String email, String mdp) {
+        return soumettre(() -> {
+            String session = pizzeria.ouvrirSession(email, mdp);
+            if (session == null) {
+                throw new NonConnecteException();
+            }
+            return session;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> fermerSession(String session) {
+        return pourSession(session, () -> {
+            pizzeria.fermerSession(session);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Commande> debuterCommande(String session) {
+        return pourSession(session, () -> pizzeria.debuterCommande(session));
+    }
+
+    @Override
+    public CompletableFuture<Void> ajouterPizza(String session, Pizza pizza, int nombre,
+                                                Commande cmd) {
+        return pourCommande(cmd, session, () -> {
+            pizzeria.ajouterPizza(session, pizza, nombre, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> ajouterPizzas(String session, Map<Pizza, Integer> pizzas,
+                                                 Commande cmd) {
+        return pourCommande(cmd, session, () -> {
+            pizzeria.ajouterPizzas(session, pizzas, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> validerCommande(String session, Commande cmd) {
+        return pourCommande(cmd, session, () -> {
+            pizzeria.validerCommande(session, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> annulerCommande(String session, Commande cmd) {
+        return pourCommande(cmd, session, () -> {
+            pizzeria.annulerCommande(session, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Commande> getCommande(String session, long id) {
+        return pourSession(session, () -> pizzeria.getCommande(session, id));
+    }
+
+    @Override
+    public CompletableFuture<List<Commande>> getCommandesEncours(String session) {
+        return pourSession(session, () -> pizzeria.getCommandesEncours(session));
+    }
+
+    @Override
+    public CompletableFuture<List<Commande>> getCommandePassees(String session) {
+        return pourSession(session, () -> pizzeria.getCommandePassees(session));
+    }
+
+    @Override
+    public CompletableFuture<Set<Pizza>> getPizzas() {
+        return soumettre(pizzeria::getPizzas);
+    }
+
+    @Override
+    public CompletableFuture<Set<Pizza>> selectionPizzas(String session, TypePizza type,
+                                                         Double prixMinimum, Double prixMaximum,
+                                                         String... ingredients) {
+        return pourSession(session, () -> pizzeria.selectionPizzas(session, type, prixMinimum,
+                prixMaximum, ingredients));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> ajouterEvaluation(String session, Pizza pizza, int note,
+                                                        String commentaire) {
+        return pourSession(session,
+                () -> pizzeria.ajouterEvaluation(session, pizza, note, commentaire));
+    }
+}
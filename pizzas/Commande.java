@@ -2,25 +2,43 @@ package pizzas;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Représente une commande passée par un client.
- * Une commande est définie par sa date, la liste des pizzas sélectionnées,
+ * Une commande est définie par sa date, les pizzas sélectionnées,
  * le client correspondant, et son statut (créée, validée, traitée).
+ * Les pizzas sont rangées en lignes : chaque pizza commandée avec son
+ * nombre d'exemplaires.
+ * Le contenu et le statut sont protégés par le moniteur de la commande.
  */
 public class Commande {
 
+    /**
+     * Identifiant de la commande attribué par la pizzeria.
+     * La valeur -1 indique une commande qui n'a été enregistrée par aucune
+     * pizzeria.
+     */
+    private final long id;
+
     /**
      * Date et heure de création de la commande.
      */
     private final LocalDateTime date;
 
     /**
-     * Liste interne des pizzas de la commande.
-     * Une copie défensive est effectuée dans le constructeur.
+     * Lignes de la commande : nombre d'exemplaires de chaque pizza, dans
+     * l'ordre du premier ajout de chaque pizza.
      */
-    private final List<Pizza> pizzas = new ArrayList<>();
+    private final Map<Pizza, Integer> lignes = new LinkedHashMap<>();
+
+    /**
+     * Nombre total de pizzas de la commande.
+     */
+    private int nombrePizzas;
 
     /**
      * Informations personnelles du client ayant passé la commande.
@@ -42,6 +60,21 @@ public class Commande {
      *                           ou si le client est nul
      */
     public Commande(List<Pizza> pizzas, InformationPersonnelle client) {
+        this(-1, pizzas, client);
+    }
+
+    /**
+     * Construit une nouvelle commande enregistrée sous un identifiant donné.
+     * Réservé à la pizzeria qui attribue les identifiants de ses commandes.
+     *
+     * @param id     identifiant de la commande dans la pizzeria
+     * @param pizzas liste des pizzas constituant la commande
+     * @param client informations personnelles du client
+     * @throws CommandeException si la liste de pizzas est nulle,
+     *                           si elle contient un élément nul,
+     *                           ou si le client est nul
+     */
+    Commande(long id, List<Pizza> pizzas, InformationPersonnelle client) {
         if (pizzas == null) {
             throw new CommandeException("La liste des pizzas ne peut pas etre null");
         }
@@ -49,19 +82,46 @@ public class Commande {
             throw new CommandeException("Le client ne peut pas etre null");
         }
 
+        this.id = id;
         this.date = LocalDateTime.now();
 
         for (Pizza pizza : pizzas) {
             if (pizza == null) {
                 throw new CommandeException("La liste de pizzas contient une pizza nulle.");
             }
-            this.pizzas.add(pizza);
+            ajouterExemplaires(pizza, 1);
         }
 
         this.client = client;
         this.statut = StatutCommande.CREE;
     }
 
+    /**
+     * Reconstruit une commande vide, au statut créée, à partir de son
+     * identifiant et de sa date. Réservé au chargement d'une sauvegarde de
+     * la pizzeria.
+     *
+     * @param id     identifiant de la commande dans la pizzeria
+     * @param date   date et heure de création de la commande
+     * @param client informations personnelles du client
+     */
+    Commande(long id, LocalDateTime date, InformationPersonnelle client) {
+        this.id = id;
+        this.date = date;
+        this.client = client;
+        this.statut = StatutCommande.CREE;
+    }
+
+    /**
+     * Retourne l'identifiant de la commande dans la pizzeria.
+     *
+     * @return l'identifiant de la commande, ou -1 si elle n'a pas été
+     *         enregistrée par une pizzeria
+     */
+    public long getId() {
+        return id;
+    }
+
     /**
      * Retourne la date de création de la commande.
      *
@@ -73,11 +133,59 @@ public class Commande {
 
     /**
      * Retourne une copie immuable de la liste des pizzas de la commande.
+     * Chaque exemplaire y figure une fois ; les exemplaires d'une même pizza
+     * sont regroupés.
      *
      * @return une copie immuable de la liste des pizzas
+     * @see #getLignes()
+     */
+    public synchronized List<Pizza> getPizzas() {
+        List<Pizza> resultat = new ArrayList<>(nombrePizzas);
+        for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+            resultat.addAll(Collections.nCopies(ligne.getValue(), ligne.getKey()));
+        }
+        return Collections.unmodifiableList(resultat);
+    }
+
+    /**
+     * Retourne une copie immuable des lignes de la commande : le nombre
+     * d'exemplaires de chaque pizza, dans l'ordre du premier ajout.
+     *
+     * @return une copie immuable des lignes de la commande
      */
-    public List<Pizza> getPizzas() {
-        return List.copyOf(pizzas);
+    public synchronized Map<Pizza, Integer> getLignes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(lignes));
+    }
+
+    /**
+     * Retourne le nombre d'exemplaires d'une pizza dans la commande.
+     *
+     * @param p la pizza
+     * @return le nombre d'exemplaires, 0 si la pizza n'est pas commandée
+     */
+    public synchronized int getQuantite(Pizza p) {
+        return lignes.getOrDefault(p, 0);
+    }
+
+    /**
+     * Retourne le nombre total de pizzas de la commande.
+     *
+     * @return le nombre de pizzas
+     */
+    public synchronized int getNombrePizzas() {
+        return nombrePizzas;
+    }
+
+    /**
+     * Ajoute des exemplaires d'une pizza aux lignes de la commande, sans
+     * vérification. Doit être appelée en tenant le moniteur de la commande.
+     *
+     * @param p      pizza à ajouter
+     * @param nombre nombre d'exemplaires à ajouter
+     */
+    private void ajouterExemplaires(Pizza p, int nombre) {
+        lignes.merge(p, nombre, Integer::sum);
+        nombrePizzas += nombre;
     }
 
     /**
@@ -94,7 +202,7 @@ public class Commande {
      *
      * @return le statut de la commande
      */
-    public StatutCommande getStatut() {
+    public synchronized StatutCommande getStatut() {
         return statut;
     }
 
@@ -110,7 +218,7 @@ public class Commande {
      * @param statut nouveau statut souhaité
      * @throws CommandeException si la transition de statut est interdite
      */
-    public void setStatut(StatutCommande statut) {
+    public synchronized void setStatut(StatutCommande statut) {
         if (this.statut.equals(StatutCommande.TRAITEE))
             throw new CommandeException("Le statut de cette commande ne peut pas être modifié");
 
@@ -133,7 +241,21 @@ public class Commande {
      * @throws CommandeException si la commande ne peut plus être modifiée
      *                           ou si la pizza est nulle
      */
-    public void ajouterPizza(Pizza p) {
+    public synchronized void ajouterPizza(Pizza p) {
+        ajouterPizza(p, 1);
+    }
+
+    /**
+     * Ajoute plusieurs exemplaires d'une pizza à la commande, en une seule
+     * prise du moniteur de la commande.
+     *
+     * @param p      pizza à ajouter
+     * @param nombre nombre d'exemplaires à ajouter
+     * @throws CommandeException si la commande ne peut plus être modifiée
+     *                           ou si la pizza est nulle
+     * @see #ajouterPizza(Pizza)
+     */
+    synchronized void ajouterPizza(Pizza p, int nombre) {
         if (!(this.statut.equals(StatutCommande.CREE)))
             throw new CommandeException("Cette commande ne peut pas être modifie");
 
@@ -141,11 +263,37 @@ public class Commande {
             throw new CommandeException("Impossible d'ajouter une pizza nulle.");
         }
 
-        this.pizzas.add(p);
+        ajouterExemplaires(p, nombre);
     }
 
     /**
-     * Retire une pizza de la commande.
+     * Ajoute plusieurs lignes à la commande, en une seule prise du moniteur
+     * de la commande. Aucune ligne n'est ajoutée si l'une est invalide.
+     *
+     * @param ajouts nombre d'exemplaires à ajouter pour chaque pizza
+     * @throws CommandeException si la commande ne peut plus être modifiée,
+     *                           si une pizza est nulle ou si un nombre n'est
+     *                           pas strictement positif
+     */
+    synchronized void ajouterPizzas(Map<Pizza, Integer> ajouts) {
+        if (!(this.statut.equals(StatutCommande.CREE)))
+            throw new CommandeException("Cette commande ne peut pas être modifie");
+
+        for (Map.Entry<Pizza, Integer> ajout : ajouts.entrySet()) {
+            if (ajout.getKey() == null) {
+                throw new CommandeException("Impossible d'ajouter une pizza nulle.");
+            }
+            if (ajout.getValue() == null || ajout.getValue() <= 0) {
+                throw new CommandeException("Nombre de pizzas invalide.");
+            }
+        }
+        for (Map.Entry<Pizza, Integer> ajout : ajouts.entrySet()) {
+            ajouterExemplaires(ajout.getKey(), ajout.getValue());
+        }
+    }
+
+    /**
+     * Retire un exemplaire d'une pizza de la commande.
      *
      * Conditions :
      * <ul>
@@ -157,13 +305,20 @@ public class Commande {
      * @throws CommandeException si la commande ne peut plus être modifiée
      *                           ou si la pizza n'existe pas dans la liste
      */
-    public void retirerPizza(Pizza p) {
+    public synchronized void retirerPizza(Pizza p) {
         if (!(this.statut.equals(StatutCommande.CREE)))
             throw new CommandeException("Cette commande ne peut pas etre modifie");
 
-        if (!pizzas.remove(p)) {
+        Integer quantite = lignes.get(p);
+        if (quantite == null) {
             throw new CommandeException("La pizza à retirer n'existe pas dans la commande.");
         }
+        if (quantite == 1) {
+            lignes.remove(p);
+        } else {
+            lignes.put(p, quantite - 1);
+        }
+        nombrePizzas--;
     }
 
     /**
@@ -173,12 +328,13 @@ public class Commande {
      *         le nombre de pizzas.
      */
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return "Commande{" +
-                "date=" + date +
+                "id=" + id +
+                ", date=" + date +
                 ", client=" + client +
                 ", statut=" + statut +
-                ", nbPizzas=" + pizzas.size() +
+                ", nbPizzas=" + nombrePizzas +
                 '}';
     }
 
@@ -189,7 +345,7 @@ public class Commande {
      *     <li>elles ont la même date,</li>
      *     <li>le même client,</li>
      *     <li>le même statut,</li>
-     *     <li>et la même liste de pizzas.</li>
+     *     <li>et les mêmes lignes (même nombre d'exemplaires de chaque pizza).</li>
      * </ul>
      *
      * @param o objet à comparer
@@ -204,7 +360,7 @@ public class Commande {
         return date.equals(c.date)
                 && client.equals(c.client)
                 && statut.equals(c.statut)
-                && pizzas.equals(c.pizzas);
+                && lignes.equals(c.lignes);
     }
 
     /**
@@ -218,7 +374,7 @@ public class Commande {
         int result = date.hashCode();
         result = 31 * result + client.hashCode();
         result = 31 * result + statut.hashCode();
-        result = 31 * result + pizzas.hashCode();
+        result = 31 * result + lignes.hashCode();
         return result;
     }
 
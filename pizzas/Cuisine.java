@@ -0,0 +1,256 @@
+package pizzas;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Planification de la cuisine : répartit la préparation et la cuisson des
+ * pizzas des commandes traitées entre plusieurs postes de préparation et
+ * plusieurs fours, et estime l'heure à laquelle chaque commande sera prête.
+ * <p>
+ * Chaque pizza d'une commande est une tâche en deux étapes : elle est
+ * préparée sur un poste, puis cuite dans un four. La durée de préparation
+ * dépend du nombre d'ingrédients, la durée de cuisson du type de pizza.
+ * Chaque étape est confiée au poste ou au four qui se libère le plus tôt.
+ * <p>
+ * Pour réduire le temps moyen d'attente des clients, les commandes planifiées
+ * ensemble passent de la moins longue à la plus longue à réaliser ; dans une
+ * commande, les pizzas les plus longues à cuire passent en premier pour
+ * équilibrer les fours.
+ */
+public class Cuisine {
+
+    /** Durée de préparation fixe d'une pizza. */
+    public static final Duration PREPARATION_BASE = Duration.ofSeconds(120);
+
+    /** Durée de préparation ajoutée par ingrédient. */
+    public static final Duration PREPARATION_PAR_INGREDIENT = Duration.ofSeconds(20);
+
+    /** Durée de cuisson de chaque type de pizza. */
+    private static final Map<TypePizza, Duration> CUISSONS = new EnumMap<>(TypePizza.class);
+
+    static {
+        CUISSONS.put(TypePizza.VIANDE, Duration.ofSeconds(300));
+        CUISSONS.put(TypePizza.VEGETARIENNE, Duration.ofSeconds(240));
+        CUISSONS.put(TypePizza.REGIONALE, Duration.ofSeconds(360));
+    }
+
+    /** Horloge donnant l'heure courante. */
+    private final Clock horloge;
+
+    /**
+     * Instant où chaque poste de préparation se libère, le plus proche en
+     * tête. Les accès sont synchronisés sur la cuisine.
+     */
+    private final PriorityQueue<Instant> postes = new PriorityQueue<>();
+
+    /**
+     * Instant où chaque four se libère, le plus proche en tête. Les accès
+     * sont synchronisés sur la cuisine.
+     */
+    private final PriorityQueue<Instant> fours = new PriorityQueue<>();
+
+    /**
+     * Instant estimé où chaque commande planifiée sera prête, pour les
+     * commandes qui ne le sont pas encore. Lu sans verrou ; modifié en tenant
+     * le moniteur de la cuisine.
+     */
+    private final Map<Long, Instant> heuresPretes = new ConcurrentHashMap<>();
+
+    /**
+     * Les mêmes commandes, la plus tôt prête en tête, pour oublier chacune
+     * dès que son heure est passée. Les accès sont synchronisés sur la
+     * cuisine.
+     */
+    private final PriorityQueue<Map.Entry<Instant, Long>> echeances =
+            new PriorityQueue<>(Map.Entry.comparingByKey());
+
+    /**
+     * Crée une cuisine utilisant l'horloge du système.
+     *
+     * @param nombreFours  le nombre de fours
+     * @param nombrePostes le nombre de postes de préparation
+     * @throws IllegalArgumentException si l'un des nombres n'est pas
+     *                                  strictement positif
+     */
+    public Cuisine(int nombreFours, int nombrePostes) {
+        this(nombreFours, nombrePostes, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Crée une cuisine.
+     *
+     * @param nombreFours  le nombre de fours
+     * @param nombrePostes le nombre de postes de préparation
+     * @param horloge      l'horloge donnant l'heure courante
+     * @throws IllegalArgumentException si l'un des nombres n'est pas
+     *                                  strictement positif
+     */
+    public Cuisine(int nombreFours, int nombrePostes, Clock horloge) {
+        if (nombreFours <= 0 || nombrePostes <= 0) {
+            throw new IllegalArgumentException("Il faut au moins un four et un poste.");
+        }
+        this.horloge = horloge;
+        Instant maintenant = horloge.instant();
+        for (int i = 0; i < nombreFours; i++) {
+            fours.add(maintenant);
+        }
+        for (int i = 0; i < nombrePostes; i++) {
+            postes.add(maintenant);
+        }
+    }
+
+    /**
+     * Estime la durée de préparation d'une pizza.
+     *
+     * @param pizza la pizza
+     * @return la durée de préparation
+     */
+    public static Duration dureePreparation(Pizza pizza) {
+        return PREPARATION_BASE.plus(
+                PREPARATION_PAR_INGREDIENT.multipliedBy(pizza.getIngredients().size()));
+    }
+
+    /**
+     * Estime la durée de cuisson d'une pizza.
+     *
+     * @param pizza la pizza
+     * @return la durée de cuisson
+     */
+    public static Duration dureeCuisson(Pizza pizza) {
+        return CUISSONS.get(pizza.getTypePizza());
+    }
+
+    /**
+     * Estime la durée totale de travail d'une commande, préparation et
+     * cuisson de toutes ses pizzas.
+     *
+     * @param lignes le nombre d'exemplaires de chaque pizza de la commande
+     * @return la durée de travail
+     */
+    private static Duration travail(Map<Pizza, Integer> lignes) {
+        Duration total = Duration.ZERO;
+        for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+            Pizza p = ligne.getKey();
+            total = total.plus(dureePreparation(p).plus(dureeCuisson(p))
+                    .multipliedBy(ligne.getValue()));
+        }
+        return total;
+    }
+
+    /**
+     * Planifie des commandes qui viennent d'être traitées et estime l'heure à
+     * laquelle chacune sera prête.
+     *
+     * @param commandes les commandes à planifier
+     * @return l'heure estimée de chaque commande, dans l'ordre de la liste
+     */
+    public Map<Commande, LocalDateTime> planifier(List<Commande> commandes) {
+        // Ordre de passage : de la commande la plus courte à la plus longue
+        List<Commande> ordre = new ArrayList<>(commandes);
+        Map<Commande, Map<Pizza, Integer>> contenus = new LinkedHashMap<>();
+        Map<Commande, Duration> travaux = new LinkedHashMap<>();
+        for (Commande cmd : ordre) {
+            Map<Pizza, Integer> lignes = cmd.getLignes();
+            List<Pizza> pizzas = new ArrayList<>(lignes.keySet());
+            pizzas.sort(Comparator.comparing(Cuisine::dureeCuisson).reversed());
+            Map<Pizza, Integer> triees = new LinkedHashMap<>();
+            for (Pizza p : pizzas) {
+                triees.put(p, lignes.get(p));
+            }
+            contenus.put(cmd, triees);
+            travaux.put(cmd, travail(triees));
+        }
+        ordre.sort(Comparator.comparing(travaux::get));
+
+        Map<Commande, Instant> pretes = new LinkedHashMap<>();
+        synchronized (this) {
+            Instant maintenant = horloge.instant();
+            oublierPassees(maintenant);
+            for (Commande cmd : ordre) {
+                Instant prete = maintenant;
+                for (Map.Entry<Pizza, Integer> ligne : contenus.get(cmd).entrySet()) {
+                    Pizza p = ligne.getKey();
+                    Duration preparation = dureePreparation(p);
+                    Duration cuisson = dureeCuisson(p);
+                    for (int i = 0; i < ligne.getValue(); i++) {
+                        Instant finPreparation = occuper(postes, maintenant, preparation);
+                        Instant finCuisson = occuper(fours, finPreparation, cuisson);
+                        if (finCuisson.isAfter(prete)) {
+                            prete = finCuisson;
+                        }
+                    }
+                }
+                pretes.put(cmd, prete);
+                heuresPretes.put(cmd.getId(), prete);
+                echeances.add(Map.entry(prete, cmd.getId()));
+            }
+        }
+
+        Map<Commande, LocalDateTime> resultat = new LinkedHashMap<>();
+        ZoneId zone = horloge.getZone();
+        for (Commande cmd : commandes) {
+            resultat.put(cmd, LocalDateTime.ofInstant(pretes.get(cmd), zone));
+        }
+        return resultat;
+    }
+
+    /**
+     * Oublie les commandes dont l'heure estimée est passée. Doit être appelée
+     * en tenant le moniteur de la cuisine.
+     *
+     * @param maintenant l'instant courant
+     */
+    private void oublierPassees(Instant maintenant) {
+        while (!echeances.isEmpty() && !echeances.peek().getKey().isAfter(maintenant)) {
+            Map.Entry<Instant, Long> echeance = echeances.poll();
+            heuresPretes.remove(echeance.getValue(), echeance.getKey());
+        }
+    }
+
+    /**
+     * Occupe le poste ou le four qui se libère le plus tôt. Doit être appelée
+     * en tenant le moniteur de la cuisine.
+     *
+     * @param machines l'instant de libération de chaque poste ou four
+     * @param auPlusTot l'instant à partir duquel la tâche peut commencer
+     * @param duree    la durée de la tâche
+     * @return l'instant de fin de la tâche
+     */
+    private static Instant occuper(PriorityQueue<Instant> machines, Instant auPlusTot,
+                                   Duration duree) {
+        Instant libre = machines.poll();
+        Instant debut = libre.isAfter(auPlusTot) ? libre : auPlusTot;
+        Instant fin = debut.plus(duree);
+        machines.add(fin);
+        return fin;
+    }
+
+    /**
+     * Retourne l'heure estimée à laquelle une commande planifiée sera prête.
+     * Une commande est oubliée dès que son heure est passée, pour que la
+     * cuisine ne garde que les estimations encore utiles.
+     *
+     * @param commande la commande
+     * @return l'heure estimée ou {@code null} si la commande n'a pas été
+     *         planifiée ou si elle est déjà prête
+     */
+    public LocalDateTime getHeurePrete(Commande commande) {
+        Instant prete = commande == null ? null : heuresPretes.get(commande.getId());
+        if (prete == null || !prete.isAfter(horloge.instant())) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(prete, horloge.getZone());
+    }
+}
@@ -0,0 +1,207 @@
+package pizzas;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffuseur d'éléments à des abonnés {@link Flow}, sans verrou du côté de
+ * l'émetteur.
+ * <p>
+ * Chaque abonné a sa propre file bornée, non bloquante. Diffuser un élément
+ * revient à le déposer dans la file de chaque abonné : aucun moniteur commun
+ * n'est pris, et rien n'est fait quand il n'y a aucun abonné. Un élément qui
+ * ne tient plus dans la file d'un abonné est perdu pour lui. Les éléments sont
+ * remis à chaque abonné par un {@link Executor}, au rythme de sa demande, une
+ * seule tâche à la fois par abonné.
+ *
+ * @param <T> le type des éléments diffusés
+ */
+final class Diffuseur<T> implements Flow.Publisher<T> {
+
+    /**
+     * Abonnement d'un abonné : sa file, sa demande et l'état de la remise.
+     */
+    private final class Abonnement implements Flow.Subscription, Runnable {
+
+        /** L'abonné. */
+        private final Flow.Subscriber<? super T> abonne;
+
+        /** Éléments en attente de remise. */
+        private final Queue<T> file = new ConcurrentLinkedQueue<>();
+
+        /** Nombre d'éléments dans la file, borné par la capacité. */
+        private final AtomicInteger taille = new AtomicInteger();
+
+        /** Nombre d'éléments demandés et pas encore remis. */
+        private final AtomicLong demande = new AtomicLong();
+
+        /**
+         * Nombre de signaux reçus depuis le début de la remise en cours ; une
+         * remise n'est lancée que par le signal qui le fait passer de 0 à 1.
+         * Il vaut 1 à la création pour que la première remise, qui appelle
+         * {@code onSubscribe}, passe avant toute autre.
+         */
+        private final AtomicInteger travail = new AtomicInteger(1);
+
+        /** Vrai une fois l'abonnement annulé. */
+        private volatile boolean annule;
+
+        /** Vrai tant que {@code onSubscribe} n'a pas été appelé. */
+        private boolean nouveau = true;
+
+        /** Erreur à transmettre à l'abonné à la prochaine remise. */
+        private volatile Throwable erreur;
+
+        /**
+         * Crée un abonnement.
+         *
+         * @param abonne l'abonné
+         */
+        Abonnement(Flow.Subscriber<? super T> abonne) {
+            this.abonne = abonne;
+        }
+
+        /**
+         * Dépose un élément dans la file, s'il y a de la place, et lance sa
+         * remise.
+         *
+         * @param element l'élément
+         */
+        void deposer(T element) {
+            if (taille.incrementAndGet() > capacite) {
+                taille.decrementAndGet();
+                return;
+            }
+            file.offer(element);
+            signaler();
+        }
+
+        /**
+         * Lance une remise si aucune n'est en cours.
+         */
+        private void signaler() {
+            if (travail.getAndIncrement() == 0) {
+                executeur.execute(this);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                erreur = new IllegalArgumentException("Demande non positive : " + n);
+            } else {
+                demande.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            signaler();
+        }
+
+        @Override
+        public void cancel() {
+            annule = true;
+            abonnes.remove(this);
+        }
+
+        /**
+         * Remet à l'abonné les éléments demandés, jusqu'à ce qu'aucun signal
+         * ne soit plus en attente.
+         */
+        @Override
+        public void run() {
+            int signaux = 1;
+            do {
+                if (nouveau) {
+                    nouveau = false;
+                    remettre(() -> abonne.onSubscribe(this));
+                }
+                while (!annule && erreur == null && demande.get() > 0) {
+                    T element = file.poll();
+                    if (element == null) {
+                        break;
+                    }
+                    taille.decrementAndGet();
+                    demande.decrementAndGet();
+                    remettre(() -> abonne.onNext(element));
+                }
+                Throwable e = erreur;
+                if (e != null && !annule) {
+                    cancel();
+                    abonne.onError(e);
+                }
+                signaux = travail.addAndGet(-signaux);
+            } while (signaux != 0);
+        }
+
+        /**
+         * Appelle une méthode de l'abonné ; si elle échoue, l'abonnement est
+         * annulé et l'abonné reçoit l'erreur.
+         *
+         * @param appel l'appel à l'abonné
+         */
+        private void remettre(Runnable appel) {
+            if (annule) {
+                return;
+            }
+            try {
+                appel.run();
+            } catch (Throwable e) {
+                erreur = e;
+            }
+        }
+    }
+
+    /** Abonnements en cours, lus sans verrou à chaque diffusion. */
+    private final List<Abonnement> abonnes = new CopyOnWriteArrayList<>();
+
+    /** Exécuteur des remises aux abonnés. */
+    private final Executor executeur;
+
+    /** Capacité de la file de chaque abonné. */
+    private final int capacite;
+
+    /**
+     * Crée un diffuseur.
+     *
+     * @param executeur l'exécuteur des remises aux abonnés
+     * @param capacite  la capacité de la file de chaque abonné
+     * @throws IllegalArgumentException si la capacité n'est pas strictement
+     *                                  positive
+     */
+    Diffuseur(Executor executeur, int capacite) {
+        if (capacite <= 0) {
+            throw new IllegalArgumentException("Capacité non positive : " + capacite);
+        }
+        this.executeur = executeur;
+        this.capacite = capacite;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> abonne) {
+        Abonnement abonnement = new Abonnement(abonne);
+        for (Abonnement a : abonnes) {
+            if (a.abonne == abonne) {
+                abonnement.erreur = new IllegalStateException("Abonné déjà inscrit.");
+                executeur.execute(abonnement);
+                return;
+            }
+        }
+        abonnes.add(abonnement);
+        executeur.execute(abonnement);
+    }
+
+    /**
+     * Diffuse un élément à tous les abonnés, sans attendre.
+     *
+     * @param element l'élément à diffuser
+     */
+    void diffuser(T element) {
+        for (Abonnement a : abonnes) {
+            a.deposer(element);
+        }
+    }
+}
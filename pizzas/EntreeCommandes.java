@@ -0,0 +1,145 @@
+package pizzas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Registre des commandes en cours de création (statut CREE).
+ * <p>
+ * Les commandes en cours ne concernent que leur client : elles ne sont donc
+ * pas rangées dans les structures partagées de la pizzeria mais réparties en
+ * tranches selon leur client. Chaque tranche a son propre moniteur, si bien
+ * que des clients différents créent, remplissent et valident leurs commandes
+ * sans se gêner. Une commande ne quitte ce registre que lorsqu'elle est
+ * validée ou annulée.
+ */
+final class EntreeCommandes {
+
+    /** Nombre de tranches (puissance de 2). */
+    private static final int NOMBRE_TRANCHES = 64;
+
+    /**
+     * Tranche du registre : les commandes en cours des clients qui y sont
+     * rangés, par client puis par identifiant. Les clients sont comparés par
+     * identité (voir {@link CleClient}). Les accès sont synchronisés sur la
+     * tranche.
+     */
+    private static final class Tranche {
+
+        /** Commandes en cours de chaque client, ordonnées par identifiant. */
+        private final Map<InformationPersonnelle, NavigableMap<Long, Commande>> parClient =
+                new IdentityHashMap<>();
+
+        /** Commandes en cours de la tranche, indexées par identifiant. */
+        private final Map<Long, Commande> parId = new HashMap<>();
+    }
+
+    /** Tranches du registre. */
+    private final Tranche[] tranches = new Tranche[NOMBRE_TRANCHES];
+
+    /**
+     * Crée un registre vide.
+     */
+    EntreeCommandes() {
+        for (int i = 0; i < tranches.length; i++) {
+            tranches[i] = new Tranche();
+        }
+    }
+
+    /**
+     * Retourne la tranche d'un client.
+     *
+     * @param client le client concerné
+     * @return la tranche où sont rangées ses commandes en cours
+     */
+    private Tranche tranche(InformationPersonnelle client) {
+        int h = System.identityHashCode(client);
+        return tranches[(h ^ (h >>> 16)) & (NOMBRE_TRANCHES - 1)];
+    }
+
+    /**
+     * Enregistre une commande qui vient d'être créée.
+     *
+     * @param cmd la commande en cours
+     */
+    void ajouter(Commande cmd) {
+        Tranche t = tranche(cmd.getClient());
+        synchronized (t) {
+            t.parId.put(cmd.getId(), cmd);
+            t.parClient.computeIfAbsent(cmd.getClient(), k -> new TreeMap<>())
+                    .put(cmd.getId(), cmd);
+        }
+    }
+
+    /**
+     * Retire une commande du registre, parce qu'elle est validée ou annulée.
+     *
+     * @param cmd la commande à retirer
+     * @return {@code true} si la commande était enregistrée
+     */
+    boolean retirer(Commande cmd) {
+        Tranche t = tranche(cmd.getClient());
+        synchronized (t) {
+            if (t.parId.get(cmd.getId()) != cmd) {
+                return false;
+            }
+            t.parId.remove(cmd.getId());
+            NavigableMap<Long, Commande> duClient = t.parClient.get(cmd.getClient());
+            duClient.remove(cmd.getId());
+            if (duClient.isEmpty()) {
+                t.parClient.remove(cmd.getClient());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retourne une commande en cours d'un client à partir de son identifiant.
+     *
+     * @param client le client concerné
+     * @param id     l'identifiant de la commande
+     * @return la commande ou {@code null} si le client n'a aucune commande en
+     *         cours portant cet identifiant
+     */
+    Commande get(InformationPersonnelle client, long id) {
+        Tranche t = tranche(client);
+        synchronized (t) {
+            NavigableMap<Long, Commande> duClient = t.parClient.get(client);
+            return duClient == null ? null : duClient.get(id);
+        }
+    }
+
+    /**
+     * Vérifie qu'une commande est enregistrée comme commande en cours.
+     *
+     * @param cmd la commande à vérifier
+     * @return {@code true} si la commande est en cours
+     */
+    boolean contient(Commande cmd) {
+        Tranche t = tranche(cmd.getClient());
+        synchronized (t) {
+            return t.parId.get(cmd.getId()) == cmd;
+        }
+    }
+
+    /**
+     * Retourne les commandes en cours d'un client, de la plus ancienne à la
+     * plus récente.
+     *
+     * @param client le client concerné
+     * @return une nouvelle liste, vide si le client n'a aucune commande en
+     *         cours
+     */
+    List<Commande> commandes(InformationPersonnelle client) {
+        Tranche t = tranche(client);
+        synchronized (t) {
+            NavigableMap<Long, Commande> duClient = t.parClient.get(client);
+            return duClient == null ? new ArrayList<>() : new ArrayList<>(duClient.values());
+        }
+    }
+}
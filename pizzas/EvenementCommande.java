@@ -0,0 +1,130 @@
+package pizzas;
+
+import java.time.LocalDateTime;
+
+/**
+ * Représente une étape du cycle de vie d'une commande : création, ajout de
+ * pizzas, validation, annulation ou traitement. Les événements sont diffusés
+ * par {@link InterPizzaiolo#fluxCommandes()}.
+ */
+public final class EvenementCommande {
+
+    /**
+     * Nature de l'étape franchie par la commande.
+     */
+    public enum Nature {
+
+        /** La commande vient d'être créée par son client. */
+        CREATION,
+
+        /** Des pizzas viennent d'être ajoutées à la commande. */
+        AJOUT_PIZZA,
+
+        /** La commande vient d'être validée par son client. */
+        VALIDATION,
+
+        /** La commande vient d'être annulée par son client. */
+        ANNULATION,
+
+        /** La commande vient d'être prise en charge par la cuisine. */
+        TRAITEMENT,
+    }
+
+    /** Nature de l'étape. */
+    private final Nature nature;
+
+    /** Commande concernée. */
+    private final Commande commande;
+
+    /** Pizza ajoutée ({@code null} sauf pour un ajout de pizzas). */
+    private final Pizza pizza;
+
+    /** Nombre d'exemplaires ajoutés (0 sauf pour un ajout de pizzas). */
+    private final int nombre;
+
+    /** Date et heure de l'étape. */
+    private final LocalDateTime date;
+
+    /**
+     * Crée un événement.
+     *
+     * @param nature   la nature de l'étape
+     * @param commande la commande concernée
+     * @param pizza    la pizza ajoutée ou {@code null}
+     * @param nombre   le nombre d'exemplaires ajoutés ou 0
+     */
+    EvenementCommande(Nature nature, Commande commande, Pizza pizza, int nombre) {
+        this.nature = nature;
+        this.commande = commande;
+        this.pizza = pizza;
+        this.nombre = nombre;
+        this.date = LocalDateTime.now();
+    }
+
+    /**
+     * Crée un événement sans pizza associée.
+     *
+     * @param nature   la nature de l'étape
+     * @param commande la commande concernée
+     */
+    EvenementCommande(Nature nature, Commande commande) {
+        this(nature, commande, null, 0);
+    }
+
+    /**
+     * Retourne la nature de l'étape.
+     *
+     * @return la nature de l'étape
+     */
+    public Nature getNature() {
+        return nature;
+    }
+
+    /**
+     * Retourne la commande concernée.
+     *
+     * @return la commande
+     */
+    public Commande getCommande() {
+        return commande;
+    }
+
+    /**
+     * Retourne la pizza ajoutée, pour un événement {@link Nature#AJOUT_PIZZA}.
+     *
+     * @return la pizza ajoutée ou {@code null}
+     */
+    public Pizza getPizza() {
+        return pizza;
+    }
+
+    /**
+     * Retourne le nombre d'exemplaires ajoutés, pour un événement
+     * {@link Nature#AJOUT_PIZZA}.
+     *
+     * @return le nombre d'exemplaires ajoutés, ou 0
+     */
+    public int getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Retourne la date et l'heure de l'étape.
+     *
+     * @return la date de l'étape
+     */
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Retourne une représentation textuelle de l'événement.
+     *
+     * @return une chaîne représentant l'événement
+     */
+    @Override
+    public String toString() {
+        return "EvenementCommande{" + nature + ", commande=" + commande.getId()
+                + (pizza == null ? "" : ", pizza=" + pizza.getNom() + " x" + nombre) + "}";
+    }
+}
@@ -0,0 +1,166 @@
+package pizzas;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index des pizzas utilisé pour appliquer les filtres de recherche.
+ * <p>
+ * Pizzas et ingrédients sont désignés par le numéro dense que leur attribue
+ * la carte. Pour chaque ingrédient et pour chaque type de pizza, l'index
+ * conserve l'ensemble des numéros des pizzas concernées sous forme de
+ * {@link BitSet}. Un filtre se résume alors à une intersection de ces
+ * ensembles, effectuée mot machine par mot machine.
+ * <p>
+ * Un index n'est jamais modifié une fois publié. Une {@link Modification}
+ * produit l'index suivant en ne recopiant que les ensembles qu'elle change ;
+ * les autres sont partagés avec l'index précédent.
+ */
+final class IndexFiltres {
+
+    /** Index vide. */
+    static final IndexFiltres VIDE =
+            new IndexFiltres(VecteurPersistant.vide(), new EnumMap<>(TypePizza.class));
+
+    /** Pour chaque numéro d'ingrédient, les numéros des pizzas qui le contiennent. */
+    private final VecteurPersistant<BitSet> pizzasParIngredient;
+
+    /** Pour chaque type de pizza, les numéros des pizzas de ce type. */
+    private final Map<TypePizza, BitSet> pizzasParType;
+
+    /**
+     * Crée un index.
+     *
+     * @param pizzasParIngredient les pizzas de chaque ingrédient
+     * @param pizzasParType       les pizzas de chaque type, map qui ne sera
+     *                            plus modifiée
+     */
+    private IndexFiltres(VecteurPersistant<BitSet> pizzasParIngredient,
+                         Map<TypePizza, BitSet> pizzasParType) {
+        this.pizzasParIngredient = pizzasParIngredient;
+        this.pizzasParType = pizzasParType;
+    }
+
+    /**
+     * Commence la construction de l'index suivant.
+     *
+     * @return une modification partant de cet index
+     */
+    Modification modifier() {
+        return new Modification(this);
+    }
+
+    /**
+     * Calcule les numéros des pizzas d'un type donné contenant tous les
+     * ingrédients demandés.
+     *
+     * @param type         le type recherché, ou {@code null} pour tous les types
+     * @param ingredients  les numéros des ingrédients que doivent contenir les
+     *                     pizzas
+     * @param nombrePizzas le nombre de pizzas de la carte
+     * @return un nouvel ensemble de numéros de pizzas, modifiable par l'appelant
+     */
+    BitSet selection(TypePizza type, int[] ingredients, int nombrePizzas) {
+        BitSet resultat;
+        if (type == null) {
+            resultat = new BitSet(nombrePizzas);
+            resultat.set(0, nombrePizzas);
+        } else {
+            BitSet memeType = pizzasParType.get(type);
+            resultat = memeType == null ? new BitSet() : (BitSet) memeType.clone();
+        }
+        for (int ingredient : ingredients) {
+            resultat.and(pizzasParIngredient.get(ingredient));
+        }
+        return resultat;
+    }
+
+    /**
+     * Construction de l'index suivant. Les ensembles changés sont recopiés une
+     * seule fois par modification, quel que soit le nombre de changements
+     * qu'ils reçoivent. Une modification ne sert plus une fois publiée.
+     */
+    static final class Modification {
+
+        /** Pizzas de chaque ingrédient. */
+        private VecteurPersistant<BitSet> pizzasParIngredient;
+
+        /** Pizzas de chaque type. */
+        private final Map<TypePizza, BitSet> pizzasParType;
+
+        /** Ensembles créés par cette modification, qu'elle peut changer. */
+        private final Set<BitSet> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Crée une modification.
+         *
+         * @param base l'index de départ
+         */
+        private Modification(IndexFiltres base) {
+            this.pizzasParIngredient = base.pizzasParIngredient;
+            this.pizzasParType = new EnumMap<>(base.pizzasParType);
+        }
+
+        /**
+         * Retourne un ensemble que cette modification peut changer.
+         *
+         * @param ensemble l'ensemble actuel, ou {@code null}
+         * @return l'ensemble lui-même s'il a été créé par cette modification,
+         *         sinon une copie
+         */
+        private BitSet modifiable(BitSet ensemble) {
+            if (ensemble != null && copies.contains(ensemble)) {
+                return ensemble;
+            }
+            BitSet copie = ensemble == null ? new BitSet() : (BitSet) ensemble.clone();
+            copies.add(copie);
+            return copie;
+        }
+
+        /**
+         * Enregistre un nouvel ingrédient, qui reçoit le numéro suivant.
+         */
+        void ajouterIngredient() {
+            pizzasParIngredient = pizzasParIngredient.ajouter(modifiable(null));
+        }
+
+        /**
+         * Enregistre une nouvelle pizza.
+         *
+         * @param pizza le numéro de la pizza
+         * @param type  son type
+         */
+        void ajouterPizza(int pizza, TypePizza type) {
+            BitSet memeType = modifiable(pizzasParType.get(type));
+            memeType.set(pizza);
+            pizzasParType.put(type, memeType);
+        }
+
+        /**
+         * Indique si une pizza contient un ingrédient.
+         *
+         * @param ingredient le numéro de l'ingrédient
+         * @param pizza      le numéro de la pizza
+         * @param present    {@code true} si la pizza le contient désormais
+         */
+        void changerIngredient(int ingredient, int pizza, boolean present) {
+            BitSet contenant = modifiable(pizzasParIngredient.get(ingredient));
+            contenant.set(pizza, present);
+            pizzasParIngredient = pizzasParIngredient.avec(ingredient, contenant);
+        }
+
+        /**
+         * Termine la modification.
+         *
+         * @return l'index suivant
+         */
+        IndexFiltres publier() {
+            copies.clear();
+            return new IndexFiltres(pizzasParIngredient, new EnumMap<>(pizzasParType));
+        }
+    }
+}
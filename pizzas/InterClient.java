@@ -1,6 +1,7 @@
 package pizzas;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -68,6 +69,20 @@ public interface InterClient {
   void ajouterPizza(Pizza pizza, int nombre, Commande cmd)
       throws NonConnecteException, CommandeException;
   
+  /**
+   * Ajoute plusieurs pizzas à une commande en une seule fois. Aucune pizza
+   * n'est ajoutée si l'une des lignes est invalide.
+   *
+   * @param pizzas le nombre d'exemplaires commandés de chaque pizza
+   * @param cmd la commande en cours à laquelle on ajoute les pizzas
+   * @throws NonConnecteException si aucun client n'est connecté
+   * @throws CommandeException en cas de problème avec l'ajout des pizzas à la
+   *         commande : la commande n'est pas une commande en cours, une pizza
+   *         n'existe pas, un nombre n'est pas strictement positif...
+   */
+  void ajouterPizzas(Map<Pizza, Integer> pizzas, Commande cmd)
+      throws NonConnecteException, CommandeException;
+  
   /**
    * Valide une commande en cours. Une fois cela fait, la commande est visible
    * par le pizzaïlo et le client ne peut plus la modifier. La commande
@@ -77,7 +92,8 @@ public interface InterClient {
    * @throws NonConnecteException si aucun client n'est connecté
    * @throws CommandeException en cas de problème avec la validation de la
    *         commande : la commande n'est pas une commande en cours, la commande
-   *         n'a pas été créée par le client connecté...
+   *         n'a pas été créée par le client connecté, la cuisine a trop de
+   *         commandes en attente...
    */
   void validerCommande(Commande cmd)
       throws NonConnecteException, CommandeException;
@@ -115,6 +131,16 @@ public interface InterClient {
    */
   List<Commande> getCommandePassees() throws NonConnecteException;
   
+  /**
+   * Renvoie une commande du client connecté à partir de son identifiant.
+   *
+   * @param id l'identifiant de la commande (voir {@link Commande#getId()})
+   * @return la commande correspondante ou <code>null</code> si aucune commande
+   *         du client connecté ne porte cet identifiant
+   * @throws NonConnecteException si aucun client n'est connecté
+   */
+  Commande getCommande(long id) throws NonConnecteException;
+  
   /**
    * Renvoie l'ensemble des pizzas en vente.
    *
@@ -123,6 +149,15 @@ public interface InterClient {
    */
   Set<Pizza> getPizzas();
   
+  /**
+   * Renvoie la pizza en vente portant un certain nom.
+   *
+   * @param nom le nom de la pizza recherchée
+   * @return la pizza de ce nom ou <code>null</code> si aucune pizza de ce nom
+   *         n'est en vente
+   */
+  Pizza getPizza(String nom);
+  
   /**
    * Ajoute un filtre en fonction du type de la pizza pour ne conserver que les
    * pizzas du type défini.
@@ -149,6 +184,18 @@ public interface InterClient {
    */
   void ajouterFiltre(double prixMaximum);
   
+  /**
+   * Ajoute un filtre de plage de prix pour ne conserver que les pizzas dont le
+   * prix est compris entre un minimum et un maximum (bornes incluses). Le
+   * minimum doit être positif ou nul, le maximum supérieur à 0 et au minimum,
+   * sinon le filtre n'est pas appliqué. Ce filtre remplace un éventuel filtre
+   * de prix maximum.
+   *
+   * @param prixMinimum le prix minimum des pizzas
+   * @param prixMaximum le prix maximum des pizzas
+   */
+  void ajouterFiltre(double prixMinimum, double prixMaximum);
+  
   /**
    * Sélectionne les pizzas qui valident tous les filtres définis.
    *
@@ -0,0 +1,293 @@
+package pizzas;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* Interface des services client fonctionnant par session.
+* <p>
+* Contrairement à {@link InterClient}, qui ne connaît qu'un seul client
+* connecté à la fois, chaque connexion ouvre ici une session identifiée par un
+* jeton. Toutes les opérations propres à un client prennent ce jeton en
+* paramètre, ce qui permet de servir plusieurs clients simultanément, depuis
+* plusieurs threads. Chaque session a ses propres filtres de recherche.
+*/
+public interface InterClientSession {
+  
+  /**
+   * Connexion d'un client et ouverture d'une nouvelle session.
+   *
+   * @param email l'email du client
+   * @param mdp le mot de passe du client
+   * @return le jeton de la session ouverte, ou <code>null</code> en cas de couple
+   *         email/mot de passe invalide
+   */
+  String ouvrirSession(String email, String mdp);
+  
+  /**
+   * Ferme une session. Le jeton n'est plus utilisable ensuite.
+   *
+   * @param session le jeton de la session
+   * @throws NonConnecteException si le jeton ne correspond à aucune session ouverte
+   */
+  void fermerSession(String session) throws NonConnecteException;
+  
+  /**
+   * Crée une nouvelle commande pour le client de la session.
+   *
+   * @param session le jeton de la session
+   * @return la commande qui vient d'être créée
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @see InterClient#debuterCommande()
+   */
+  Commande debuterCommande(String session) throws NonConnecteException;
+  
+  /**
+   * Ajoute une certaine pizza à une commande du client de la session.
+   *
+   * @param session le jeton de la session
+   * @param pizza la pizza que l'on commande
+   * @param nombre le nombre de cette pizza que l'on commande
+   * @param cmd la commande en cours à laquelle on ajoute la ou les pizzas
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec l'ajout des pizzas
+   * @see InterClient#ajouterPizza(Pizza, int, Commande)
+   */
+  void ajouterPizza(String session, Pizza pizza, int nombre, Commande cmd)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Ajoute plusieurs pizzas à une commande du client de la session.
+   *
+   * @param session le jeton de la session
+   * @param pizzas le nombre d'exemplaires commandés de chaque pizza
+   * @param cmd la commande en cours à laquelle on ajoute les pizzas
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec l'ajout des pizzas
+   * @see InterClient#ajouterPizzas(Map, Commande)
+   */
+  void ajouterPizzas(String session, Map<Pizza, Integer> pizzas, Commande cmd)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Valide une commande en cours du client de la session.
+   *
+   * @param session le jeton de la session
+   * @param cmd la commande à valider
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec la validation
+   * @see InterClient#validerCommande(Commande)
+   */
+  void validerCommande(String session, Commande cmd)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Annule une commande en cours du client de la session.
+   *
+   * @param session le jeton de la session
+   * @param cmd la commande à annuler
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec l'annulation
+   * @see InterClient#annulerCommande(Commande)
+   */
+  void annulerCommande(String session, Commande cmd)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Renvoie une commande du client de la session à partir de son
+   * identifiant.
+   *
+   * @param session le jeton de la session
+   * @param id l'identifiant de la commande
+   * @return la commande correspondante ou <code>null</code> si aucune commande du
+   *         client ne porte cet identifiant
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  Commande getCommande(String session, long id) throws NonConnecteException;
+  
+  // -------------------------------------------------------------------------
+  //  Variantes idempotentes
+  // -------------------------------------------------------------------------
+  
+  // Un client qui rejoue une opération après une erreur réseau fournit la
+  // même clé d'idempotence : la pizzeria retourne alors le résultat de la
+  // première exécution au lieu de recommencer. Les clés sont propres à
+  // chaque client et à chaque opération, et sont oubliées après un délai.
+  // Une clé nulle désactive le dédoublonnage ; une opération qui échoue
+  // peut être rejouée avec la même clé.
+  
+  /**
+   * Crée une nouvelle commande pour le client de la session, une seule fois
+   * par clé d'idempotence.
+   *
+   * @param session le jeton de la session
+   * @param cle la clé d'idempotence, ou <code>null</code>
+   * @return la commande créée par la première tentative
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @see #debuterCommande(String)
+   */
+  Commande debuterCommande(String session, String cle) throws NonConnecteException;
+  
+  /**
+   * Ajoute une certaine pizza à une commande du client de la session, une
+   * seule fois par clé d'idempotence.
+   *
+   * @param session le jeton de la session
+   * @param pizza la pizza que l'on commande
+   * @param nombre le nombre de cette pizza que l'on commande
+   * @param cmd la commande en cours à laquelle on ajoute la ou les pizzas
+   * @param cle la clé d'idempotence, ou <code>null</code>
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec l'ajout des pizzas
+   * @see #ajouterPizza(String, Pizza, int, Commande)
+   */
+  void ajouterPizza(String session, Pizza pizza, int nombre, Commande cmd, String cle)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Ajoute plusieurs pizzas à une commande du client de la session, une
+   * seule fois par clé d'idempotence.
+   *
+   * @param session le jeton de la session
+   * @param pizzas le nombre d'exemplaires commandés de chaque pizza
+   * @param cmd la commande en cours à laquelle on ajoute les pizzas
+   * @param cle la clé d'idempotence, ou <code>null</code>
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec l'ajout des pizzas
+   * @see #ajouterPizzas(String, Map, Commande)
+   */
+  void ajouterPizzas(String session, Map<Pizza, Integer> pizzas, Commande cmd, String cle)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Valide une commande en cours du client de la session, une seule fois
+   * par clé d'idempotence.
+   *
+   * @param session le jeton de la session
+   * @param cmd la commande à valider
+   * @param cle la clé d'idempotence, ou <code>null</code>
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec la validation
+   * @see #validerCommande(String, Commande)
+   */
+  void validerCommande(String session, Commande cmd, String cle)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Annule une commande en cours du client de la session, une seule fois
+   * par clé d'idempotence.
+   *
+   * @param session le jeton de la session
+   * @param cmd la commande à annuler
+   * @param cle la clé d'idempotence, ou <code>null</code>
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException en cas de problème avec l'annulation
+   * @see #annulerCommande(String, Commande)
+   */
+  void annulerCommande(String session, Commande cmd, String cle)
+      throws NonConnecteException, CommandeException;
+  
+  /**
+   * Renvoie les commandes en cours du client de la session.
+   *
+   * @param session le jeton de la session
+   * @return les commandes en cours, de la plus ancienne à la plus récente
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  List<Commande> getCommandesEncours(String session) throws NonConnecteException;
+  
+  /**
+   * Renvoie les commandes passées (validées ou traitées) du client de la
+   * session.
+   *
+   * @param session le jeton de la session
+   * @return les commandes passées, de la plus ancienne à la plus récente
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  List<Commande> getCommandePassees(String session) throws NonConnecteException;
+  
+  /**
+   * Ajoute aux filtres de la session un filtre sur le type de pizza.
+   *
+   * @param session le jeton de la session
+   * @param type le type de pizza à conserver
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  void ajouterFiltreType(String session, TypePizza type) throws NonConnecteException;
+  
+  /**
+   * Ajoute aux filtres de la session un filtre sur les ingrédients. Les
+   * ingrédients invalides sont ignorés.
+   *
+   * @param session le jeton de la session
+   * @param ingredients les ingrédients que doivent contenir les pizzas
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  void ajouterFiltreIngredients(String session, String... ingredients)
+      throws NonConnecteException;
+  
+  /**
+   * Ajoute aux filtres de la session un filtre de plage de prix (bornes
+   * incluses). Le filtre n'est pas appliqué si la plage est invalide.
+   *
+   * @param session le jeton de la session
+   * @param prixMinimum le prix minimum des pizzas
+   * @param prixMaximum le prix maximum des pizzas
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  void ajouterFiltrePrix(String session, double prixMinimum, double prixMaximum)
+      throws NonConnecteException;
+  
+  /**
+   * Sélectionne les pizzas qui valident tous les filtres de la session.
+   *
+   * @param session le jeton de la session
+   * @return l'ensemble filtré des pizzas
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  Set<Pizza> selectionPizzaFiltres(String session) throws NonConnecteException;
+  
+  /**
+   * Sélectionne les pizzas qui valident des filtres donnés, sans lire ni
+   * modifier les filtres de la session : des sélections simultanées sur la
+   * même session ne se gênent pas. Comme pour les filtres de la session, les
+   * ingrédients invalides et une plage de prix invalide sont ignorés.
+   *
+   * @param session le jeton de la session
+   * @param type le type de pizza à conserver, ou <code>null</code>
+   * @param prixMinimum le prix minimum des pizzas, ou <code>null</code>
+   * @param prixMaximum le prix maximum des pizzas, ou <code>null</code> pour ne
+   *         pas filtrer sur le prix
+   * @param ingredients les ingrédients que doivent contenir les pizzas
+   * @return l'ensemble filtré des pizzas
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  Set<Pizza> selectionPizzas(String session, TypePizza type,
+      Double prixMinimum, Double prixMaximum, String... ingredients)
+      throws NonConnecteException;
+  
+  /**
+   * Supprime tous les filtres de la session.
+   *
+   * @param session le jeton de la session
+   * @throws NonConnecteException si la session n'est pas ouverte
+   */
+  void supprimerFiltres(String session) throws NonConnecteException;
+  
+  /**
+   * Ajoute une évaluation à une pizza de la part du client de la session.
+   *
+   * @param session le jeton de la session
+   * @param pizza la pizza que le client évalue
+   * @param note la note entre 0 et 5
+   * @param commentaire le commentaire ou <code>null</code>
+   * @return <code>true</code> si l'évaluation a été ajoutée,
+   *         <code>false</code> sinon
+   * @throws NonConnecteException si la session n'est pas ouverte
+   * @throws CommandeException si le client n'avait jamais commandé cette pizza
+   * @see InterClient#ajouterEvaluation(Pizza, int, String)
+   */
+  boolean ajouterEvaluation(String session, Pizza pizza, int note, String commentaire)
+      throws NonConnecteException, CommandeException;
+}
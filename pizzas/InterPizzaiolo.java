@@ -1,9 +1,12 @@
 package pizzas;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interface des services utilisés par le pizzaïolo pour concevoir les pizzas
@@ -160,6 +163,15 @@ public interface InterPizzaiolo {
    */
   Set<Pizza> getPizzas();
   
+  /**
+   * Renvoie la pizza en vente portant un certain nom.
+   *
+   * @param nom le nom de la pizza recherchée
+   * @return la pizza de ce nom ou <code>null</code> si aucune pizza de ce nom
+   *         n'est en vente
+   */
+  Pizza getPizza(String nom);
+  
   /**
    * Renvoie l'ensemble des clients qui ont un compte dans la pizzeria.
    *
@@ -188,6 +200,53 @@ public interface InterPizzaiolo {
    */
   List<Commande> commandeNonTraitees();
   
+  /**
+   * Retire de la file de la cuisine au plus <code>max</code> commandes à
+   * traiter, dans l'ordre de leur validation, sans attendre. Les commandes
+   * retirées sont considérées comme traitées.
+   *
+   * @param max le nombre maximum de commandes à retirer
+   * @return les commandes retirées (la liste est vide si aucune commande n'est
+   *         à traiter ou si <code>max</code> est inférieur ou égal à 0)
+   */
+  List<Commande> prendreCommandes(int max);
+  
+  /**
+   * Retire de la file de la cuisine la plus ancienne commande validée à
+   * traiter, en attendant au plus le délai indiqué qu'une commande soit
+   * validée. La commande retirée est considérée comme traitée.
+   *
+   * @param delai le délai d'attente maximum
+   * @param unite l'unité du délai
+   * @return la commande retirée ou <code>null</code> si aucune commande n'a
+   *         été validée avant la fin du délai
+   * @throws InterruptedException si le thread est interrompu pendant l'attente
+   */
+  Commande prendreCommande(long delai, TimeUnit unite) throws InterruptedException;
+  
+  /**
+   * Retourne l'heure estimée à laquelle une commande traitée sera prête. Les
+   * pizzas des commandes retirées de la file de la cuisine sont réparties
+   * entre les postes de préparation et les fours de la pizzeria.
+   *
+   * @param cmd la commande
+   * @return l'heure estimée ou <code>null</code> si la commande n'a pas encore
+   *         été retirée de la file de la cuisine ou si elle est déjà prête
+   */
+  LocalDateTime getHeurePrete(Commande cmd);
+  
+  /**
+   * Retourne le flux des étapes du cycle de vie des commandes (création, ajout
+   * de pizzas, validation, annulation, traitement). Les étapes d'une même
+   * commande sont diffusées dans l'ordre. Chaque abonné dispose de sa propre
+   * file bornée et reçoit les événements dans son propre fil, au rythme de sa
+   * demande : un abonné trop lent perd les événements qui ne tiennent plus
+   * dans sa file, sans jamais ralentir la prise de commandes.
+   *
+   * @return le diffuseur des événements de commandes
+   */
+  Flow.Publisher<EvenementCommande> fluxCommandes();
+  
   /**
    * Retourne l'ensemble des commandes passées par un certain client et déjà
    * traitées. Elles sont classées de la plus ancienne à la plus récente.
@@ -264,4 +323,15 @@ public interface InterPizzaiolo {
    *         est vide si aucune pizza n'est en vente)
    */
   List<Pizza> classementPizzasParNombreCommandes();
+  
+  /**
+   * Retourne les pizzas les plus commandées (en se basant sur les commandes
+   * déjà traitées), dans l'ordre de {@link #classementPizzasParNombreCommandes()}.
+   *
+   * @param k le nombre de pizzas souhaité
+   * @return la liste ordonnée des <code>k</code> pizzas les plus commandées
+   *         (la liste est plus courte s'il y a moins de <code>k</code> pizzas
+   *         en vente, et vide si <code>k</code> est inférieur ou égal à 0)
+   */
+  List<Pizza> topPizzas(int k);
 }
@@ -1,8 +1,12 @@
 package pizzas;
 
-import java.util.ArrayList;
+import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -12,6 +16,49 @@ import java.util.Set;
  */
 public class Pizza {
 
+    /**
+     * Vue ensembliste, non modifiable, d'une version des évaluations.
+     */
+    private static final class Evaluations extends AbstractSet<Evaluation> {
+
+        /** La version vue. */
+        private final VecteurPersistant<Evaluation> version;
+
+        /**
+         * Crée une vue.
+         *
+         * @param version la version des évaluations
+         */
+        private Evaluations(VecteurPersistant<Evaluation> version) {
+            this.version = version;
+        }
+
+        @Override
+        public Iterator<Evaluation> iterator() {
+            return new Iterator<>() {
+                private int suivante;
+
+                @Override
+                public boolean hasNext() {
+                    return suivante < version.taille();
+                }
+
+                @Override
+                public Evaluation next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return version.get(suivante++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return version.taille();
+        }
+    }
+
     /**
      * Nom de la pizza.
      */
@@ -23,20 +70,34 @@ public class Pizza {
     private final TypePizza typepizza;
 
     /**
-     * Ensemble des ingrédients composant la pizza.
+     * Ensemble non modifiable des ingrédients composant la pizza, remplacé
+     * par une nouvelle copie à chaque modification.
      */
-    private final Set<Ingredient> ingredients;
+    private volatile Set<Ingredient> ingredients;
 
     /**
      * Prix fixé manuellement pour la pizza.
      * La valeur -1 indique qu'aucun prix n'a encore été fixé.
      */
-    private double prixfixe;
+    private volatile double prixfixe;
+
+    /**
+     * Évaluations données à la pizza, dans l'ordre de leur ajout. Le vecteur
+     * n'est jamais modifié : chaque ajout en publie un nouveau, qui partage
+     * le reste avec le précédent.
+     */
+    private volatile VecteurPersistant<Evaluation> evaluations;
 
     /**
-     * Liste des évaluations données à la pizza.
+     * Somme des notes des évaluations, tenue à jour à chaque ajout.
      */
-    private final Set<Evaluation> evaluations;
+    private double sommeNotes;
+
+    /**
+     * Auteurs ayant déjà évalué la pizza, comparés par identité : leurs
+     * informations personnelles restent modifiables.
+     */
+    private final Set<InformationPersonnelle> auteurs;
 
     /**
      * Chemin vers une photo représentant la pizza.
@@ -57,10 +118,11 @@ public class Pizza {
             this.nom = nom;
         }
         this.typepizza = typepizza;
-        this.ingredients = new HashSet<>();
+        this.ingredients = Collections.emptySet();
         this.prixfixe = -1;
         this.photo = null;
-        this.evaluations = new HashSet<>();
+        this.evaluations = VecteurPersistant.vide();
+        this.auteurs = Collections.newSetFromMap(new IdentityHashMap<>());
     }
 
     /**
@@ -84,7 +146,8 @@ public class Pizza {
     /**
      * Retourne l'ensemble des ingrédients de la pizza.
      *
-     * @return l'ensemble des ingrédients
+     * @return l'ensemble non modifiable des ingrédients ; il n'est pas affecté
+     *         par les modifications ultérieures de la pizza
      */
     public Set<Ingredient> getIngredients() {
         return this.ingredients;
@@ -101,12 +164,36 @@ public class Pizza {
     }
 
     /**
-     * Retourne la liste des évaluations associées à la pizza.
+     * Retourne les évaluations associées à la pizza, sans les copier.
      *
-     * @return la liste des évaluations
+     * @return un ensemble non modifiable des évaluations ; il n'est pas
+     *         affecté par les évaluations ajoutées ensuite
      */
     public Set<Evaluation> getEvaluations() {
-        return this.evaluations;
+        return new Evaluations(this.evaluations);
+    }
+
+    /**
+     * Retourne la note moyenne des évaluations de la pizza, calculée à partir
+     * de la somme et du nombre des notes tenus à jour à chaque ajout.
+     *
+     * @return la moyenne des notes, ou -1 si la pizza n'a aucune évaluation
+     */
+    public synchronized double getNoteMoyenne() {
+        if (evaluations.taille() == 0) {
+            return -1;
+        }
+        return sommeNotes / evaluations.taille();
+    }
+
+    /**
+     * Indique si une personne a déjà évalué la pizza.
+     *
+     * @param auteur la personne concernée
+     * @return {@code true} si une évaluation de cet auteur existe déjà
+     */
+    public synchronized boolean estEvalueePar(InformationPersonnelle auteur) {
+        return auteurs.contains(auteur);
     }
 
     /**
@@ -115,8 +202,12 @@ public class Pizza {
      *
      * @param ingredient l'ingrédient à ajouter
      */
-    public void ajouterIngredient(Ingredient ingredient) {
-        this.ingredients.add(ingredient);
+    public synchronized void ajouterIngredient(Ingredient ingredient) {
+        if (!this.ingredients.contains(ingredient)) {
+            Set<Ingredient> copie = new HashSet<>(this.ingredients);
+            copie.add(ingredient);
+            this.ingredients = Collections.unmodifiableSet(copie);
+        }
     }
 
     /**
@@ -125,17 +216,43 @@ public class Pizza {
      *
      * @param ingredient l'ingrédient à retirer
      */
-    public void enleverIngredient(Ingredient ingredient) {
-        this.ingredients.remove(ingredient);
+    public synchronized void enleverIngredient(Ingredient ingredient) {
+        if (this.ingredients.contains(ingredient)) {
+            Set<Ingredient> copie = new HashSet<>(this.ingredients);
+            copie.remove(ingredient);
+            this.ingredients = Collections.unmodifiableSet(copie);
+        }
+    }
+
+    /**
+     * Remplace l'ingrédient de même nom par un autre objet, par exemple
+     * lorsque son prix change. Ne fait rien si la pizza ne contient pas
+     * d'ingrédient de ce nom.
+     *
+     * @param ingredient le nouvel ingrédient
+     */
+    synchronized void remplacerIngredient(Ingredient ingredient) {
+        if (this.ingredients.contains(ingredient)) {
+            Set<Ingredient> copie = new HashSet<>(this.ingredients);
+            copie.remove(ingredient);
+            copie.add(ingredient);
+            this.ingredients = Collections.unmodifiableSet(copie);
+        }
     }
 
     /**
      * Ajoute une nouvelle évaluation à la pizza.
+     * Ne fait rien si une évaluation égale a déjà été ajoutée.
      *
      * @param e l'évaluation à ajouter
      */
-    public void ajouternote(Evaluation e) {
-        this.evaluations.add(e);
+    public synchronized void ajouternote(Evaluation e) {
+        if (this.auteurs.contains(e.getAuteur()) && getEvaluations().contains(e)) {
+            return;
+        }
+        this.evaluations = this.evaluations.ajouter(e);
+        this.sommeNotes += e.getNote();
+        this.auteurs.add(e.getAuteur());
     }
 
     /**
@@ -147,6 +264,16 @@ public class Pizza {
         this.prixfixe = prixfixe;
     }
 
+    /**
+     * Retourne le chemin de la photo associée à la pizza.
+     *
+     * @return le chemin du fichier de la photo, ou {@code null} si aucune
+     *         photo n'est associée
+     */
+    public String getPhoto() {
+        return photo;
+    }
+
     /**
      * Modifie la photo associée à la pizza.
      *
@@ -1,16 +1,47 @@
 package pizzas;
 
+import io.EntreeBinaire;
+import io.InterJournalisation;
+import io.InterSauvegarde;
+import io.Journal;
+import io.SortieBinaire;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
  * Classe principale de gestion de la pizzeria.
  * <p>
  * Cette classe implémente à la fois les services destinés aux clients
- * ({@link InterClient}) et ceux destinés au pizzaïolo
- * ({@link InterPizzaiolo}).
+ * ({@link InterClient} pour un unique client connecté,
+ * {@link InterClientSession} pour plusieurs clients connectés simultanément)
+ * et ceux destinés au pizzaïolo ({@link InterPizzaiolo}). Son état peut être
+ * sauvegardé dans un fichier binaire puis rechargé ({@link InterSauvegarde}),
+ * chaque modification étant consignée entre deux sauvegardes dans un journal
+ * ({@link InterJournalisation}).
  * Elle gère :
  * <ul>
  *     <li>les clients et leur authentification,</li>
@@ -21,8 +52,19 @@ import java.util.stream.Collectors;
  *     <li>les évaluations de pizzas,</li>
  *     <li>les filtres de recherche de pizzas.</li>
  * </ul>
+ * <p>
+ * Une instance peut être utilisée depuis plusieurs threads. Les clients,
+ * sessions et commandes sont rangés dans des structures concurrentes ; les
+ * commandes en cours sont réparties par client et ne sont publiées dans les
+ * structures partagées qu'à leur validation. Chaque commande est protégée par
+ * son propre moniteur et l'index des commandes de chaque client par le sien.
+ * Le menu (ingrédients, pizzas, prix et restrictions) est publié sous forme
+ * de {@link Carte} immuable : les lectures ne prennent aucun verrou, chaque
+ * modification du pizzaïolo construit une nouvelle carte sous le verrou du
+ * menu puis la substitue à la précédente.
  */
-public class Pizzaiolo implements InterPizzaiolo, InterClient {
+public class Pizzaiolo implements InterPizzaiolo, InterClient, InterClientSession,
+        InterSauvegarde, InterJournalisation {
 
     /**
      * Représente un compte client interne à la pizzeria.
@@ -97,11 +139,107 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         }
     }
 
-    /** Client actuellement connecté (ou {@code null} si aucun). */
-    private Client clientConnecte;
+
+    /**
+     * Filtres de recherche de pizzas. Les accès sont synchronisés sur
+     * l'instance.
+     */
+    private static class Filtres {
+
+        /** Filtre de type de pizza (peut être {@code null} si non défini). */
+        private TypePizza type;
+
+        /** Filtre sur les ingrédients (tous doivent être présents dans la pizza). */
+        private final Set<Ingredient> ingredients = new HashSet<>();
+
+        /** Filtre sur le prix minimum (peut être {@code null} si non défini). */
+        private Double prixMin;
+
+        /** Filtre sur le prix maximum (peut être {@code null} si non défini). */
+        private Double prixMax;
+    }
+
+    /**
+     * Session ouverte par un client : le client connecté et ses propres
+     * filtres de recherche.
+     */
+    private static class Session {
+
+        /** Client connecté dans cette session. */
+        private final Client client;
+
+        /** Filtres de recherche propres à la session. */
+        private final Filtres filtres = new Filtres();
+
+        /**
+         * Crée une session pour un client.
+         *
+         * @param client le client connecté
+         */
+        Session(Client client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * Compte des ventes d'un client : pizzas de ses commandes traitées et
+     * bénéfice qu'elles représentent aux prix courants. Les accès sont
+     * synchronisés sur l'instance.
+     */
+    private static class CompteClient {
+
+        /** Nombre d'exemplaires de chaque pizza dans les commandes traitées. */
+        private final Map<Pizza, Integer> quantites = new HashMap<>();
+
+        /** Nombre total de pizzas dans les commandes traitées. */
+        private int nombrePizzas;
+
+        /** Bénéfice généré par les commandes traitées, aux prix courants. */
+        private double benefice;
+    }
+
+    /** Nombre maximum par défaut de commandes en attente en cuisine. */
+    public static final int CAPACITE_CUISINE = 1024;
+
+    /** Nombre maximum par défaut d'opérations mémorisées pour l'idempotence. */
+    public static final int CAPACITE_IDEMPOTENCE = TableIdempotence.CAPACITE;
+
+    /** Durée par défaut pendant laquelle une clé d'idempotence est mémorisée. */
+    public static final Duration DUREE_IDEMPOTENCE = TableIdempotence.DUREE;
+
+    /** Nombre par défaut de fours et de postes de préparation. */
+    public static final int FOURS_PAR_DEFAUT = 2;
+
+    /** Sessions ouvertes, indexées par jeton. */
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Jeton de la session utilisée par les méthodes de {@link InterClient}
+     * (ou {@code null} si aucun client n'est connecté).
+     */
+    private volatile String sessionCourante;
+
+    /** Filtres utilisés par les méthodes de {@link InterClient}. */
+    private final Filtres filtres = new Filtres();
 
     /** Clients enregistrés, indexés par email. */
-    private final Map<String, Client> clients = new HashMap<>();
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Carte courante, lue sans verrou par toutes les consultations du menu et
+     * remplacée à chaque modification du pizzaïolo.
+     */
+    private final AtomicReference<Carte> carte = new AtomicReference<>(Carte.vide());
+
+    /**
+     * Verrou du menu. Les modifications du pizzaïolo le prennent en écriture
+     * pour mettre à jour l'état de travail ci-dessous (pizzas, ingrédients,
+     * prix et restrictions) et publier la carte suivante, qui ne recopie que
+     * ce qui a changé. Les mises à
+     * jour des comptes clients le prennent en lecture pour ne pas croiser un
+     * changement de prix.
+     */
+    private final ReadWriteLock verrouMenu = new ReentrantReadWriteLock();
 
     /** Ensemble des ingrédients connus, indexés par nom. */
     private final Map<String, Ingredient> ingredients = new HashMap<>();
@@ -109,8 +247,20 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
     /** Ensemble des pizzas en vente. */
     private final Set<Pizza> pizzas = new HashSet<>();
 
-    /** Liste de toutes les commandes. */
-    private final List<Commande> commandes = new ArrayList<>();
+    /**
+     * Pizzas en vente indexées par nom, maintenues en phase avec
+     * {@link #pizzas} pour une recherche par nom en temps constant.
+     */
+    private final Map<String, Pizza> pizzasParNom = new HashMap<>();
+
+    /**
+     * Cache du prix minimal de chaque pizza. Une entrée est invalidée dès que
+     * la composition de la pizza ou le prix d'un de ses ingrédients change.
+     */
+    private final Map<Pizza, Double> prixMinimaux = new HashMap<>();
+
+    /** Index inverse : pour chaque ingrédient, les pizzas qui le contiennent. */
+    private final Map<Ingredient, Set<Pizza>> pizzasParIngredient = new HashMap<>();
 
     /**
      * Map des ingrédients interdits :
@@ -118,92 +268,501 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
      */
     private final Map<Ingredient, Set<TypePizza>> ingredientsInterdits = new HashMap<>();
 
-    /** Filtre de type de pizza (peut être {@code null} si non défini). */
-    private TypePizza filtreType;
+    /**
+     * Nombre d'exemplaires de chaque pizza vendus dans des commandes traitées,
+     * mis à jour quand une commande passe au statut TRAITEE.
+     */
+    private final Map<Pizza, Integer> ventesParPizza = new ConcurrentHashMap<>();
+
+    /**
+     * Pizzas classées de la plus vendue à la moins vendue (puis par nom).
+     * Une pizza doit être retirée du classement avant que son nombre de ventes
+     * ne change, puis y être réinsérée. Les accès sont synchronisés sur
+     * l'ensemble.
+     */
+    private final NavigableSet<Pizza> classementVentes = new TreeSet<>(
+            Comparator.comparingInt((Pizza p) -> -ventesParPizza.get(p))
+                    .thenComparing(Pizza::getNom));
+
+    /**
+     * Pour chaque client, les pizzas qu'il a commandées dans une commande
+     * validée (et donc qu'il a le droit d'évaluer).
+     */
+    private final Map<CleClient, Set<Pizza>> pizzasAchetees =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Comptes des ventes de chaque client ayant au moins une commande
+     * traitée, mis à jour quand une commande est traitée ou qu'un prix change.
+     */
+    private final Map<CleClient, CompteClient> comptesClients =
+            new ConcurrentHashMap<>();
+
+    /** Pour chaque pizza, les comptes des clients l'ayant dans une commande traitée. */
+    private final Map<Pizza, Set<CompteClient>> clientsParPizza =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Commandes en cours de création, réparties par client. Elles ne sont
+     * publiées dans les structures partagées qu'à leur validation.
+     */
+    private final EntreeCommandes commandesEnCours = new EntreeCommandes();
+
+    /**
+     * Registre des commandes validées, indexées par identifiant. Une commande
+     * traitée le quitte pour l'{@link #archive}.
+     */
+    private final Map<Long, Commande> commandes = new ConcurrentHashMap<>();
+
+    /**
+     * File de la cuisine : les commandes validées en attente de traitement,
+     * dans l'ordre de leur validation. Sa capacité bornée fait échouer les
+     * validations lorsque la cuisine a trop de retard.
+     */
+    private final BlockingQueue<Commande> fileCuisine;
+
+    /** Planification des fours et des postes des commandes traitées. */
+    private final Cuisine cuisine;
+
+    /**
+     * Archive des commandes traitées, rangées hors du tas et décodées à la
+     * demande.
+     */
+    private final ArchiveCommandes archive = new ArchiveCommandes();
+
+    /**
+     * Diffuseur des événements de commandes. Chaque abonné a sa propre file
+     * bornée ; un événement qui n'y tient plus est perdu pour cet abonné.
+     */
+    private final Diffuseur<EvenementCommande> evenements =
+            new Diffuseur<>(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+
+    /**
+     * Résultats des opérations de commande exécutées avec une clé
+     * d'idempotence, indexés par email du client, opération et clé.
+     */
+    private final TableIdempotence dedoublonnage;
+
+    /** Identifiant attribué à la prochaine commande créée. */
+    private final AtomicLong prochainIdCommande = new AtomicLong(1);
+
+    /**
+     * Journal des modifications, ou {@code null} si aucun journal n'est
+     * ouvert. Remplacé sous le verrou du journal en écriture.
+     */
+    private volatile Journal journal;
+
+    /**
+     * Numéro du premier enregistrement du journal dont l'état courant ne
+     * tient pas compte, lu dans la sauvegarde chargée. Accès sous le verrou
+     * du journal en écriture.
+     */
+    private long numeroJournal;
+
+    /**
+     * Verrou du journal. Chaque modification journalisée le prend en lecture,
+     * de la modification de l'état jusqu'à l'ajout de son enregistrement. La
+     * sauvegarde, l'ouverture et la fermeture du journal le prennent en
+     * écriture : elles voient un état qui correspond exactement à un numéro
+     * d'enregistrement. Il est toujours pris avant le verrou du menu et les
+     * moniteurs des commandes.
+     */
+    private final ReadWriteLock verrouJournal = new ReentrantReadWriteLock();
+
+    /**
+     * Rapport du chargement de la sauvegarde, ou {@code null} si aucune
+     * sauvegarde n'a été chargée. Les méthodes qui dépendent de l'historique
+     * attendent la fin de son chargement.
+     */
+    private volatile RapportChargement rapportChargement;
+
+    /**
+     * Sauvegarde en cours ou dernière sauvegarde. Accès sous le moniteur
+     * {@link #verrouSauvegarde}.
+     */
+    private CompletableFuture<Void> sauvegarde = CompletableFuture.completedFuture(null);
+
+    /** Moniteur des sauvegardes, pris avant le verrou du journal. */
+    private final Object verrouSauvegarde = new Object();
+
+    /**
+     * Index des commandes par client : pour chaque client, ses commandes
+     * validées non encore traitées, ordonnées par identifiant, c'est-à-dire
+     * par date de création. Les commandes en cours sont dans
+     * {@link #commandesEnCours} et les commandes traitées dans l'archive. Les
+     * accès à l'index d'un client sont synchronisés sur sa map, qui protège
+     * aussi le passage de ses commandes dans l'archive.
+     */
+    private final Map<CleClient, NavigableMap<Long, Commande>> commandesParClient =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Crée une pizzeria vide dont la cuisine accepte au plus
+     * {@link #CAPACITE_CUISINE} commandes en attente.
+     */
+    public Pizzaiolo() {
+        this(CAPACITE_CUISINE);
+    }
+
+    /**
+     * Crée une pizzeria vide.
+     *
+     * @param capaciteCuisine le nombre maximum de commandes validées en
+     *                        attente de traitement
+     * @throws IllegalArgumentException si la capacité n'est pas strictement
+     *                                  positive
+     */
+    public Pizzaiolo(int capaciteCuisine) {
+        this(capaciteCuisine, new Cuisine(FOURS_PAR_DEFAUT, FOURS_PAR_DEFAUT));
+    }
 
-    /** Filtre sur les ingrédients (tous doivent être présents dans la pizza). */
-    private final Set<Ingredient> filtresIngredients = new HashSet<>();
+    /**
+     * Crée une pizzeria vide.
+     *
+     * @param capaciteCuisine le nombre maximum de commandes validées en
+     *                        attente de traitement
+     * @param cuisine         la planification des fours et des postes de
+     *                        préparation
+     * @throws IllegalArgumentException si la capacité n'est pas strictement
+     *                                  positive
+     */
+    public Pizzaiolo(int capaciteCuisine, Cuisine cuisine) {
+        this(capaciteCuisine, cuisine, CAPACITE_IDEMPOTENCE, DUREE_IDEMPOTENCE);
+    }
 
-    /** Filtre sur le prix maximum (peut être {@code null} si non défini). */
-    private Double filtrePrixMax;
+    /**
+     * Crée une pizzeria vide.
+     *
+     * @param capaciteCuisine     le nombre maximum de commandes validées en
+     *                            attente de traitement
+     * @param cuisine             la planification des fours et des postes de
+     *                            préparation
+     * @param capaciteIdempotence le nombre maximum d'opérations mémorisées
+     *                            avec leur clé d'idempotence
+     * @param dureeIdempotence    la durée pendant laquelle une clé
+     *                            d'idempotence est mémorisée
+     * @throws IllegalArgumentException si l'une des capacités ou la durée
+     *                                  n'est pas strictement positive
+     */
+    public Pizzaiolo(int capaciteCuisine, Cuisine cuisine, int capaciteIdempotence,
+                     Duration dureeIdempotence) {
+        fileCuisine = new ArrayBlockingQueue<>(capaciteCuisine);
+        this.cuisine = cuisine;
+        this.dedoublonnage = new TableIdempotence(capaciteIdempotence, dureeIdempotence);
+    }
 
     // -------------------------------------------------------------------------
     //  Méthodes utilitaires privées
     // -------------------------------------------------------------------------
 
     /**
-     * Vérifie qu'un client est connecté, sinon lance une exception.
+     * Retourne la session associée à un jeton, sinon lance une exception.
      *
-     * @throws NonConnecteException si aucun client n'est connecté
+     * @param jeton le jeton de la session
+     * @return la session ouverte
+     * @throws NonConnecteException si le jeton ne correspond à aucune session
      */
-    private void verifierConnecte() throws NonConnecteException {
-        if (clientConnecte == null) {
+    private Session session(String jeton) throws NonConnecteException {
+        Session s = jeton == null ? null : sessions.get(jeton);
+        if (s == null) {
             throw new NonConnecteException();
         }
+        return s;
+    }
+
+    /**
+     * Retourne le client connecté dans une session.
+     *
+     * @param jeton le jeton de la session
+     * @return les informations personnelles du client, ou {@code null} si le
+     *         jeton ne correspond à aucune session ouverte
+     */
+    InformationPersonnelle clientSession(String jeton) {
+        Session s = jeton == null ? null : sessions.get(jeton);
+        return s == null ? null : s.client.getInfo();
+    }
+
+    /**
+     * Vérifie qu'une commande est enregistrée, appartient au client et est
+     * encore en cours de création. Doit être appelée en tenant le moniteur de
+     * la commande.
+     *
+     * @param client  le client connecté
+     * @param cmd     la commande à vérifier
+     * @param message le message d'erreur si la commande n'est plus en cours
+     * @throws CommandeException si l'une des conditions n'est pas remplie
+     */
+    private void verifierCommandeEnCours(Client client, Commande cmd, String message) {
+        if (!commandeValide(cmd)) {
+            throw new CommandeException("Commande invalide.");
+        }
+        if (!cmd.getClient().equals(client.getInfo())) {
+            throw new CommandeException("La commande n'appartient pas au client connecté.");
+        }
+        if (cmd.getStatut() != StatutCommande.CREE) {
+            throw new CommandeException(message);
+        }
     }
 
     /**
-     * Retourne l'ingrédient associé à un nom.
+     * Retourne l'ingrédient associé à un nom dans la carte courante.
      *
      * @param nom le nom de l'ingrédient
      * @return l'ingrédient ou {@code null} s'il n'existe pas
      */
     private Ingredient getIngredientByName(String nom) {
-        if (nom == null) {
-            return null;
-        }
-        return ingredients.get(nom);
+        return carte.get().ingredient(nom);
     }
 
     /**
-     * Retourne la pizza associée à un nom.
+     * Retourne la pizza associée à un nom dans la carte courante.
      *
      * @param nom le nom de la pizza
      * @return la pizza ou {@code null} si elle n'existe pas
      */
     private Pizza getPizzaByName(String nom) {
-        if (nom == null) {
-            return null;
-        }
-        for (Pizza p : pizzas) {
-            if (p.getNom().equals(nom)) {
-                return p;
-            }
-        }
-        return null;
+        return carte.get().pizza(nom);
     }
 
     /**
-     * Vérifie qu'une pizza est valide (non nulle et gérée par la pizzeria).
+     * Vérifie qu'une pizza est valide (non nulle et en vente dans la carte
+     * courante).
      *
      * @param pizza la pizza à vérifier
      * @return {@code true} si la pizza est valide, {@code false} sinon
      */
     private boolean pizzaValide(Pizza pizza) {
-        return pizza != null && pizzas.contains(pizza);
+        return carte.get().contient(pizza);
+    }
+
+    /**
+     * Reporte la composition et les prix d'une pizza, tels que dans l'état de
+     * travail, dans une modification de la carte. Doit être appelée en tenant
+     * le verrou du menu en écriture.
+     *
+     * @param m     la modification en cours
+     * @param pizza la pizza à reporter
+     */
+    private void reporter(Carte.Modification m, Pizza pizza) {
+        m.pizza(pizza, prixVentePizza(pizza), prixMinimalPizza(pizza));
     }
 
     /**
-     * Vérifie qu'une commande est valide (non nulle et connue).
+     * Vérifie qu'une commande est valide (non nulle et enregistrée, soit comme
+     * commande en cours, soit dans le registre sous son identifiant, soit
+     * dans l'archive sous une forme égale).
      *
      * @param commande la commande à vérifier
      * @return {@code true} si la commande est valide, {@code false} sinon
      */
     private boolean commandeValide(Commande commande) {
-        return commande != null && commandes.contains(commande);
+        return commande != null
+                && (commandes.get(commande.getId()) == commande
+                || commandesEnCours.contient(commande)
+                || commande.equals(archive.get(commande.getId())));
+    }
+
+    /**
+     * Retourne l'index des commandes validées d'un client, en le créant au
+     * besoin.
+     *
+     * @param client le client concerné
+     * @return les commandes validées du client, par identifiant
+     */
+    private NavigableMap<Long, Commande> indexClient(InformationPersonnelle client) {
+        return commandesParClient.computeIfAbsent(new CleClient(client), k -> new TreeMap<>());
+    }
+
+    /**
+     * Ajoute un enregistrement au journal, s'il est ouvert. Doit être appelée
+     * après la modification qu'il décrit, en tenant le verrou du journal en
+     * lecture et le verrou de l'objet modifié.
+     *
+     * @param enregistrement l'enregistrement, qui ne doit capturer que des
+     *                       valeurs immuables
+     */
+    private void journaliser(Journal.Enregistrement enregistrement) {
+        Journal j = journal;
+        if (j != null) {
+            j.ajouter(enregistrement);
+        }
+    }
+
+    /**
+     * Diffuse un événement de commande sans attendre les abonnés saturés.
+     *
+     * @param evenement l'événement à diffuser
+     */
+    private void diffuser(EvenementCommande evenement) {
+        evenements.diffuser(evenement);
+    }
+
+    /**
+     * Valide une commande en cours et la publie : elle quitte le registre des
+     * commandes en cours pour rejoindre le registre et l'index de son client.
+     * Doit être appelée en tenant le moniteur de la commande.
+     *
+     * @param cmd la commande à valider
+     * @throws CommandeException si la commande n'est plus en cours
+     */
+    private void publierCommande(Commande cmd) {
+        cmd.setStatut(StatutCommande.VALIDEE);
+        commandesEnCours.retirer(cmd);
+        commandes.put(cmd.getId(), cmd);
+        NavigableMap<Long, Commande> validees = indexClient(cmd.getClient());
+        synchronized (validees) {
+            validees.put(cmd.getId(), cmd);
+        }
+        pizzasAchetees.computeIfAbsent(new CleClient(cmd.getClient()),
+                        k -> ConcurrentHashMap.newKeySet())
+                .addAll(cmd.getLignes().keySet());
+        diffuser(new EvenementCommande(EvenementCommande.Nature.VALIDATION, cmd));
+    }
+
+    /**
+     * Passe une commande validée au statut TRAITEE et la déplace du registre
+     * et des index vers l'archive. Elle est archivée avant d'être retirée du
+     * registre, pour rester visible sans interruption. Doit être appelée en
+     * tenant le moniteur de la commande.
+     *
+     * @param cmd la commande concernée
+     * @throws CommandeException si la transition de statut est interdite
+     */
+    private void traiterCommande(Commande cmd) {
+        cmd.setStatut(StatutCommande.TRAITEE);
+        NavigableMap<Long, Commande> validees = indexClient(cmd.getClient());
+        synchronized (validees) {
+            archive.ajouter(cmd.getId(), cmd.getDate(), cmd.getClient(), cmd.getLignes());
+            validees.remove(cmd.getId());
+        }
+        commandes.remove(cmd.getId());
+        comptabiliserVentes(cmd);
+        diffuser(new EvenementCommande(EvenementCommande.Nature.TRAITEMENT, cmd));
+    }
+
+    /**
+     * Ajoute les pizzas d'une commande qui vient d'être traitée aux compteurs
+     * de ventes, au classement des pizzas et au compte de son client.
+     *
+     * @param cmd la commande traitée
+     */
+    private void comptabiliserVentes(Commande cmd) {
+        Map<Pizza, Integer> quantites = cmd.getLignes();
+        synchronized (classementVentes) {
+            for (Map.Entry<Pizza, Integer> e : quantites.entrySet()) {
+                classementVentes.remove(e.getKey());
+                ventesParPizza.merge(e.getKey(), e.getValue(), Integer::sum);
+                classementVentes.add(e.getKey());
+            }
+        }
+
+        CompteClient compte = comptesClients.computeIfAbsent(new CleClient(cmd.getClient()),
+                k -> new CompteClient());
+        verrouMenu.readLock().lock();
+        try {
+            Carte c = carte.get();
+            synchronized (compte) {
+                for (Map.Entry<Pizza, Integer> e : quantites.entrySet()) {
+                    Pizza p = e.getKey();
+                    int quantite = e.getValue();
+                    compte.quantites.merge(p, quantite, Integer::sum);
+                    compte.nombrePizzas += quantite;
+                    compte.benefice += quantite * c.beneficeUnitaire(p);
+                    clientsParPizza.computeIfAbsent(p, k -> ConcurrentHashMap.newKeySet())
+                            .add(compte);
+                }
+            }
+        } finally {
+            verrouMenu.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute en une fois des ventes aux compteurs de ventes, au classement des
+     * pizzas et aux comptes des clients, et autorise chaque client à évaluer
+     * les pizzas qu'il a achetées. Utilisée au chargement d'une sauvegarde.
+     *
+     * @param ventes pour chaque client, le nombre d'exemplaires achetés de
+     *               chaque pizza
+     */
+    private void comptabiliserVentes(Map<InformationPersonnelle, Map<Pizza, Integer>> ventes) {
+        verrouMenu.readLock().lock();
+        try {
+            Carte c = carte.get();
+            synchronized (classementVentes) {
+                for (Map.Entry<InformationPersonnelle, Map<Pizza, Integer>> v : ventes.entrySet()) {
+                    InformationPersonnelle client = v.getKey();
+                    pizzasAchetees.computeIfAbsent(new CleClient(client),
+                                    k -> ConcurrentHashMap.newKeySet())
+                            .addAll(v.getValue().keySet());
+                    CompteClient compte = comptesClients.computeIfAbsent(new CleClient(client),
+                            k -> new CompteClient());
+                    synchronized (compte) {
+                        for (Map.Entry<Pizza, Integer> e : v.getValue().entrySet()) {
+                            Pizza p = e.getKey();
+                            int quantite = e.getValue();
+                            classementVentes.remove(p);
+                            ventesParPizza.merge(p, quantite, Integer::sum);
+                            classementVentes.add(p);
+                            compte.quantites.merge(p, quantite, Integer::sum);
+                            compte.nombrePizzas += quantite;
+                            compte.benefice += quantite * c.beneficeUnitaire(p);
+                            clientsParPizza.computeIfAbsent(p, k -> ConcurrentHashMap.newKeySet())
+                                    .add(compte);
+                        }
+                    }
+                }
+            }
+        } finally {
+            verrouMenu.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recalcule le bénéfice du compte d'un client aux prix courants. Doit être
+     * appelée en tenant le verrou du menu.
+     *
+     * @param compte le compte à mettre à jour
+     */
+    private void recalculerBenefice(CompteClient compte) {
+        synchronized (compte) {
+            double total = 0;
+            for (Map.Entry<Pizza, Integer> e : compte.quantites.entrySet()) {
+                total += e.getValue() * beneficeUnitaire(e.getKey());
+            }
+            compte.benefice = total;
+        }
+    }
+
+    /**
+     * Prend en compte un changement de composition, de prix fixé ou de prix
+     * d'ingrédient pour une pizza : son prix minimal sera recalculé et les
+     * bénéfices de ses clients le sont. Doit être appelée en tenant le verrou
+     * du menu en écriture.
+     *
+     * @param pizza la pizza dont le prix a pu changer
+     */
+    private void prixModifie(Pizza pizza) {
+        prixModifie(List.of(pizza));
     }
 
     /**
-     * Retourne l'ensemble des commandes déjà traitées (statut TRAITEE),
-     * triées de la plus ancienne à la plus récente.
+     * Prend en compte un changement de prix pour plusieurs pizzas à la fois.
+     * Le bénéfice de chaque client concerné n'est recalculé qu'une fois, même
+     * s'il a acheté plusieurs de ces pizzas. Doit être appelée en tenant le
+     * verrou du menu en écriture, une fois toutes les pizzas modifiées.
      *
-     * @return la liste ordonnée des commandes traitées
+     * @param pizzas les pizzas dont le prix a pu changer
      */
-    private List<Commande> commandesTraitees() {
-        return commandes.stream()
-                .filter(c -> c.getStatut() == StatutCommande.TRAITEE)
-                .sorted(Comparator.comparing(Commande::getDate))
-                .collect(Collectors.toList());
+    private void prixModifie(Collection<Pizza> pizzas) {
+        Set<CompteClient> comptes = new HashSet<>();
+        for (Pizza pizza : pizzas) {
+            prixMinimaux.remove(pizza);
+            comptes.addAll(clientsParPizza.getOrDefault(pizza, Collections.emptySet()));
+        }
+        for (CompteClient compte : comptes) {
+            recalculerBenefice(compte);
+        }
     }
 
     /**
@@ -212,6 +771,7 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
      *     <li>Si la pizza a un prix fixé, on le retourne.</li>
      *     <li>Sinon, on retourne le prix minimal.</li>
      * </ul>
+     * Doit être appelée en tenant le verrou du menu en écriture.
      *
      * @param pizza la pizza concernée (supposée valide)
      * @return le prix de vente de la pizza
@@ -221,7 +781,109 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (fixe >= 0) {
             return fixe;
         }
-        return calculerPrixMinimalPizza(pizza);
+        return prixMinimalPizza(pizza);
+    }
+
+    /**
+     * Retourne le prix minimal d'une pizza à partir du cache, en le calculant
+     * au besoin. Doit être appelée en tenant le verrou du menu en écriture.
+     *
+     * @param pizza la pizza concernée (supposée valide)
+     * @return le prix minimal de la pizza
+     */
+    private double prixMinimalPizza(Pizza pizza) {
+        return prixMinimaux.computeIfAbsent(pizza, Pizzaiolo::prixMinimal);
+    }
+
+    /**
+     * Retourne le bénéfice réalisé sur la vente d'un exemplaire d'une pizza :
+     * la différence entre son prix de vente et son prix minimal, au moins 0.
+     * Doit être appelée en tenant le verrou du menu en écriture.
+     *
+     * @param pizza la pizza concernée (supposée valide)
+     * @return le bénéfice unitaire de la pizza
+     */
+    private double beneficeUnitaire(Pizza pizza) {
+        return Math.max(prixVentePizza(pizza) - prixMinimalPizza(pizza), 0);
+    }
+
+    /**
+     * Ajoute des ingrédients à des filtres. Les noms invalides sont ignorés.
+     *
+     * @param f               les filtres à compléter
+     * @param nomsIngredients les noms des ingrédients
+     */
+    private void ajouterFiltreIngredients(Filtres f, String... nomsIngredients) {
+        if (nomsIngredients == null) {
+            return;
+        }
+        for (String nom : nomsIngredients) {
+            if (nom == null || nom.trim().isEmpty()) {
+                continue;
+            }
+            Ingredient ing = getIngredientByName(nom);
+            if (ing != null) {
+                synchronized (f) {
+                    f.ingredients.add(ing);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ajoute une plage de prix à des filtres si elle est valide.
+     *
+     * @param f           les filtres à compléter
+     * @param prixMinimum le prix minimum, ou {@code null} pour garder l'actuel
+     * @param prixMaximum le prix maximum
+     */
+    private static void ajouterFiltrePrix(Filtres f, Double prixMinimum, double prixMaximum) {
+        if (prixMaximum <= 0) {
+            return;
+        }
+        if (prixMinimum != null && (prixMinimum < 0 || prixMinimum > prixMaximum)) {
+            return;
+        }
+        synchronized (f) {
+            if (prixMinimum != null) {
+                f.prixMin = prixMinimum;
+            }
+            f.prixMax = prixMaximum;
+        }
+    }
+
+    /**
+     * Sélectionne les pizzas qui valident des filtres.
+     *
+     * @param f les filtres à appliquer
+     * @return l'ensemble filtré des pizzas
+     */
+    private Set<Pizza> selectionPizzaFiltres(Filtres f) {
+        TypePizza type;
+        Set<Ingredient> ingredientsFiltres;
+        Double prixMin;
+        Double prixMax;
+        synchronized (f) {
+            type = f.type;
+            ingredientsFiltres = new HashSet<>(f.ingredients);
+            prixMin = f.prixMin;
+            prixMax = f.prixMax;
+        }
+        return carte.get().selection(type, ingredientsFiltres, prixMin, prixMax);
+    }
+
+    /**
+     * Supprime tous les filtres.
+     *
+     * @param f les filtres à vider
+     */
+    private static void supprimerFiltres(Filtres f) {
+        synchronized (f) {
+            f.type = null;
+            f.ingredients.clear();
+            f.prixMin = null;
+            f.prixMax = null;
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -252,172 +914,137 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         }
 
         // -1 : email déjà utilisé
-        if (clients.containsKey(email)) {
-            return -1;
+        Client client = new Client(email, mdp, info);
+        String nom = info.getNom();
+        String prenom = info.getPrenom();
+        String adresse = info.getAdresse();
+        int age = info.getAge();
+        verrouJournal.readLock().lock();
+        try {
+            if (clients.putIfAbsent(email, client) != null) {
+                return -1;
+            }
+            journaliser(sortie -> {
+                sortie.ecrireOctet(INSCRIPTION);
+                sortie.ecrireTexte(email);
+                sortie.ecrireTexte(mdp);
+                sortie.ecrireTexte(nom);
+                sortie.ecrireTexte(prenom);
+                sortie.ecrireTexte(adresse);
+                sortie.ecrireEntier(age);
+            });
+        } finally {
+            verrouJournal.readLock().unlock();
         }
 
         // OK
-        Client client = new Client(email, mdp, info);
-        clients.put(email, client);
         return 0;
     }
 
     @Override
     public boolean connexion(String email, String mdp) {
-        if (email == null || mdp == null
-                || email.trim().isEmpty()
-                || mdp.trim().isEmpty()) {
+        String jeton = ouvrirSession(email, mdp);
+        if (jeton == null) {
             return false;
         }
-        Client c = clients.get(email);
-        if (c != null && c.getMdp().equals(mdp)) {
-            clientConnecte = c;
-            return true;
+        String ancienne = sessionCourante;
+        sessionCourante = jeton;
+        if (ancienne != null) {
+            sessions.remove(ancienne);
         }
-        return false;
+        return true;
     }
 
     @Override
     public void deconnexion() throws NonConnecteException {
-        verifierConnecte();
-        clientConnecte = null;
+        fermerSession(sessionCourante);
+        sessionCourante = null;
     }
 
     @Override
     public Commande debuterCommande() throws NonConnecteException {
-        verifierConnecte();
-        List<Pizza> liste = new ArrayList<>();
-        Commande cmd = new Commande(liste, clientConnecte.getInfo());
-        commandes.add(cmd);
-        return cmd;
+        return debuterCommande(sessionCourante);
     }
 
     @Override
     public void ajouterPizza(Pizza pizza, int nombre, Commande cmd)
             throws NonConnecteException, CommandeException {
-        verifierConnecte();
-        if (!commandeValide(cmd)) {
-            throw new CommandeException("Commande invalide.");
-        }
-        if (!cmd.getClient().equals(clientConnecte.getInfo())) {
-            throw new CommandeException("La commande n'appartient pas au client connecté.");
-        }
-        if (cmd.getStatut() != StatutCommande.CREE) {
-            throw new CommandeException("La commande n'est pas en cours de création.");
-        }
-        if (!pizzaValide(pizza)) {
-            throw new CommandeException("Pizza invalide.");
-        }
-        if (nombre <= 0) {
-            throw new CommandeException("Nombre de pizzas invalide.");
-        }
+        ajouterPizza(sessionCourante, pizza, nombre, cmd);
+    }
 
-        for (int i = 0; i < nombre; i++) {
-            cmd.ajouterPizza(pizza);
-        }
+    @Override
+    public void ajouterPizzas(Map<Pizza, Integer> pizzas, Commande cmd)
+            throws NonConnecteException, CommandeException {
+        ajouterPizzas(sessionCourante, pizzas, cmd);
     }
 
     @Override
     public void validerCommande(Commande cmd)
             throws NonConnecteException, CommandeException {
-        verifierConnecte();
-        if (!commandeValide(cmd)) {
-            throw new CommandeException("Commande invalide.");
-        }
-        if (!cmd.getClient().equals(clientConnecte.getInfo())) {
-            throw new CommandeException("La commande n'appartient pas au client connecté.");
-        }
-        if (cmd.getStatut() != StatutCommande.CREE) {
-            throw new CommandeException("La commande ne peut pas être validée.");
-        }
-        cmd.setStatut(StatutCommande.VALIDEE);
+        validerCommande(sessionCourante, cmd);
     }
 
     @Override
     public void annulerCommande(Commande cmd)
             throws NonConnecteException, CommandeException {
-        verifierConnecte();
-        if (!commandeValide(cmd)) {
-            throw new CommandeException("Commande invalide.");
-        }
-        if (!cmd.getClient().equals(clientConnecte.getInfo())) {
-            throw new CommandeException("La commande n'appartient pas au client connecté.");
-        }
-        if (cmd.getStatut() != StatutCommande.CREE) {
-            throw new CommandeException("La commande ne peut pas être annulée.");
-        }
-        commandes.remove(cmd);
+        annulerCommande(sessionCourante, cmd);
+    }
+
+    @Override
+    public Commande getCommande(long id) throws NonConnecteException {
+        return getCommande(sessionCourante, id);
     }
 
     @Override
     public List<Commande> getCommandesEncours() throws NonConnecteException {
-        verifierConnecte();
-        return commandes.stream()
-                .filter(c -> c.getClient().equals(clientConnecte.getInfo()))
-                .filter(c -> c.getStatut() == StatutCommande.CREE)
-                .sorted(Comparator.comparing(Commande::getDate))
-                .collect(Collectors.toList());
+        return getCommandesEncours(sessionCourante);
     }
 
     @Override
     public List<Commande> getCommandePassees() throws NonConnecteException {
-        verifierConnecte();
-        return commandes.stream()
-                .filter(c -> c.getClient().equals(clientConnecte.getInfo()))
-                .filter(c -> c.getStatut() != StatutCommande.CREE)
-                .sorted(Comparator.comparing(Commande::getDate))
-                .collect(Collectors.toList());
+        return getCommandePassees(sessionCourante);
     }
 
     @Override
     public Set<Pizza> getPizzas() {
-        return Collections.unmodifiableSet(pizzas);
+        return carte.get().pizzas();
+    }
+
+    @Override
+    public Pizza getPizza(String nom) {
+        return getPizzaByName(nom);
     }
 
     @Override
     public void ajouterFiltre(TypePizza type) {
-        filtreType = type;
+        synchronized (filtres) {
+            filtres.type = type;
+        }
     }
 
     @Override
     public void ajouterFiltre(String... nomsIngredients) {
-        if (nomsIngredients == null) {
-            return;
-        }
-        for (String nom : nomsIngredients) {
-            if (nom == null || nom.trim().isEmpty()) {
-                continue;
-            }
-            Ingredient ing = getIngredientByName(nom);
-            if (ing != null) {
-                filtresIngredients.add(ing);
-            }
-        }
+        ajouterFiltreIngredients(filtres, nomsIngredients);
     }
 
     @Override
     public void ajouterFiltre(double prixMaximum) {
-        if (prixMaximum > 0) {
-            filtrePrixMax = prixMaximum;
-        }
+        ajouterFiltrePrix(filtres, null, prixMaximum);
+    }
+
+    @Override
+    public void ajouterFiltre(double prixMinimum, double prixMaximum) {
+        ajouterFiltrePrix(filtres, prixMinimum, prixMaximum);
     }
 
     @Override
     public Set<Pizza> selectionPizzaFiltres() {
-        return pizzas.stream()
-                .filter(p -> filtreType == null || p.getTypePizza() == filtreType)
-                .filter(p -> filtresIngredients.isEmpty()
-                        || p.getIngredients().containsAll(filtresIngredients))
-                .filter(p -> filtrePrixMax == null
-                        || prixVentePizza(p) <= filtrePrixMax)
-                .collect(Collectors.toSet());
+        return selectionPizzaFiltres(filtres);
     }
 
     @Override
     public void supprimerFiltres() {
-        filtreType = null;
-        filtresIngredients.clear();
-        filtrePrixMax = null;
+        supprimerFiltres(filtres);
     }
 
     @Override
@@ -425,6 +1052,7 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (!pizzaValide(pizza)) {
             return null;
         }
+        attendreHistorique();
         return new HashSet<>(pizza.getEvaluations());
     }
 
@@ -433,20 +1061,344 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (!pizzaValide(pizza)) {
             return -2;
         }
-        List<Evaluation> evals = pizza.getEvaluations().stream().toList();
-        if (evals.isEmpty()) {
-            return -1;
-        }
-        return evals.stream()
-                .mapToDouble(Evaluation::getNote)
-                .average()
-                .orElse(-1);
+        attendreHistorique();
+        return pizza.getNoteMoyenne();
     }
 
     @Override
     public boolean ajouterEvaluation(Pizza pizza, int note, String commentaire)
             throws NonConnecteException, CommandeException {
-        verifierConnecte();
+        return ajouterEvaluation(sessionCourante, pizza, note, commentaire);
+    }
+
+    // -------------------------------------------------------------------------
+    //  Implémentation de InterClientSession
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String ouvrirSession(String email, String mdp) {
+        if (email == null || mdp == null
+                || email.trim().isEmpty()
+                || mdp.trim().isEmpty()) {
+            return null;
+        }
+        Client c = clients.get(email);
+        if (c == null || !c.getMdp().equals(mdp)) {
+            return null;
+        }
+        String jeton = UUID.randomUUID().toString();
+        sessions.put(jeton, new Session(c));
+        return jeton;
+    }
+
+    @Override
+    public void fermerSession(String session) throws NonConnecteException {
+        if (session == null || sessions.remove(session) == null) {
+            throw new NonConnecteException();
+        }
+    }
+
+    @Override
+    public Commande debuterCommande(String session) throws NonConnecteException {
+        Client client = session(session).client;
+        List<Pizza> liste = new ArrayList<>();
+        verrouJournal.readLock().lock();
+        try {
+            Commande cmd = new Commande(prochainIdCommande.getAndIncrement(), liste,
+                    client.getInfo());
+            commandesEnCours.ajouter(cmd);
+            journaliser(sortie -> {
+                sortie.ecrireOctet(CREATION);
+                sortie.ecrireVariable(cmd.getId());
+                sortie.ecrireTexte(client.getEmail());
+                sortie.ecrireVariable(cmd.getDate().toEpochSecond(ZoneOffset.UTC));
+                sortie.ecrireVariable(cmd.getDate().getNano());
+            });
+            diffuser(new EvenementCommande(EvenementCommande.Nature.CREATION, cmd));
+            return cmd;
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void ajouterPizza(String session, Pizza pizza, int nombre, Commande cmd)
+            throws NonConnecteException, CommandeException {
+        Client client = session(session).client;
+        if (cmd == null) {
+            throw new CommandeException("Commande invalide.");
+        }
+        verrouJournal.readLock().lock();
+        try {
+            synchronized (cmd) {
+                verifierCommandeEnCours(client, cmd, "La commande n'est pas en cours de création.");
+                if (!pizzaValide(pizza)) {
+                    throw new CommandeException("Pizza invalide.");
+                }
+                if (nombre <= 0) {
+                    throw new CommandeException("Nombre de pizzas invalide.");
+                }
+
+                cmd.ajouterPizza(pizza, nombre);
+                journaliser(sortie -> {
+                    ecrireReference(sortie, AJOUT_PIZZAS, cmd, client);
+                    sortie.ecrireVariable(1);
+                    sortie.ecrireTexte(pizza.getNom());
+                    sortie.ecrireVariable(nombre);
+                });
+                diffuser(new EvenementCommande(EvenementCommande.Nature.AJOUT_PIZZA, cmd,
+                        pizza, nombre));
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void ajouterPizzas(String session, Map<Pizza, Integer> pizzas, Commande cmd)
+            throws NonConnecteException, CommandeException {
+        Client client = session(session).client;
+        if (cmd == null || pizzas == null) {
+            throw new CommandeException("Commande invalide.");
+        }
+        verrouJournal.readLock().lock();
+        try {
+            synchronized (cmd) {
+                verifierCommandeEnCours(client, cmd, "La commande n'est pas en cours de création.");
+                for (Pizza pizza : pizzas.keySet()) {
+                    if (!pizzaValide(pizza)) {
+                        throw new CommandeException("Pizza invalide.");
+                    }
+                }
+
+                cmd.ajouterPizzas(pizzas);
+                Map<Pizza, Integer> lignes = new LinkedHashMap<>(pizzas);
+                journaliser(sortie -> {
+                    ecrireReference(sortie, AJOUT_PIZZAS, cmd, client);
+                    sortie.ecrireVariable(lignes.size());
+                    for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+                        sortie.ecrireTexte(ligne.getKey().getNom());
+                        sortie.ecrireVariable(ligne.getValue());
+                    }
+                });
+                for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+                    diffuser(new EvenementCommande(EvenementCommande.Nature.AJOUT_PIZZA, cmd,
+                            ligne.getKey(), ligne.getValue()));
+                }
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void validerCommande(String session, Commande cmd)
+            throws NonConnecteException, CommandeException {
+        Client client = session(session).client;
+        if (cmd == null) {
+            throw new CommandeException("Commande invalide.");
+        }
+        verrouJournal.readLock().lock();
+        try {
+            synchronized (cmd) {
+                verifierCommandeEnCours(client, cmd, "La commande ne peut pas être validée.");
+                if (!fileCuisine.offer(cmd)) {
+                    throw new CommandeException("La cuisine a trop de commandes en attente.");
+                }
+                publierCommande(cmd);
+                journaliser(sortie -> ecrireReference(sortie, VALIDATION, cmd, client));
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void annulerCommande(String session, Commande cmd)
+            throws NonConnecteException, CommandeException {
+        Client client = session(session).client;
+        if (cmd == null) {
+            throw new CommandeException("Commande invalide.");
+        }
+        verrouJournal.readLock().lock();
+        try {
+            synchronized (cmd) {
+                verifierCommandeEnCours(client, cmd, "La commande ne peut pas être annulée.");
+                commandesEnCours.retirer(cmd);
+                journaliser(sortie -> ecrireReference(sortie, ANNULATION, cmd, client));
+                diffuser(new EvenementCommande(EvenementCommande.Nature.ANNULATION, cmd));
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exécute une opération d'un client au plus une fois par clé
+     * d'idempotence.
+     *
+     * @param session   le jeton de la session
+     * @param operation le nom de l'opération
+     * @param cle       la clé d'idempotence, ou {@code null} pour exécuter
+     *                  l'opération sans dédoublonnage
+     * @param action    l'opération à exécuter
+     * @param <T>       le type du résultat
+     * @return le résultat de l'opération ou de sa première exécution
+     * @throws NonConnecteException si la session n'est pas ouverte
+     */
+    private <T> T idempotent(String session, String operation, String cle,
+                             TableIdempotence.Operation<T> action) throws NonConnecteException {
+        if (cle == null) {
+            return action.executer();
+        }
+        String email = session(session).client.getEmail();
+        return dedoublonnage.executer(List.of(email, operation, cle), action);
+    }
+
+    @Override
+    public Commande debuterCommande(String session, String cle) throws NonConnecteException {
+        return idempotent(session, "debuterCommande", cle, () -> debuterCommande(session));
+    }
+
+    @Override
+    public void ajouterPizza(String session, Pizza pizza, int nombre, Commande cmd, String cle)
+            throws NonConnecteException, CommandeException {
+        idempotent(session, "ajouterPizza", cle, () -> {
+            ajouterPizza(session, pizza, nombre, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public void ajouterPizzas(String session, Map<Pizza, Integer> pizzas, Commande cmd,
+                              String cle) throws NonConnecteException, CommandeException {
+        idempotent(session, "ajouterPizzas", cle, () -> {
+            ajouterPizzas(session, pizzas, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public void validerCommande(String session, Commande cmd, String cle)
+            throws NonConnecteException, CommandeException {
+        idempotent(session, "validerCommande", cle, () -> {
+            validerCommande(session, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public void annulerCommande(String session, Commande cmd, String cle)
+            throws NonConnecteException, CommandeException {
+        idempotent(session, "annulerCommande", cle, () -> {
+            annulerCommande(session, cmd);
+            return null;
+        });
+    }
+
+    @Override
+    public Commande getCommande(String session, long id) throws NonConnecteException {
+        Client client = session(session).client;
+        Commande cmd = commandes.get(id);
+        if (cmd == null) {
+            cmd = commandesEnCours.get(client.getInfo(), id);
+        }
+        if (cmd == null) {
+            attendreHistorique();
+            cmd = archive.get(id);
+        }
+        if (cmd == null) {
+            return null;
+        }
+        if (!cmd.getClient().equals(client.getInfo())) {
+            return null;
+        }
+        return cmd;
+    }
+
+    @Override
+    public List<Commande> getCommandesEncours(String session) throws NonConnecteException {
+        Client client = session(session).client;
+        return commandesEnCours.commandes(client.getInfo());
+    }
+
+    @Override
+    public List<Commande> getCommandePassees(String session) throws NonConnecteException {
+        Client client = session(session).client;
+        attendreHistorique();
+        NavigableMap<Long, Commande> index =
+                commandesParClient.get(new CleClient(client.getInfo()));
+        List<Commande> resultat = new ArrayList<>();
+        if (index == null) {
+            return resultat;
+        }
+        synchronized (index) {
+            // Fusion des commandes validées et traitées, déjà ordonnées
+            Iterator<Commande> validees = index.values().iterator();
+            Iterator<Commande> traitees = archive.commandes(client.getInfo()).iterator();
+            Commande v = validees.hasNext() ? validees.next() : null;
+            Commande t = traitees.hasNext() ? traitees.next() : null;
+            while (v != null || t != null) {
+                if (t == null || (v != null && v.getId() < t.getId())) {
+                    resultat.add(v);
+                    v = validees.hasNext() ? validees.next() : null;
+                } else {
+                    resultat.add(t);
+                    t = traitees.hasNext() ? traitees.next() : null;
+                }
+            }
+        }
+        return resultat;
+    }
+
+    @Override
+    public void ajouterFiltreType(String session, TypePizza type) throws NonConnecteException {
+        Filtres f = session(session).filtres;
+        synchronized (f) {
+            f.type = type;
+        }
+    }
+
+    @Override
+    public void ajouterFiltreIngredients(String session, String... ingredients)
+            throws NonConnecteException {
+        ajouterFiltreIngredients(session(session).filtres, ingredients);
+    }
+
+    @Override
+    public void ajouterFiltrePrix(String session, double prixMinimum, double prixMaximum)
+            throws NonConnecteException {
+        ajouterFiltrePrix(session(session).filtres, prixMinimum, prixMaximum);
+    }
+
+    @Override
+    public Set<Pizza> selectionPizzaFiltres(String session) throws NonConnecteException {
+        return selectionPizzaFiltres(session(session).filtres);
+    }
+
+    @Override
+    public Set<Pizza> selectionPizzas(String session, TypePizza type, Double prixMinimum,
+                                      Double prixMaximum, String... ingredients)
+            throws NonConnecteException {
+        session(session);
+        Filtres f = new Filtres();
+        f.type = type;
+        ajouterFiltreIngredients(f, ingredients);
+        if (prixMaximum != null) {
+            ajouterFiltrePrix(f, prixMinimum, prixMaximum);
+        }
+        return selectionPizzaFiltres(f);
+    }
+
+    @Override
+    public void supprimerFiltres(String session) throws NonConnecteException {
+        supprimerFiltres(session(session).filtres);
+    }
+
+    @Override
+    public boolean ajouterEvaluation(String session, Pizza pizza, int note, String commentaire)
+            throws NonConnecteException, CommandeException {
+        Client client = session(session).client;
         if (!pizzaValide(pizza)) {
             return false;
         }
@@ -454,29 +1406,40 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
             return false;
         }
 
-        InformationPersonnelle info = clientConnecte.getInfo();
+        InformationPersonnelle info = client.getInfo();
+        attendreHistorique();
 
         // Le client doit avoir commandé la pizza dans une commande VALIDEE
-        boolean aDejaCommandePizza = commandes.stream()
-                .filter(c -> c.getClient().equals(info))
-                .filter(c -> c.getStatut() != StatutCommande.CREE)
-                .anyMatch(c -> c.getPizzas().contains(pizza));
+        boolean aDejaCommandePizza = pizzasAchetees
+                .getOrDefault(new CleClient(info), Collections.emptySet())
+                .contains(pizza);
 
         if (!aDejaCommandePizza) {
             throw new CommandeException("Le client n'a jamais commandé cette pizza.");
         }
 
-        // Vérifier si déjà évaluée par ce client
-        boolean dejaEvaluee = pizza.getEvaluations().stream()
-                .anyMatch(e -> e.getAuteur().equals(info));
-
-        if (dejaEvaluee) {
-            return false;
+        verrouJournal.readLock().lock();
+        try {
+            synchronized (pizza) {
+                // Vérifier si déjà évaluée par ce client
+                if (pizza.estEvalueePar(info)) {
+                    return false;
+                }
+
+                // Créer l'évaluation
+                Evaluation evaluation = new Evaluation(info, note, commentaire);
+                pizza.ajouternote(evaluation);
+                journaliser(sortie -> {
+                    sortie.ecrireOctet(EVALUATION);
+                    sortie.ecrireTexte(client.getEmail());
+                    sortie.ecrireTexte(pizza.getNom());
+                    sortie.ecrireVariable(note);
+                    sortie.ecrireTexte(commentaire);
+                });
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
         }
-
-        // Créer l'évaluation
-        Evaluation evaluation = new Evaluation(info,note,commentaire);
-        pizza.ajouternote(evaluation);
         return true;
     }
 
@@ -494,13 +1457,26 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (prix <= 0) {
             return -3;
         }
-        // -2 : déjà existant
-        if (ingredients.containsKey(nom)) {
-            return -2;
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            // -2 : déjà existant
+            if (ingredients.containsKey(nom)) {
+                return -2;
+            }
+            Ingredient ing = new Ingredient(nom, prix);
+            ingredients.put(nom, ing);
+            carte.set(carte.get().modifier().ingredient(ing).publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(INGREDIENT);
+                sortie.ecrireTexte(nom);
+                sortie.ecrireReel(prix);
+            });
+            return 0;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
         }
-        Ingredient ing = new Ingredient(nom, prix);
-        ingredients.put(nom, ing);
-        return 0;
     }
 
     @Override
@@ -513,13 +1489,43 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (prix <= 0) {
             return -2;
         }
-        Ingredient ing = getIngredientByName(nom);
         // -3 : ingrédient inexistant
-        if (ing == null) {
+        if (getIngredientByName(nom) == null) {
             return -3;
         }
-        ing.setPrix(prix);
-        return 0;
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            // Les cartes déjà publiées gardent l'ancien objet et son prix
+            Ingredient nouveau = new Ingredient(nom, prix);
+            ingredients.put(nom, nouveau);
+            Set<TypePizza> interdits = ingredientsInterdits.remove(nouveau);
+            if (interdits != null) {
+                ingredientsInterdits.put(nouveau, interdits);
+            }
+            Set<Pizza> concernees = pizzasParIngredient.remove(nouveau);
+            Carte.Modification m = carte.get().modifier().ingredient(nouveau);
+            if (concernees != null) {
+                pizzasParIngredient.put(nouveau, concernees);
+                for (Pizza p : concernees) {
+                    p.remplacerIngredient(nouveau);
+                }
+                prixModifie(concernees);
+                for (Pizza p : concernees) {
+                    reporter(m, p);
+                }
+            }
+            carte.set(m.publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(PRIX_INGREDIENT);
+                sortie.ecrireTexte(nom);
+                sortie.ecrireReel(prix);
+            });
+            return 0;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
+        }
     }
 
     @Override
@@ -531,9 +1537,24 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (ing == null) {
             return false;
         }
-        return ingredientsInterdits
-                .computeIfAbsent(ing, k -> new HashSet<>())
-                .add(type);
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            Set<TypePizza> types = ingredientsInterdits.computeIfAbsent(ing, k -> new HashSet<>());
+            if (!types.add(type)) {
+                return false;
+            }
+            carte.set(carte.get().modifier().interdits(ing, types).publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(INTERDICTION);
+                sortie.ecrireTexte(nomIngredient);
+                sortie.ecrireOctet(type.ordinal());
+            });
+            return true;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
+        }
     }
 
     @Override
@@ -541,12 +1562,32 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (nom == null || nom.trim().isEmpty() || type == null) {
             return null;
         }
-        if (getPizzaByName(nom) != null) {
-            return null;
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            if (pizzasParNom.containsKey(nom)) {
+                return null;
+            }
+            Pizza p = new Pizza(nom, type);
+            pizzasParNom.put(nom, p);
+            synchronized (classementVentes) {
+                ventesParPizza.put(p, 0);
+                classementVentes.add(p);
+            }
+            pizzas.add(p);
+            Carte.Modification m = carte.get().modifier();
+            reporter(m, p);
+            carte.set(m.publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(PIZZA);
+                sortie.ecrireTexte(nom);
+                sortie.ecrireOctet(type.ordinal());
+            });
+            return p;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
         }
-        Pizza p = new Pizza(nom, type);
-        pizzas.add(p);
-        return p;
     }
 
     @Override
@@ -559,21 +1600,39 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (nomIngredient == null || nomIngredient.trim().isEmpty()) {
             return -2;
         }
-        Ingredient ing = getIngredientByName(nomIngredient);
-        if (ing == null) {
+        if (getIngredientByName(nomIngredient) == null) {
             return -2;
         }
-        // -3 : ingrédient interdit pour ce type de pizza
-        if (ingredientsInterdits.containsKey(ing)
-                && ingredientsInterdits.get(ing).contains(pizza.getTypePizza())) {
-            return -3;
-        }
-        // Si déjà présent, on ne fait rien mais c'est un succès
-        if (pizza.getIngredients().contains(ing)) {
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            // Objet courant de l'ingrédient, dont le prix a pu changer entre-temps
+            Ingredient ing = ingredients.get(nomIngredient);
+            // -3 : ingrédient interdit pour ce type de pizza
+            if (ingredientsInterdits.containsKey(ing)
+                    && ingredientsInterdits.get(ing).contains(pizza.getTypePizza())) {
+                return -3;
+            }
+            // Si déjà présent, on ne fait rien mais c'est un succès
+            if (pizza.getIngredients().contains(ing)) {
+                return 0;
+            }
+            pizza.ajouterIngredient(ing);
+            pizzasParIngredient.computeIfAbsent(ing, k -> new HashSet<>()).add(pizza);
+            prixModifie(pizza);
+            Carte.Modification m = carte.get().modifier();
+            reporter(m, pizza);
+            carte.set(m.publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(AJOUT_INGREDIENT);
+                sortie.ecrireTexte(pizza.getNom());
+                sortie.ecrireTexte(nomIngredient);
+            });
             return 0;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
         }
-        pizza.ajouterIngredient(ing);
-        return 0;
     }
 
     @Override
@@ -590,12 +1649,29 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (ing == null) {
             return -2;
         }
-        // -3 : l'ingrédient n'existait pas dans la pizza
-        if (!pizza.getIngredients().contains(ing)) {
-            return -3;
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            // -3 : l'ingrédient n'existait pas dans la pizza
+            if (!pizza.getIngredients().contains(ing)) {
+                return -3;
+            }
+            pizza.enleverIngredient(ing);
+            pizzasParIngredient.get(ing).remove(pizza);
+            prixModifie(pizza);
+            Carte.Modification m = carte.get().modifier();
+            reporter(m, pizza);
+            carte.set(m.publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(RETRAIT_INGREDIENT);
+                sortie.ecrireTexte(pizza.getNom());
+                sortie.ecrireTexte(nomIngredient);
+            });
+            return 0;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
         }
-        pizza.enleverIngredient(ing);
-        return 0;
     }
 
     @Override
@@ -603,15 +1679,7 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (!pizzaValide(pizza)) {
             return null;
         }
-        Set<String> interdits = new HashSet<>();
-        TypePizza type = pizza.getTypePizza();
-        for (Ingredient ing : pizza.getIngredients()) {
-            if (ingredientsInterdits.containsKey(ing)
-                    && ingredientsInterdits.get(ing).contains(type)) {
-                interdits.add(ing.getNom());
-            }
-        }
-        return interdits;
+        return carte.get().ingredientsInterdits(pizza);
     }
 
     @Override
@@ -634,16 +1702,40 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
             return false;
         }
 
-        pizza.setPhoto(file);
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            pizza.setPhoto(file);
+            journaliser(sortie -> {
+                sortie.ecrireOctet(PHOTO);
+                sortie.ecrireTexte(pizza.getNom());
+                sortie.ecrireTexte(file);
+            });
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
+        }
         return true;
     }
 
+    /**
+     * Retourne la carte courante. Elle ne change plus : les informations lues
+     * dessus (pizzas, compositions, prix) sont cohérentes entre elles, même si
+     * le pizzaïolo modifie le menu entre-temps.
+     *
+     * @return la carte courante
+     */
+    public Carte getCarte() {
+        return carte.get();
+    }
+
     @Override
     public double getPrixPizza(Pizza pizza) {
-        if (!pizzaValide(pizza)) {
+        Carte c = carte.get();
+        if (!c.contient(pizza)) {
             return -1;
         }
-        return prixVentePizza(pizza);
+        return c.prixVente(pizza);
     }
 
     @Override
@@ -651,19 +1743,47 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (!pizzaValide(pizza)) {
             return false;
         }
-        double minimal = calculerPrixMinimalPizza(pizza);
-        if (prix < minimal) {
-            return false;
+        verrouJournal.readLock().lock();
+        verrouMenu.writeLock().lock();
+        try {
+            double minimal = prixMinimalPizza(pizza);
+            if (prix < minimal) {
+                return false;
+            }
+            pizza.setPrixfixe(prix);
+            prixModifie(pizza);
+            Carte.Modification m = carte.get().modifier();
+            reporter(m, pizza);
+            carte.set(m.publier());
+            journaliser(sortie -> {
+                sortie.ecrireOctet(PRIX_PIZZA);
+                sortie.ecrireTexte(pizza.getNom());
+                sortie.ecrireReel(prix);
+            });
+            return true;
+        } finally {
+            verrouMenu.writeLock().unlock();
+            verrouJournal.readLock().unlock();
         }
-        pizza.setPrixfixe(prix);
-        return true;
     }
 
     @Override
     public double calculerPrixMinimalPizza(Pizza pizza) {
-        if (!pizzaValide(pizza)) {
+        Carte c = carte.get();
+        if (!c.contient(pizza)) {
             return -1;
         }
+        return c.prixMinimal(pizza);
+    }
+
+    /**
+     * Calcule le prix minimal d'une pizza à partir du prix de ses ingrédients,
+     * sans passer par le cache.
+     *
+     * @param pizza la pizza concernée
+     * @return le prix minimal de la pizza
+     */
+    private static double prixMinimal(Pizza pizza) {
         double sum = pizza.getIngredients().stream()
                 .mapToDouble(Ingredient::getPrix)
                 .sum();
@@ -679,72 +1799,147 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La liste retournée est une vue figée et non modifiable de l'archive :
+     * chaque commande n'est décodée qu'au moment où elle est lue.
+     */
     @Override
     public List<Commande> commandesDejaTraitees() {
-        return commandesTraitees();
+        attendreHistorique();
+        return archive.commandes();
     }
 
     @Override
     public List<Commande> commandeNonTraitees() {
-        // Commandes non traitées = VALIDEE mais pas encore lues par le pizzaïolo.
-        List<Commande> aTraiter = commandes.stream()
-                .filter(c -> c.getStatut() == StatutCommande.VALIDEE)
-                .sorted(Comparator.comparing(Commande::getDate))
-                .collect(Collectors.toList());
+        // Commandes non traitées = en attente dans la file de la cuisine.
+        List<Commande> aTraiter = prendreCommandes(Integer.MAX_VALUE);
+        aTraiter.sort(Comparator.comparingLong(Commande::getId));
+        return aTraiter;
+    }
 
-        // Une fois lues, elles deviennent TRAITEES.
+    @Override
+    public List<Commande> prendreCommandes(int max) {
+        List<Commande> aTraiter = new ArrayList<>();
+        if (max <= 0) {
+            return aTraiter;
+        }
+        fileCuisine.drainTo(aTraiter, max);
+        // Une fois retirées de la file, elles deviennent TRAITEES.
         for (Commande c : aTraiter) {
-            c.setStatut(StatutCommande.TRAITEE);
+            traiter(c);
         }
-
+        cuisine.planifier(aTraiter);
         return aTraiter;
     }
 
     @Override
-    public List<Commande> commandesTraiteesClient(InformationPersonnelle client) {
-        if (client == null) {
-            return null;
+    public Commande prendreCommande(long delai, TimeUnit unite) throws InterruptedException {
+        Commande c = fileCuisine.poll(delai, unite);
+        if (c != null) {
+            traiter(c);
+            cuisine.planifier(List.of(c));
         }
-        return commandesTraitees().stream()
-                .filter(c -> c.getClient().equals(client))
-                .collect(Collectors.toList());
+        return c;
     }
 
-    @Override
-    public Map<Pizza, Double> beneficeParPizza() {
-        Map<Pizza, Double> resultat = new HashMap<>();
-        for (Pizza p : pizzas) {
-            double benef = prixVentePizza(p) - calculerPrixMinimalPizza(p);
-            if (benef < 0) {
-                benef = 0;
+    /**
+     * Traite une commande retirée de la file de la cuisine. La commande est
+     * mise en file juste avant d'être publiée : on attend donc sur son
+     * moniteur la fin de sa validation.
+     *
+     * @param c la commande retirée de la file
+     */
+    private void traiter(Commande c) {
+        verrouJournal.readLock().lock();
+        try {
+            synchronized (c) {
+                traiterCommande(c);
+                journaliser(sortie -> {
+                    sortie.ecrireOctet(TRAITEMENT);
+                    sortie.ecrireVariable(c.getId());
+                });
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    @Override
+    public LocalDateTime getHeurePrete(Commande cmd) {
+        return cuisine.getHeurePrete(cmd);
+    }
+
+    @Override
+    public Flow.Publisher<EvenementCommande> fluxCommandes() {
+        return evenements;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La liste retournée est une vue figée et non modifiable de l'archive.
+     * L'archive désigne chaque client par l'objet de ses informations
+     * personnelles ; un objet égal mais distinct est remplacé par celui du
+     * client inscrit.
+     */
+    @Override
+    public List<Commande> commandesTraiteesClient(InformationPersonnelle client) {
+        if (client == null) {
+            return null;
+        }
+        attendreHistorique();
+        List<Commande> traitees = archive.commandes(client);
+        if (traitees.isEmpty()) {
+            for (Client c : clients.values()) {
+                if (c.getInfo() != client && c.getInfo().equals(client)) {
+                    return archive.commandes(c.getInfo());
+                }
             }
-            resultat.put(p, benef);
+        }
+        return traitees;
+    }
+
+    @Override
+    public Map<Pizza, Double> beneficeParPizza() {
+        Map<Pizza, Double> resultat = new HashMap<>();
+        Carte c = carte.get();
+        for (Pizza p : c.pizzas()) {
+            resultat.put(p, c.beneficeUnitaire(p));
         }
         return resultat;
     }
 
     @Override
     public double beneficeCommandes(Commande commande) {
+        attendreHistorique();
         if (!commandeValide(commande)) {
             return -1;
         }
-        return commande.getPizzas().stream()
-                .mapToDouble(p -> {
-                    double benef = prixVentePizza(p) - calculerPrixMinimalPizza(p);
-                    return Math.max(benef, 0);
-                })
-                .sum();
+        Carte c = carte.get();
+        double benefice = 0;
+        for (Map.Entry<Pizza, Integer> ligne : commande.getLignes().entrySet()) {
+            benefice += ligne.getValue() * c.beneficeUnitaire(ligne.getKey());
+        }
+        return benefice;
     }
 
     @Override
     public double beneficeToutesCommandes() {
-        return commandesTraitees().stream()
-                .mapToDouble(this::beneficeCommandes)
-                .sum();
+        attendreHistorique();
+        double total = 0;
+        for (CompteClient compte : comptesClients.values()) {
+            synchronized (compte) {
+                total += compte.benefice;
+            }
+        }
+        return total;
     }
 
     @Override
     public Map<InformationPersonnelle, Integer> nombrePizzasCommandeesParClient() {
+        attendreHistorique();
         Map<InformationPersonnelle, Integer> resultat = new HashMap<>();
 
         // Initialiser les compteurs
@@ -752,13 +1947,11 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
             resultat.put(c.getInfo(), 0);
         }
 
-        // Compter sur les commandes TRAITEES
-        for (Commande c : commandes) {
-            if (c.getStatut() == StatutCommande.TRAITEE) {
-                InformationPersonnelle info = c.getClient();
-                int count = resultat.getOrDefault(info, 0);
-                count += c.getPizzas().size();
-                resultat.put(info, count);
+        // Reporter les comptes alimentés par les commandes TRAITEES
+        for (Map.Entry<CleClient, CompteClient> e : comptesClients.entrySet()) {
+            CompteClient compte = e.getValue();
+            synchronized (compte) {
+                resultat.put(e.getKey().getInfo(), compte.nombrePizzas);
             }
         }
 
@@ -767,14 +1960,18 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
 
     @Override
     public Map<InformationPersonnelle, Double> beneficeParClient() {
+        attendreHistorique();
         Map<InformationPersonnelle, Double> resultat = new HashMap<>();
         for (Client c : clients.values()) {
             InformationPersonnelle info = c.getInfo();
-            double total = commandesTraitees().stream()
-                    .filter(cmd -> cmd.getClient().equals(info))
-                    .mapToDouble(this::beneficeCommandes)
-                    .sum();
-            resultat.put(info, total);
+            CompteClient compte = comptesClients.get(new CleClient(info));
+            if (compte == null) {
+                resultat.put(info, 0.0);
+            } else {
+                synchronized (compte) {
+                    resultat.put(info, compte.benefice);
+                }
+            }
         }
         return resultat;
     }
@@ -784,16 +1981,1132 @@ public class Pizzaiolo implements InterPizzaiolo, InterClient {
         if (!pizzaValide(pizza)) {
             return -1;
         }
-        return commandes.stream()
-                .filter(c -> c.getStatut() == StatutCommande.TRAITEE)
-                .mapToInt(c -> Collections.frequency(c.getPizzas(), pizza))
-                .sum();
+        attendreHistorique();
+        return ventesParPizza.get(pizza);
     }
 
     @Override
     public List<Pizza> classementPizzasParNombreCommandes() {
-        return pizzas.stream()
-                .sorted(Comparator.comparingInt(this::nombrePizzasCommandees).reversed())
-                .collect(Collectors.toList());
+        attendreHistorique();
+        synchronized (classementVentes) {
+            return new ArrayList<>(classementVentes);
+        }
+    }
+
+    @Override
+    public List<Pizza> topPizzas(int k) {
+        attendreHistorique();
+        List<Pizza> resultat = new ArrayList<>();
+        synchronized (classementVentes) {
+            Iterator<Pizza> it = classementVentes.iterator();
+            while (resultat.size() < k && it.hasNext()) {
+                resultat.add(it.next());
+            }
+        }
+        return resultat;
+    }
+
+    // -------------------------------------------------------------------------
+    //  Implémentation de InterSauvegarde
+    // -------------------------------------------------------------------------
+
+    // Format de sauvegarde, version 3 : signature et version sur 4 octets,
+    // numéro du premier enregistrement du journal absent de la sauvegarde sur
+    // 8 octets (absent en version 1), puis les sections suivantes (entiers de
+    // taille variable sauf mention). Les versions 1 et 2 placent les
+    // évaluations juste après les clients et toutes les commandes dans une
+    // seule section.
+    //  - ingrédients : nombre, puis nom et prix (réel) de chacun ;
+    //  - restrictions : nombre, puis numéro d'ingrédient et masque des types
+    //    interdits (un octet, un bit par type) ;
+    //  - pizzas : nombre, puis nom, type (octet), prix fixé (réel), photo et
+    //    numéros de ses ingrédients ;
+    //  - clients : nombre, puis email, mot de passe et informations
+    //    personnelles ;
+    //  - commandes actives : prochain identifiant, puis pour chaque commande
+    //    en cours ou validée son statut (octet), identifiant, date (secondes
+    //    et nanosecondes UTC), client et lignes (numéro de pizza et
+    //    quantité), jusqu'à l'octet FIN_COMMANDES ;
+    //  - historique, lu en arrière-plan : pour chaque pizza, nombre
+    //    d'évaluations, puis auteur, note (réel) et commentaire de chacune ;
+    //    puis les commandes traitées, comme ci-dessus, jusqu'à l'octet
+    //    FIN_COMMANDES.
+    // Ingrédients et pizzas sont désignés par leur rang dans leur section. Une
+    // personne est désignée par son rang plus un, les clients en premier ; 0
+    // introduit une personne inconnue, écrite en entier et numérotée à la
+    // suite.
+
+    /** Signature des fichiers de sauvegarde ("CAJP"). */
+    private static final int SIGNATURE_SAUVEGARDE = 0x43414A50;
+
+    /** Version du format de sauvegarde. */
+    private static final int VERSION_SAUVEGARDE = 3;
+
+    /** Octet marquant la fin de la section des commandes. */
+    private static final int FIN_COMMANDES = 0xFF;
+
+    /**
+     * État de la pizzeria figé pour une sauvegarde. Sa capture ne fait que
+     * copier des références, encoder le menu et copier les commandes actives :
+     * le fichier est ensuite écrit sans verrou, pendant que la pizzeria
+     * continue de servir.
+     */
+    private static final class Instantane {
+
+        /** Numéro du premier enregistrement du journal absent de la sauvegarde. */
+        private final long numero;
+
+        /** Sections des ingrédients, des restrictions et des pizzas, encodées. */
+        private final byte[] menu;
+
+        /** Pizzas, dans l'ordre de leur numéro. */
+        private final List<Pizza> pizzas;
+
+        /** Clients inscrits. */
+        private final List<Client> clients;
+
+        /** Prochain identifiant de commande. */
+        private final long prochainId;
+
+        /** Copies des commandes en cours de création et validées. */
+        private final List<Commande> actives;
+
+        /**
+         * Évaluations de chaque pizza, dans l'ordre de {@link #pizzas} : des
+         * vues figées, obtenues sans copie.
+         */
+        private final List<Set<Evaluation>> evaluations;
+
+        /** Commandes traitées, vue figée de l'archive. */
+        private final List<Commande> traitees;
+
+        /**
+         * Crée un état figé.
+         *
+         * @param numero      le numéro du premier enregistrement du journal
+         *                    absent de la sauvegarde
+         * @param menu        le menu encodé
+         * @param pizzas      les pizzas, dans l'ordre de leur numéro
+         * @param clients     les clients
+         * @param prochainId  le prochain identifiant de commande
+         * @param actives     les copies des commandes actives
+         * @param evaluations les évaluations de chaque pizza
+         * @param traitees    les commandes traitées
+         */
+        private Instantane(long numero, byte[] menu, List<Pizza> pizzas, List<Client> clients,
+                           long prochainId, List<Commande> actives,
+                           List<Set<Evaluation>> evaluations, List<Commande> traitees) {
+            this.numero = numero;
+            this.menu = menu;
+            this.pizzas = pizzas;
+            this.clients = clients;
+            this.prochainId = prochainId;
+            this.actives = actives;
+            this.evaluations = evaluations;
+            this.traitees = traitees;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Équivaut à {@link #sauvegarderEnArrierePlan(String)} suivi de l'attente
+     * de la fin de la sauvegarde : la pizzeria n'est pas suspendue pendant
+     * l'écriture du fichier.
+     */
+    @Override
+    public void sauvegarderDonnees(String nomFichier) throws IOException {
+        try {
+            sauvegarderEnArrierePlan(nomFichier).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sauvegarde toutes les données de la pizzeria sans suspendre son
+     * service. L'état de la pizzeria est figé lors de l'appel, le temps de
+     * quelques copies ; le fichier est écrit par un thread dédié dans un
+     * fichier temporaire qui remplace atomiquement la sauvegarde précédente.
+     * <p>
+     * Si un journal est ouvert, la sauvegarde correspond exactement à un
+     * numéro d'enregistrement ; une fois en place, le journal est compacté
+     * des enregistrements qu'elle contient. Les sauvegardes s'exécutent une à
+     * la fois : l'appel attend la fin de la précédente.
+     *
+     * @param nomFichier le fichier dans lequel sauvegarder les données
+     * @return un futur complété une fois la sauvegarde en place, ou avec
+     *         l'erreur d'écriture
+     */
+    public CompletableFuture<Void> sauvegarderEnArrierePlan(String nomFichier) {
+        Path fichier = Path.of(nomFichier);
+        // L'historique doit être complet avant d'être réécrit
+        attendreHistorique();
+        synchronized (verrouSauvegarde) {
+            sauvegarde.exceptionally(e -> null).join();
+            Journal j;
+            Instantane instantane;
+            verrouJournal.writeLock().lock();
+            try {
+                j = journal;
+                instantane = capturer(j);
+            } catch (IOException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            } finally {
+                verrouJournal.writeLock().unlock();
+            }
+
+            CompletableFuture<Void> fin = new CompletableFuture<>();
+            Thread ecrivain = new Thread(() -> {
+                try {
+                    ecrireSauvegarde(fichier, instantane);
+                    compacterJournal(j, instantane.numero);
+                    fin.complete(null);
+                } catch (IOException | RuntimeException | Error e) {
+                    fin.completeExceptionally(e);
+                }
+            }, "sauvegarde");
+            ecrivain.setDaemon(true);
+            ecrivain.start();
+            sauvegarde = fin;
+            return fin.copy();
+        }
+    }
+
+    /**
+     * Fige l'état de la pizzeria. Doit être appelée en tenant le verrou du
+     * journal en écriture : aucune modification n'est alors en cours.
+     *
+     * @param j le journal ouvert, ou {@code null}
+     * @return l'état figé
+     * @throws IOException en cas d'erreur d'encodage du menu
+     */
+    private Instantane capturer(Journal j) throws IOException {
+        long numero = j == null ? numeroJournal : j.marquer();
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        List<Pizza> listePizzas;
+        try (SortieBinaire sortie = new SortieBinaire(Channels.newChannel(octets), 1 << 12)) {
+            listePizzas = ecrireMenu(sortie, new HashMap<>());
+        }
+
+        List<Client> listeClients = new ArrayList<>(clients.values());
+        List<Commande> actives = new ArrayList<>();
+        for (Client c : listeClients) {
+            for (Commande cmd : commandesEnCours.commandes(c.getInfo())) {
+                actives.add(copier(cmd));
+            }
+        }
+        for (Commande cmd : commandes.values()) {
+            actives.add(copier(cmd));
+        }
+        List<Set<Evaluation>> evaluations = new ArrayList<>(listePizzas.size());
+        for (Pizza p : listePizzas) {
+            evaluations.add(p.getEvaluations());
+        }
+        return new Instantane(numero, octets.toByteArray(), listePizzas, listeClients,
+                prochainIdCommande.get(), actives, evaluations, archive.instantane());
+    }
+
+    /**
+     * Copie une commande active, que la copie ne suive pas ses modifications.
+     *
+     * @param cmd la commande
+     * @return une copie de même identifiant, date, client, lignes et statut
+     */
+    private static Commande copier(Commande cmd) {
+        synchronized (cmd) {
+            Commande copie = new Commande(cmd.getId(), cmd.getDate(), cmd.getClient());
+            copie.ajouterPizzas(cmd.getLignes());
+            if (cmd.getStatut() != StatutCommande.CREE) {
+                copie.setStatut(cmd.getStatut());
+            }
+            return copie;
+        }
+    }
+
+    /**
+     * Compacte le journal une fois une sauvegarde en place, s'il n'a pas été
+     * fermé ou remplacé depuis sa capture.
+     *
+     * @param j      le journal ouvert lors de la capture, ou {@code null}
+     * @param numero le numéro de la marque posée lors de la capture
+     * @throws IOException en cas d'erreur d'écriture du journal
+     */
+    private void compacterJournal(Journal j, long numero) throws IOException {
+        if (j == null) {
+            return;
+        }
+        verrouJournal.readLock().lock();
+        try {
+            if (journal == j) {
+                j.compacter(numero);
+            }
+        } finally {
+            verrouJournal.readLock().unlock();
+        }
+    }
+
+    /**
+     * Écrit une sauvegarde dans un fichier temporaire, puis la met à la place
+     * du fichier demandé.
+     *
+     * @param fichier    le fichier de la sauvegarde
+     * @param instantane l'état figé de la pizzeria
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrireSauvegarde(Path fichier, Instantane instantane) throws IOException {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try (SortieBinaire sortie = new SortieBinaire(temporaire)) {
+            sortie.ecrireEntier(SIGNATURE_SAUVEGARDE);
+            sortie.ecrireEntier(VERSION_SAUVEGARDE);
+            sortie.ecrireLong(instantane.numero);
+            sortie.ecrireOctets(instantane.menu);
+            Map<Pizza, Integer> idsPizzas = new HashMap<>();
+            for (Pizza p : instantane.pizzas) {
+                idsPizzas.put(p, idsPizzas.size());
+            }
+            // Les personnes restent modifiables pendant l'écriture : elles sont
+            // numérotées par identité, comme dans les index (voir CleClient)
+            Map<InformationPersonnelle, Integer> idsPersonnes = new IdentityHashMap<>();
+            ecrireClients(sortie, instantane.clients, idsPersonnes);
+            sortie.ecrireVariable(instantane.prochainId);
+            for (Commande cmd : instantane.actives) {
+                ecrireCommande(sortie, cmd, idsPizzas, idsPersonnes);
+            }
+            sortie.ecrireOctet(FIN_COMMANDES);
+
+            for (Set<Evaluation> evaluations : instantane.evaluations) {
+                sortie.ecrireVariable(evaluations.size());
+                for (Evaluation e : evaluations) {
+                    ecrirePersonne(sortie, e.getAuteur(), idsPersonnes);
+                    sortie.ecrireReel(e.getNote());
+                    sortie.ecrireTexte(e.getCommentaire());
+                }
+            }
+            for (Commande cmd : instantane.traitees) {
+                ecrireCommande(sortie, cmd, idsPizzas, idsPersonnes);
+            }
+            sortie.ecrireOctet(FIN_COMMANDES);
+            sortie.synchroniser();
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Écrit les sections des ingrédients, des restrictions et des pizzas.
+     *
+     * @param sortie    la sortie
+     * @param idsPizzas la map à remplir avec le numéro de chaque pizza
+     * @return les pizzas, dans l'ordre de leur numéro
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private List<Pizza> ecrireMenu(SortieBinaire sortie, Map<Pizza, Integer> idsPizzas)
+            throws IOException {
+        verrouMenu.readLock().lock();
+        try {
+            Map<Ingredient, Integer> idsIngredients = new HashMap<>();
+            sortie.ecrireVariable(ingredients.size());
+            for (Ingredient ing : ingredients.values()) {
+                idsIngredients.put(ing, idsIngredients.size());
+                sortie.ecrireTexte(ing.getNom());
+                sortie.ecrireReel(ing.getPrix());
+            }
+
+            sortie.ecrireVariable(ingredientsInterdits.size());
+            for (Map.Entry<Ingredient, Set<TypePizza>> e : ingredientsInterdits.entrySet()) {
+                int masque = 0;
+                for (TypePizza type : e.getValue()) {
+                    masque |= 1 << type.ordinal();
+                }
+                sortie.ecrireVariable(idsIngredients.get(e.getKey()));
+                sortie.ecrireOctet(masque);
+            }
+
+            List<Pizza> listePizzas = new ArrayList<>(pizzas);
+            sortie.ecrireVariable(listePizzas.size());
+            for (Pizza p : listePizzas) {
+                idsPizzas.put(p, idsPizzas.size());
+                sortie.ecrireTexte(p.getNom());
+                sortie.ecrireOctet(p.getTypePizza().ordinal());
+                sortie.ecrireReel(p.getPrixfixe());
+                sortie.ecrireTexte(p.getPhoto());
+                Set<Ingredient> composition = p.getIngredients();
+                sortie.ecrireVariable(composition.size());
+                for (Ingredient ing : composition) {
+                    sortie.ecrireVariable(idsIngredients.get(ing));
+                }
+            }
+            return listePizzas;
+        } finally {
+            verrouMenu.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Écrit la section des clients.
+     *
+     * @param sortie       la sortie
+     * @param listeClients les clients
+     * @param idsPersonnes la map à remplir avec le numéro de chaque client
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrireClients(SortieBinaire sortie, List<Client> listeClients,
+                                      Map<InformationPersonnelle, Integer> idsPersonnes)
+            throws IOException {
+        sortie.ecrireVariable(listeClients.size());
+        for (Client c : listeClients) {
+            idsPersonnes.putIfAbsent(c.getInfo(), idsPersonnes.size());
+            sortie.ecrireTexte(c.getEmail());
+            sortie.ecrireTexte(c.getMdp());
+            ecrireInformations(sortie, c.getInfo());
+        }
+    }
+
+    /**
+     * Écrit les informations personnelles complètes d'une personne.
+     *
+     * @param sortie la sortie
+     * @param info   les informations personnelles
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrireInformations(SortieBinaire sortie, InformationPersonnelle info)
+            throws IOException {
+        sortie.ecrireTexte(info.getNom());
+        sortie.ecrireTexte(info.getPrenom());
+        sortie.ecrireTexte(info.getAdresse());
+        sortie.ecrireEntier(info.getAge());
+    }
+
+    /**
+     * Écrit une référence à une personne, et la personne elle-même si elle
+     * n'a pas encore de numéro.
+     *
+     * @param sortie       la sortie
+     * @param info         la personne
+     * @param idsPersonnes le numéro des personnes déjà écrites
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrirePersonne(SortieBinaire sortie, InformationPersonnelle info,
+                                       Map<InformationPersonnelle, Integer> idsPersonnes)
+            throws IOException {
+        Integer id = idsPersonnes.get(info);
+        if (id != null) {
+            sortie.ecrireVariable(id + 1L);
+            return;
+        }
+        idsPersonnes.put(info, idsPersonnes.size());
+        sortie.ecrireVariable(0);
+        ecrireInformations(sortie, info);
+    }
+
+    /**
+     * Écrit une commande dans la section des commandes.
+     *
+     * @param sortie       la sortie
+     * @param cmd          la commande
+     * @param idsPizzas    le numéro de chaque pizza
+     * @param idsPersonnes le numéro des personnes déjà écrites
+     * @throws IOException en cas d'erreur d'écriture ou si la commande contient
+     *                     une pizza absente du menu
+     */
+    private static void ecrireCommande(SortieBinaire sortie, Commande cmd,
+                                       Map<Pizza, Integer> idsPizzas,
+                                       Map<InformationPersonnelle, Integer> idsPersonnes)
+            throws IOException {
+        StatutCommande statut;
+        Map<Pizza, Integer> lignes;
+        synchronized (cmd) {
+            statut = cmd.getStatut();
+            lignes = cmd.getLignes();
+        }
+        LocalDateTime date = cmd.getDate();
+        sortie.ecrireOctet(statut.ordinal());
+        sortie.ecrireVariable(cmd.getId());
+        sortie.ecrireVariable(date.toEpochSecond(ZoneOffset.UTC));
+        sortie.ecrireVariable(date.getNano());
+        ecrirePersonne(sortie, cmd.getClient(), idsPersonnes);
+        sortie.ecrireVariable(lignes.size());
+        for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+            Integer id = idsPizzas.get(ligne.getKey());
+            if (id == null) {
+                throw new IOException("Pizza absente du menu : " + ligne.getKey().getNom());
+            }
+            sortie.ecrireVariable(id);
+            sortie.ecrireVariable(ligne.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Les données sont chargées dans une pizzeria neuve, sans client,
+     * ingrédient, pizza ni commande, avant l'ouverture de son journal. Les
+     * commandes validées retrouvent leur place dans la file de la cuisine. Si
+     * le fichier est invalide, la pizzeria peut avoir été partiellement
+     * chargée.
+     *
+     * @throws IllegalStateException si la pizzeria n'est pas neuve ou si son
+     *                               journal est ouvert
+     */
+    @Override
+    public void chargerDonnees(String nomFichier) throws IOException {
+        verrouJournal.writeLock().lock();
+        try {
+            if (carte.get().getVersion() != 0 || !clients.isEmpty()
+                    || prochainIdCommande.get() != 1 || journal != null) {
+                throw new IllegalStateException("La pizzeria n'est pas vide.");
+            }
+            RapportChargement rapport = new RapportChargement();
+            rapportChargement = rapport;
+            try {
+                lireSauvegarde(nomFichier, rapport);
+            } catch (IOException | RuntimeException e) {
+                rapport.echouer(e);
+                throw e;
+            }
+        } finally {
+            verrouJournal.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne le rapport du dernier chargement d'une sauvegarde.
+     *
+     * @return le rapport, ou {@code null} si aucune sauvegarde n'a été
+     *         chargée
+     */
+    public RapportChargement getRapportChargement() {
+        return rapportChargement;
+    }
+
+    /**
+     * Attend la fin du chargement de l'historique, s'il est en cours.
+     *
+     * @throws java.io.UncheckedIOException si l'historique n'a pas pu être
+     *                                      chargé
+     */
+    private void attendreHistorique() {
+        RapportChargement rapport = rapportChargement;
+        if (rapport != null && !rapport.estTermine()) {
+            rapport.attendre();
+        }
+    }
+
+    /**
+     * Lit la partie d'une sauvegarde nécessaire à la prise de commandes, puis
+     * lance la lecture de l'historique par un thread dédié. Doit être appelée
+     * en tenant le verrou du journal en écriture.
+     *
+     * @param nomFichier le fichier de la sauvegarde
+     * @param rapport    le rapport du chargement
+     * @throws IOException en cas d'erreur de lecture ou de fichier invalide
+     */
+    private void lireSauvegarde(String nomFichier, RapportChargement rapport)
+            throws IOException {
+        EntreeBinaire entree = new EntreeBinaire(Path.of(nomFichier));
+        boolean transmise = false;
+        try {
+            if (entree.lireEntier() != SIGNATURE_SAUVEGARDE) {
+                throw new IOException("Ce fichier n'est pas une sauvegarde de pizzeria.");
+            }
+            int version = entree.lireEntier();
+            if (version < 1 || version > VERSION_SAUVEGARDE) {
+                throw new IOException("Version de sauvegarde non prise en charge : " + version);
+            }
+            long numero = version == 1 ? 0 : entree.lireLong();
+
+            long debut = System.nanoTime();
+            List<Pizza> listePizzas = lireMenu(entree);
+            rapport.terminer(RapportChargement.Phase.MENU, debut);
+
+            debut = System.nanoTime();
+            List<InformationPersonnelle> personnes = new ArrayList<>();
+            int nombreClients = entree.lireTaille();
+            for (int i = 0; i < nombreClients; i++) {
+                String email = entree.lireTexte();
+                String mdp = entree.lireTexte();
+                InformationPersonnelle info = lireInformations(entree);
+                clients.put(email, new Client(email, mdp, info));
+                personnes.add(info);
+            }
+            rapport.terminer(RapportChargement.Phase.CLIENTS, debut);
+
+            debut = System.nanoTime();
+            if (version < 3) {
+                // Anciennes versions : tout est lu d'un bloc
+                lireEvaluations(entree, listePizzas, personnes);
+            }
+            long prochainId = entree.lireVariable();
+            prochainIdCommande.set(Math.max(prochainId,
+                    lireCommandes(entree, listePizzas, personnes)));
+            numeroJournal = numero;
+            rapport.terminer(RapportChargement.Phase.COMMANDES, debut);
+
+            if (version < 3) {
+                rapport.terminer(RapportChargement.Phase.HISTORIQUE, System.nanoTime());
+                rapport.terminer();
+                return;
+            }
+            Thread lecteur = new Thread(() -> lireHistorique(entree, nomFichier, listePizzas,
+                    personnes, rapport), "chargement-historique");
+            lecteur.setDaemon(true);
+            lecteur.start();
+            transmise = true;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new IOException("Sauvegarde invalide : " + nomFichier, e);
+        } finally {
+            if (!transmise) {
+                entree.close();
+            }
+        }
+    }
+
+    /**
+     * Lit l'historique d'une sauvegarde, sur le thread de chargement, puis
+     * ferme l'entrée.
+     *
+     * @param entree      l'entrée, positionnée au début de l'historique
+     * @param nomFichier  le fichier de la sauvegarde
+     * @param listePizzas les pizzas, dans l'ordre de leur numéro
+     * @param personnes   les personnes déjà lues, dans l'ordre de leur numéro
+     * @param rapport     le rapport du chargement, complété à la fin
+     */
+    private void lireHistorique(EntreeBinaire entree, String nomFichier, List<Pizza> listePizzas,
+                                List<InformationPersonnelle> personnes,
+                                RapportChargement rapport) {
+        long debut = System.nanoTime();
+        try (entree) {
+            lireEvaluations(entree, listePizzas, personnes);
+            lireCommandes(entree, listePizzas, personnes);
+            rapport.terminer(RapportChargement.Phase.HISTORIQUE, debut);
+            rapport.terminer();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            rapport.echouer(new IOException("Sauvegarde invalide : " + nomFichier, e));
+        } catch (IOException | RuntimeException | Error e) {
+            rapport.echouer(e);
+        }
+    }
+
+    /**
+     * Lit la section des évaluations.
+     *
+     * @param entree      l'entrée
+     * @param listePizzas les pizzas, dans l'ordre de leur numéro
+     * @param personnes   les personnes déjà lues, dans l'ordre de leur numéro
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private static void lireEvaluations(EntreeBinaire entree, List<Pizza> listePizzas,
+                                        List<InformationPersonnelle> personnes)
+            throws IOException {
+        for (Pizza p : listePizzas) {
+            int nombre = entree.lireTaille();
+            for (int i = 0; i < nombre; i++) {
+                InformationPersonnelle auteur = lirePersonne(entree, personnes);
+                Evaluation evaluation = new Evaluation(auteur, entree.lireReel(),
+                        entree.lireTexte());
+                synchronized (p) {
+                    p.ajouternote(evaluation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lit les sections des ingrédients, des restrictions et des pizzas, et
+     * publie la carte correspondante.
+     *
+     * @param entree l'entrée
+     * @return les pizzas, dans l'ordre de leur numéro
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private List<Pizza> lireMenu(EntreeBinaire entree) throws IOException {
+        verrouMenu.writeLock().lock();
+        try {
+            Carte.Modification m = carte.get().modifier();
+            int nombreIngredients = entree.lireTaille();
+            List<Ingredient> listeIngredients = new ArrayList<>(nombreIngredients);
+            for (int i = 0; i < nombreIngredients; i++) {
+                Ingredient ing = new Ingredient(entree.lireTexte(), entree.lireReel());
+                listeIngredients.add(ing);
+                ingredients.put(ing.getNom(), ing);
+                m.ingredient(ing);
+            }
+
+            int nombreRestrictions = entree.lireTaille();
+            for (int i = 0; i < nombreRestrictions; i++) {
+                Ingredient ing = listeIngredients.get(entree.lireTaille());
+                int masque = entree.lireOctet();
+                Set<TypePizza> types = new HashSet<>();
+                for (TypePizza type : TypePizza.values()) {
+                    if ((masque & 1 << type.ordinal()) != 0) {
+                        types.add(type);
+                    }
+                }
+                ingredientsInterdits.put(ing, types);
+                m.interdits(ing, types);
+            }
+
+            int nombrePizzas = entree.lireTaille();
+            List<Pizza> listePizzas = new ArrayList<>(nombrePizzas);
+            for (int i = 0; i < nombrePizzas; i++) {
+                Pizza p = new Pizza(entree.lireTexte(), TypePizza.values()[entree.lireOctet()]);
+                p.setPrixfixe(entree.lireReel());
+                p.setPhoto(entree.lireTexte());
+                int taille = entree.lireTaille();
+                for (int j = 0; j < taille; j++) {
+                    Ingredient ing = listeIngredients.get(entree.lireTaille());
+                    p.ajouterIngredient(ing);
+                    pizzasParIngredient.computeIfAbsent(ing, k -> new HashSet<>()).add(p);
+                }
+                pizzasParNom.put(p.getNom(), p);
+                pizzas.add(p);
+                reporter(m, p);
+                synchronized (classementVentes) {
+                    ventesParPizza.put(p, 0);
+                    classementVentes.add(p);
+                }
+                listePizzas.add(p);
+            }
+            carte.set(m.publier());
+            return listePizzas;
+        } finally {
+            verrouMenu.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lit les informations personnelles complètes d'une personne.
+     *
+     * @param entree l'entrée
+     * @return les informations personnelles
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private static InformationPersonnelle lireInformations(EntreeBinaire entree)
+            throws IOException {
+        String nom = entree.lireTexte();
+        String prenom = entree.lireTexte();
+        String adresse = entree.lireTexte();
+        return new InformationPersonnelle(nom, prenom, adresse, entree.lireEntier());
+    }
+
+    /**
+     * Lit une référence à une personne, suivie de la personne elle-même si
+     * elle n'a pas encore été lue.
+     *
+     * @param entree    l'entrée
+     * @param personnes les personnes déjà lues, dans l'ordre de leur numéro
+     * @return la personne désignée
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private static InformationPersonnelle lirePersonne(EntreeBinaire entree,
+                                                       List<InformationPersonnelle> personnes)
+            throws IOException {
+        int reference = entree.lireTaille();
+        if (reference > 0) {
+            return personnes.get(reference - 1);
+        }
+        InformationPersonnelle info = lireInformations(entree);
+        personnes.add(info);
+        return info;
+    }
+
+    /**
+     * Lit la section des commandes et les enregistre selon leur statut.
+     *
+     * @param entree      l'entrée
+     * @param listePizzas les pizzas, dans l'ordre de leur numéro
+     * @param personnes   les personnes déjà lues, dans l'ordre de leur numéro
+     * @return l'identifiant suivant le plus grand identifiant lu
+     * @throws IOException en cas d'erreur de lecture ou si la cuisine ne peut
+     *                     pas accueillir toutes les commandes validées
+     */
+    private long lireCommandes(EntreeBinaire entree, List<Pizza> listePizzas,
+                               List<InformationPersonnelle> personnes) throws IOException {
+        long prochainId = 1;
+        List<Commande> validees = new ArrayList<>();
+        // Ventes des commandes traitées, comptabilisées en une fois à la fin
+        Map<InformationPersonnelle, Map<Pizza, Integer>> ventes = new HashMap<>();
+        StatutCommande[] statuts = StatutCommande.values();
+        int octet;
+        while ((octet = entree.lireOctet()) != FIN_COMMANDES) {
+            StatutCommande statut = statuts[octet];
+            long id = entree.lireVariable();
+            long secondes = entree.lireVariable();
+            int nanos = entree.lireTaille();
+            LocalDateTime date = LocalDateTime.ofEpochSecond(secondes, nanos, ZoneOffset.UTC);
+            InformationPersonnelle client = lirePersonne(entree, personnes);
+            int nombreLignes = entree.lireTaille();
+            Map<Pizza, Integer> lignes = new LinkedHashMap<>();
+            for (int i = 0; i < nombreLignes; i++) {
+                Pizza pizza = listePizzas.get(entree.lireTaille());
+                int quantite = entree.lireTaille();
+                if (quantite <= 0) {
+                    throw new IOException("Quantité invalide : " + quantite);
+                }
+                lignes.put(pizza, quantite);
+            }
+            prochainId = Math.max(prochainId, id + 1);
+
+            if (statut == StatutCommande.TRAITEE) {
+                // Les commandes traitées vont directement dans l'archive
+                archive.ajouter(id, date, client, lignes);
+                Map<Pizza, Integer> achats = ventes.computeIfAbsent(client,
+                        k -> new HashMap<>());
+                for (Map.Entry<Pizza, Integer> ligne : lignes.entrySet()) {
+                    achats.merge(ligne.getKey(), ligne.getValue(), Integer::sum);
+                }
+                continue;
+            }
+            Commande cmd = new Commande(id, date, client);
+            cmd.ajouterPizzas(lignes);
+            if (statut == StatutCommande.CREE) {
+                commandesEnCours.ajouter(cmd);
+            } else {
+                validees.add(cmd);
+            }
+        }
+        comptabiliserVentes(ventes);
+
+        // Les commandes validées reprennent leur ordre d'arrivée en cuisine
+        validees.sort(Comparator.comparingLong(Commande::getId));
+        for (Commande cmd : validees) {
+            if (!fileCuisine.offer(cmd)) {
+                throw new IOException("La cuisine ne peut pas accueillir les "
+                        + validees.size() + " commandes validées.");
+            }
+            synchronized (cmd) {
+                publierCommande(cmd);
+            }
+        }
+        return prochainId;
+    }
+
+    // -------------------------------------------------------------------------
+    //  Implémentation de InterJournalisation
+    // -------------------------------------------------------------------------
+
+    // Enregistrements du journal : un octet de nature, puis les valeurs
+    // suivantes (entiers de taille variable sauf mention). Ingrédients,
+    // pizzas et clients sont désignés par leur nom ou leur email.
+    //  - INSCRIPTION : email, mot de passe et informations personnelles ;
+    //  - INGREDIENT, PRIX_INGREDIENT : nom et prix (réel) ;
+    //  - INTERDICTION : ingrédient et type (octet) ;
+    //  - PIZZA : nom et type (octet) ;
+    //  - AJOUT_INGREDIENT, RETRAIT_INGREDIENT, PHOTO : pizza et ingrédient ou
+    //    fichier ;
+    //  - PRIX_PIZZA : pizza et prix (réel) ;
+    //  - CREATION : identifiant, client et date (secondes et nanosecondes
+    //    UTC) ;
+    //  - AJOUT_PIZZAS : identifiant, client, puis nombre de lignes et, pour
+    //    chacune, pizza et quantité ;
+    //  - VALIDATION, ANNULATION : identifiant et client ;
+    //  - TRAITEMENT : identifiant ;
+    //  - EVALUATION : client, pizza, note et commentaire.
+
+    /** Inscription d'un client. */
+    private static final int INSCRIPTION = 1;
+
+    /** Création d'un ingrédient. */
+    private static final int INGREDIENT = 2;
+
+    /** Changement du prix d'un ingrédient. */
+    private static final int PRIX_INGREDIENT = 3;
+
+    /** Interdiction d'un ingrédient pour un type de pizza. */
+    private static final int INTERDICTION = 4;
+
+    /** Création d'une pizza. */
+    private static final int PIZZA = 5;
+
+    /** Ajout d'un ingrédient à une pizza. */
+    private static final int AJOUT_INGREDIENT = 6;
+
+    /** Retrait d'un ingrédient d'une pizza. */
+    private static final int RETRAIT_INGREDIENT = 7;
+
+    /** Ajout de la photo d'une pizza. */
+    private static final int PHOTO = 8;
+
+    /** Fixation du prix d'une pizza. */
+    private static final int PRIX_PIZZA = 9;
+
+    /** Création d'une commande. */
+    private static final int CREATION = 10;
+
+    /** Ajout de pizzas à une commande. */
+    private static final int AJOUT_PIZZAS = 11;
+
+    /** Validation d'une commande. */
+    private static final int VALIDATION = 12;
+
+    /** Annulation d'une commande. */
+    private static final int ANNULATION = 13;
+
+    /** Traitement d'une commande. */
+    private static final int TRAITEMENT = 14;
+
+    /** Évaluation d'une pizza. */
+    private static final int EVALUATION = 15;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Les enregistrements antérieurs à la sauvegarde chargée sont lus sans
+     * être rejoués. Les modifications sont suspendues pendant l'ouverture.
+     *
+     * @throws IllegalStateException si un journal est déjà ouvert
+     */
+    @Override
+    public void ouvrirJournal(String nomFichier, Journal.Synchronisation politique)
+            throws IOException {
+        verrouJournal.writeLock().lock();
+        try {
+            if (journal != null) {
+                throw new IllegalStateException("Un journal est déjà ouvert.");
+            }
+            long depuis = numeroJournal;
+            try {
+                journal = Journal.ouvrir(Path.of(nomFichier), politique, depuis,
+                        (numero, entree) -> rejouer(entree, numero >= depuis));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException
+                     | DateTimeException | CommandeException e) {
+                throw new IOException("Journal invalide : " + nomFichier, e);
+            }
+        } finally {
+            verrouJournal.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void fermerJournal() throws IOException {
+        verrouJournal.writeLock().lock();
+        try {
+            Journal j = journal;
+            if (j == null) {
+                return;
+            }
+            journal = null;
+            numeroJournal = j.prochainNumero();
+            j.close();
+        } finally {
+            verrouJournal.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Écrit le début d'un enregistrement portant sur une commande en cours.
+     *
+     * @param sortie la sortie du lot
+     * @param nature la nature de l'enregistrement
+     * @param cmd    la commande
+     * @param client le client de la commande
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrireReference(SortieBinaire sortie, int nature, Commande cmd,
+                                        Client client) throws IOException {
+        sortie.ecrireOctet(nature);
+        sortie.ecrireVariable(cmd.getId());
+        sortie.ecrireTexte(client.getEmail());
+    }
+
+    /**
+     * Lit un enregistrement du journal et, si demandé, rejoue la modification
+     * qu'il décrit. Le journal n'étant pas encore ouvert, les modifications
+     * rejouées ne sont pas journalisées une seconde fois.
+     *
+     * @param entree    l'entrée positionnée au début de l'enregistrement
+     * @param appliquer {@code false} si la modification est déjà contenue
+     *                  dans la sauvegarde chargée
+     * @throws IOException si l'enregistrement est invalide ou ne peut pas
+     *                     s'appliquer à l'état courant
+     */
+    private void rejouer(EntreeBinaire entree, boolean appliquer) throws IOException {
+        int nature = entree.lireOctet();
+        switch (nature) {
+            case INSCRIPTION: {
+                String email = entree.lireTexte();
+                String mdp = entree.lireTexte();
+                InformationPersonnelle info = lireInformations(entree);
+                if (appliquer) {
+                    verifierRelecture(inscription(email, mdp, info) == 0);
+                }
+                break;
+            }
+            case INGREDIENT:
+            case PRIX_INGREDIENT: {
+                String nom = entree.lireTexte();
+                double prix = entree.lireReel();
+                if (appliquer) {
+                    verifierRelecture((nature == INGREDIENT ? creerIngredient(nom, prix)
+                            : changerPrixIngredient(nom, prix)) == 0);
+                }
+                break;
+            }
+            case INTERDICTION: {
+                String nom = entree.lireTexte();
+                TypePizza type = TypePizza.values()[entree.lireOctet()];
+                if (appliquer) {
+                    verifierRelecture(interdireIngredient(nom, type));
+                }
+                break;
+            }
+            case PIZZA: {
+                String nom = entree.lireTexte();
+                TypePizza type = TypePizza.values()[entree.lireOctet()];
+                if (appliquer) {
+                    verifierRelecture(creerPizza(nom, type) != null);
+                }
+                break;
+            }
+            case AJOUT_INGREDIENT:
+            case RETRAIT_INGREDIENT:
+            case PHOTO: {
+                String nom = entree.lireTexte();
+                String valeur = entree.lireTexte();
+                if (appliquer) {
+                    Pizza pizza = getPizzaByName(nom);
+                    verifierRelecture(pizza != null);
+                    if (nature == AJOUT_INGREDIENT) {
+                        verifierRelecture(ajouterIngredientPizza(pizza, valeur) == 0);
+                    } else if (nature == RETRAIT_INGREDIENT) {
+                        verifierRelecture(retirerIngredientPizza(pizza, valeur) == 0);
+                    } else {
+                        // Le fichier a pu disparaître depuis : la photo est
+                        // reprise sans vérification
+                        verrouMenu.writeLock().lock();
+                        try {
+                            pizza.setPhoto(valeur);
+                        } finally {
+                            verrouMenu.writeLock().unlock();
+                        }
+                    }
+                }
+                break;
+            }
+            case PRIX_PIZZA: {
+                String nom = entree.lireTexte();
+                double prix = entree.lireReel();
+                if (appliquer) {
+                    Pizza pizza = getPizzaByName(nom);
+                    verifierRelecture(pizza != null && setPrixPizza(pizza, prix));
+                }
+                break;
+            }
+            case CREATION: {
+                long id = entree.lireVariable();
+                String email = entree.lireTexte();
+                long secondes = entree.lireVariable();
+                int nanos = entree.lireTaille();
+                if (appliquer) {
+                    Client client = clients.get(email);
+                    verifierRelecture(client != null);
+                    commandesEnCours.ajouter(new Commande(id,
+                            LocalDateTime.ofEpochSecond(secondes, nanos, ZoneOffset.UTC),
+                            client.getInfo()));
+                    prochainIdCommande.accumulateAndGet(id + 1, Math::max);
+                }
+                break;
+            }
+            case AJOUT_PIZZAS: {
+                long id = entree.lireVariable();
+                String email = entree.lireTexte();
+                int nombreLignes = entree.lireTaille();
+                Map<Pizza, Integer> lignes = new LinkedHashMap<>();
+                for (int i = 0; i < nombreLignes; i++) {
+                    Pizza pizza = getPizzaByName(entree.lireTexte());
+                    int quantite = entree.lireTaille();
+                    if (appliquer) {
+                        verifierRelecture(pizza != null);
+                        lignes.merge(pizza, quantite, Integer::sum);
+                    }
+                }
+                if (appliquer) {
+                    Commande cmd = commandeEnCours(id, email);
+                    synchronized (cmd) {
+                        cmd.ajouterPizzas(lignes);
+                    }
+                }
+                break;
+            }
+            case VALIDATION:
+            case ANNULATION: {
+                long id = entree.lireVariable();
+                String email = entree.lireTexte();
+                if (appliquer) {
+                    Commande cmd = commandeEnCours(id, email);
+                    synchronized (cmd) {
+                        if (nature == ANNULATION) {
+                            commandesEnCours.retirer(cmd);
+                        } else if (fileCuisine.offer(cmd)) {
+                            publierCommande(cmd);
+                        } else {
+                            throw new IOException("La cuisine ne peut pas accueillir la commande "
+                                    + id + ".");
+                        }
+                    }
+                }
+                break;
+            }
+            case TRAITEMENT: {
+                long id = entree.lireVariable();
+                if (appliquer) {
+                    Commande cmd = commandes.get(id);
+                    verifierRelecture(cmd != null && fileCuisine.remove(cmd));
+                    traiter(cmd);
+                }
+                break;
+            }
+            case EVALUATION: {
+                String email = entree.lireTexte();
+                String nom = entree.lireTexte();
+                int note = entree.lireTaille();
+                String commentaire = entree.lireTexte();
+                if (appliquer) {
+                    Client client = clients.get(email);
+                    Pizza pizza = getPizzaByName(nom);
+                    verifierRelecture(client != null && pizza != null);
+                    synchronized (pizza) {
+                        verifierRelecture(!pizza.estEvalueePar(client.getInfo()));
+                        pizza.ajouternote(new Evaluation(client.getInfo(), note, commentaire));
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IOException("Enregistrement de journal inconnu : " + nature);
+        }
+    }
+
+    /**
+     * Retrouve une commande en cours désignée par un enregistrement du
+     * journal.
+     *
+     * @param id    l'identifiant de la commande
+     * @param email l'email de son client
+     * @return la commande
+     * @throws IOException si aucune commande en cours ne correspond
+     */
+    private Commande commandeEnCours(long id, String email) throws IOException {
+        Client client = clients.get(email);
+        Commande cmd = client == null ? null : commandesEnCours.get(client.getInfo(), id);
+        verifierRelecture(cmd != null);
+        return cmd;
+    }
+
+    /**
+     * Vérifie qu'un enregistrement rejoué s'applique à l'état courant.
+     *
+     * @param condition la condition attendue
+     * @throws IOException si la condition n'est pas remplie
+     */
+    private static void verifierRelecture(boolean condition) throws IOException {
+        if (!condition) {
+            throw new IOException("Le journal ne correspond pas à la sauvegarde chargée.");
+        }
     }
 }
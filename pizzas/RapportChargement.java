@@ -0,0 +1,157 @@
+package pizzas;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Rapport du chargement d'une sauvegarde de la pizzeria : durée de chaque
+ * phase et fin du chargement.
+ * <p>
+ * Le menu, les clients et les commandes en cours ou validées sont chargés
+ * avant que {@link Pizzaiolo#chargerDonnees(String)} ne retourne : la
+ * pizzeria peut aussitôt prendre des commandes. L'historique (évaluations et
+ * commandes traitées) est chargé ensuite par un thread dédié ; les méthodes
+ * qui en dépendent attendent la fin de son chargement.
+ */
+public final class RapportChargement {
+
+    /**
+     * Phase du chargement, dans l'ordre où elles s'enchaînent.
+     */
+    public enum Phase {
+
+        /** Ingrédients, restrictions et pizzas. */
+        MENU,
+
+        /** Clients. */
+        CLIENTS,
+
+        /** Commandes en cours de création et commandes validées. */
+        COMMANDES,
+
+        /** Évaluations et commandes traitées, chargées en arrière-plan. */
+        HISTORIQUE,
+    }
+
+    /** Durée des phases terminées. Les accès sont synchronisés sur la map. */
+    private final Map<Phase, Duration> durees = new EnumMap<>(Phase.class);
+
+    /** Fin du chargement, complétée avec ce rapport. */
+    private final CompletableFuture<RapportChargement> fin = new CompletableFuture<>();
+
+    /**
+     * Crée le rapport d'un chargement qui commence.
+     */
+    RapportChargement() {
+    }
+
+    /**
+     * Enregistre la fin d'une phase.
+     *
+     * @param phase la phase terminée
+     * @param debut son début, selon {@link System#nanoTime()}
+     */
+    void terminer(Phase phase, long debut) {
+        Duration duree = Duration.ofNanos(System.nanoTime() - debut);
+        synchronized (durees) {
+            durees.put(phase, duree);
+        }
+    }
+
+    /**
+     * Enregistre la fin du chargement.
+     */
+    void terminer() {
+        fin.complete(this);
+    }
+
+    /**
+     * Enregistre l'échec du chargement de l'historique.
+     *
+     * @param cause la cause de l'échec
+     */
+    void echouer(Throwable cause) {
+        fin.completeExceptionally(cause);
+    }
+
+    /**
+     * Retourne la durée d'une phase.
+     *
+     * @param phase la phase
+     * @return sa durée, ou {@code null} si elle n'est pas terminée
+     */
+    public Duration getDuree(Phase phase) {
+        synchronized (durees) {
+            return durees.get(phase);
+        }
+    }
+
+    /**
+     * Indique si le chargement est terminé, avec succès ou non.
+     *
+     * @return {@code true} si l'historique est chargé ou a échoué
+     */
+    public boolean estTermine() {
+        return fin.isDone();
+    }
+
+    /**
+     * Retourne la fin du chargement.
+     *
+     * @return un futur complété avec ce rapport une fois l'historique chargé,
+     *         ou avec l'erreur de chargement
+     */
+    public CompletableFuture<RapportChargement> fin() {
+        return fin.copy();
+    }
+
+    /**
+     * Attend la fin du chargement.
+     *
+     * @return ce rapport
+     * @throws UncheckedIOException  si l'historique n'a pas pu être lu
+     * @throws IllegalStateException si son chargement a échoué pour une autre
+     *                               raison
+     */
+    public RapportChargement attendre() {
+        try {
+            return fin.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException("Historique non chargé.", (IOException) cause);
+            }
+            throw new IllegalStateException("Historique non chargé.", cause);
+        }
+    }
+
+    /**
+     * Retourne la durée de chaque phase terminée, en millisecondes.
+     *
+     * @return par exemple « menu 3 ms, clients 12 ms, commandes 1 ms,
+     *         historique en cours »
+     */
+    @Override
+    public String toString() {
+        StringJoiner texte = new StringJoiner(", ");
+        for (Phase phase : Phase.values()) {
+            Duration duree = getDuree(phase);
+            String nom = phase.name().toLowerCase(Locale.ROOT);
+            if (duree != null) {
+                texte.add(nom + " " + duree.toMillis() + " ms");
+            } else if (fin.isCompletedExceptionally()) {
+                texte.add(nom + " en échec");
+            } else {
+                texte.add(nom + " en cours");
+            }
+        }
+        return texte.toString();
+    }
+}
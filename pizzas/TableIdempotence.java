@@ -0,0 +1,202 @@
+package pizzas;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Table de dédoublonnage des opérations rejouées par les clients.
+ * <p>
+ * Chaque opération exécutée avec une clé d'idempotence y laisse son résultat.
+ * Une nouvelle tentative avec la même clé retourne ce résultat sans exécuter
+ * l'opération une seconde fois ; si la première exécution n'est pas finie, la
+ * tentative attend son résultat. Une opération qui échoue est oubliée, pour
+ * qu'une nouvelle tentative puisse réussir.
+ * <p>
+ * La table est bornée : les entrées expirent après une durée fixe et, au-delà
+ * de sa capacité, les plus anciennes entrées sont oubliées. Pour que les
+ * opérations de clients différents ne se disputent pas un même moniteur, la
+ * table est découpée en {@value #SEGMENTS} segments indépendants, choisis
+ * d'après la clé ; chacun dispose d'une part égale de la capacité et
+ * synchronise ses accès sur lui-même. Dans un segment, les entrées étant
+ * rangées par date d'insertion, les expirées sont toujours en tête ; toutes
+ * les opérations sont donc en temps constant amorti.
+ */
+final class TableIdempotence {
+
+    /** Nombre maximum par défaut d'entrées conservées. */
+    static final int CAPACITE = 10_000;
+
+    /** Durée de conservation par défaut d'une entrée. */
+    static final Duration DUREE = Duration.ofHours(1);
+
+    /** Nombre de segments, puissance de 2. */
+    static final int SEGMENTS = 16;
+
+    /**
+     * Opération dédoublonnée.
+     *
+     * @param <T> le type du résultat
+     */
+    @FunctionalInterface
+    interface Operation<T> {
+
+        /**
+         * Exécute l'opération.
+         *
+         * @return le résultat de l'opération
+         * @throws NonConnecteException si le client n'est pas connecté
+         */
+        T executer() throws NonConnecteException;
+    }
+
+    /**
+     * Entrée de la table : le résultat, éventuellement encore attendu, d'une
+     * opération et sa date d'expiration.
+     */
+    private static final class Entree {
+
+        /** Date d'expiration, selon {@link System#nanoTime()}. */
+        private final long expiration;
+
+        /** Résultat de l'opération. */
+        private final CompletableFuture<Object> resultat = new CompletableFuture<>();
+
+        /**
+         * Crée une entrée.
+         *
+         * @param expiration la date d'expiration
+         */
+        private Entree(long expiration) {
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * Segment de la table : une partie des entrées, synchronisée sur le
+     * segment.
+     */
+    private static final class Segment {
+
+        /** Entrées indexées par clé, de la plus ancienne à la plus récente. */
+        private final LinkedHashMap<Object, Entree> entrees = new LinkedHashMap<>();
+    }
+
+    /** Nombre maximum d'entrées conservées dans chaque segment. */
+    private final int capaciteSegment;
+
+    /** Durée de conservation d'une entrée, en nanosecondes. */
+    private final long duree;
+
+    /** Segments de la table. */
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Crée une table.
+     *
+     * @param capacite le nombre maximum d'entrées conservées, réparti
+     *                 également entre les segments
+     * @param duree    la durée de conservation d'une entrée
+     * @throws IllegalArgumentException si la capacité ou la durée n'est pas
+     *                                  strictement positive
+     */
+    TableIdempotence(int capacite, Duration duree) {
+        if (capacite <= 0 || duree.isNegative() || duree.isZero()) {
+            throw new IllegalArgumentException(
+                    "Capacité et durée d'idempotence doivent être positives.");
+        }
+        this.capaciteSegment = (capacite + SEGMENTS - 1) / SEGMENTS;
+        this.duree = duree.toNanos();
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Retourne le segment d'une clé.
+     *
+     * @param cle la clé
+     * @return le segment où la clé est rangée
+     */
+    private Segment segment(Object cle) {
+        int h = cle.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Exécute une opération, sauf si une opération de même clé a déjà réussi
+     * ou est en cours : son résultat est alors retourné.
+     *
+     * @param cle       la clé de l'opération
+     * @param operation l'opération à exécuter
+     * @param <T>       le type du résultat
+     * @return le résultat de l'opération ou de sa première exécution
+     * @throws NonConnecteException si le client n'est pas connecté
+     */
+    @SuppressWarnings("unchecked")
+    <T> T executer(Object cle, Operation<T> operation) throws NonConnecteException {
+        Segment segment = segment(cle);
+        Entree entree;
+        boolean premiere = false;
+        synchronized (segment) {
+            long maintenant = System.nanoTime();
+            purger(segment, maintenant);
+            entree = segment.entrees.get(cle);
+            if (entree == null) {
+                entree = new Entree(maintenant + duree);
+                segment.entrees.put(cle, entree);
+                premiere = true;
+                if (segment.entrees.size() > capaciteSegment) {
+                    Iterator<Entree> it = segment.entrees.values().iterator();
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+
+        if (premiere) {
+            try {
+                T resultat = operation.executer();
+                entree.resultat.complete(resultat);
+                return resultat;
+            } catch (NonConnecteException | RuntimeException | Error e) {
+                synchronized (segment) {
+                    // Une opération qui a échoué est oubliée, si elle est
+                    // toujours dans la table
+                    segment.entrees.remove(cle, entree);
+                }
+                entree.resultat.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return (T) entree.resultat.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NonConnecteException) {
+                throw (NonConnecteException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * Retire les entrées expirées d'un segment, toutes situées en tête. Doit
+     * être appelée en tenant le moniteur du segment.
+     *
+     * @param segment    le segment à purger
+     * @param maintenant la date courante, selon {@link System#nanoTime()}
+     */
+    private static void purger(Segment segment, long maintenant) {
+        Iterator<Entree> it = segment.entrees.values().iterator();
+        while (it.hasNext() && it.next().expiration - maintenant <= 0) {
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package pizzas;
+
+import java.util.Objects;
+
+/**
+ * Vecteur persistant : une suite d'éléments indexés de 0 à
+ * {@code taille() - 1} qui n'est jamais modifiée. Remplacer ou ajouter un
+ * élément produit un nouveau vecteur qui partage avec l'ancien tout ce qui
+ * n'a pas changé.
+ * <p>
+ * Les éléments sont rangés dans un arbre de tableaux de {@value #LARGEUR}
+ * cases ; les numéros se lisent par groupes de 5 bits, du poids fort au poids
+ * faible, pour descendre de la racine aux feuilles. Une lecture ou une
+ * modification parcourt donc un chemin de longueur logarithmique, et une
+ * modification ne recopie que les tableaux de ce chemin.
+ *
+ * @param <T> le type des éléments
+ */
+final class VecteurPersistant<T> {
+
+    /** Nombre de bits du numéro consommés à chaque niveau. */
+    private static final int BITS = 5;
+
+    /** Nombre de cases d'un tableau de l'arbre. */
+    static final int LARGEUR = 1 << BITS;
+
+    /** Masque extrayant le numéro de case à un niveau. */
+    private static final int MASQUE = LARGEUR - 1;
+
+    /** Vecteur vide. */
+    private static final VecteurPersistant<?> VIDE =
+            new VecteurPersistant<>(0, 0, new Object[LARGEUR]);
+
+    /** Nombre d'éléments. */
+    private final int taille;
+
+    /** Décalage du numéro à la racine : 0 quand la racine est une feuille. */
+    private final int decalage;
+
+    /** Racine de l'arbre. */
+    private final Object[] racine;
+
+    /**
+     * Crée un vecteur.
+     *
+     * @param taille   le nombre d'éléments
+     * @param decalage le décalage à la racine
+     * @param racine   la racine, qui ne sera plus modifiée
+     */
+    private VecteurPersistant(int taille, int decalage, Object[] racine) {
+        this.taille = taille;
+        this.decalage = decalage;
+        this.racine = racine;
+    }
+
+    /**
+     * Retourne le vecteur vide.
+     *
+     * @param <T> le type des éléments
+     * @return un vecteur sans élément
+     */
+    @SuppressWarnings("unchecked")
+    static <T> VecteurPersistant<T> vide() {
+        return (VecteurPersistant<T>) VIDE;
+    }
+
+    /**
+     * Retourne le nombre d'éléments.
+     *
+     * @return la taille du vecteur
+     */
+    int taille() {
+        return taille;
+    }
+
+    /**
+     * Retourne un élément.
+     *
+     * @param indice le numéro de l'élément
+     * @return l'élément
+     * @throws IndexOutOfBoundsException si le numéro est hors du vecteur
+     */
+    @SuppressWarnings("unchecked")
+    T get(int indice) {
+        Objects.checkIndex(indice, taille);
+        Object[] noeud = racine;
+        for (int d = decalage; d > 0; d -= BITS) {
+            noeud = (Object[]) noeud[(indice >>> d) & MASQUE];
+        }
+        return (T) noeud[indice & MASQUE];
+    }
+
+    /**
+     * Retourne un vecteur où un élément est remplacé.
+     *
+     * @param indice  le numéro de l'élément
+     * @param element le nouvel élément
+     * @return le nouveau vecteur
+     * @throws IndexOutOfBoundsException si le numéro est hors du vecteur
+     */
+    VecteurPersistant<T> avec(int indice, T element) {
+        Objects.checkIndex(indice, taille);
+        return new VecteurPersistant<>(taille, decalage, placer(racine, decalage, indice, element));
+    }
+
+    /**
+     * Retourne un vecteur prolongé d'un élément.
+     *
+     * @param element l'élément ajouté, de numéro {@code taille()}
+     * @return le nouveau vecteur
+     */
+    VecteurPersistant<T> ajouter(T element) {
+        if (taille == LARGEUR << decalage) {
+            // Racine pleine : l'arbre gagne un niveau
+            Object[] nouvelle = new Object[LARGEUR];
+            nouvelle[0] = racine;
+            return new VecteurPersistant<>(taille + 1, decalage + BITS,
+                    placer(nouvelle, decalage + BITS, taille, element));
+        }
+        return new VecteurPersistant<>(taille + 1, decalage,
+                placer(racine, decalage, taille, element));
+    }
+
+    /**
+     * Recopie le chemin d'un élément en y plaçant sa nouvelle valeur.
+     *
+     * @param noeud    le tableau du niveau courant, ou {@code null} s'il reste
+     *                 à créer
+     * @param decalage le décalage du numéro à ce niveau
+     * @param indice   le numéro de l'élément
+     * @param element  la nouvelle valeur
+     * @return la copie du tableau
+     */
+    private static Object[] placer(Object[] noeud, int decalage, int indice, Object element) {
+        Object[] copie = noeud == null ? new Object[LARGEUR] : noeud.clone();
+        if (decalage == 0) {
+            copie[indice & MASQUE] = element;
+        } else {
+            int i = (indice >>> decalage) & MASQUE;
+            copie[i] = placer((Object[]) copie[i], decalage - BITS, indice, element);
+        }
+        return copie;
+    }
+}
@@ -0,0 +1,116 @@
+package tests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientAsynchroneTest {
+
+    private Pizzaiolo p;
+    private ClientAsynchrone client;
+    private Pizza reine;
+    private InformationPersonnelle info;
+
+    @BeforeEach
+    public void setup() {
+        p = new Pizzaiolo();
+        client = new ClientAsynchrone(p);
+        p.creerIngredient("tomate", 1);
+        reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        info = new InformationPersonnelle("Dupont", "Jean", "1 rue de Paris", 43);
+        p.inscription("a@b.com", "pass", info);
+    }
+
+    @Test
+    public void testOperationsOrdonneesParClient() throws Exception {
+        String session = client.ouvrirSession("a@b.com", "pass").get();
+        Commande cmd = client.debuterCommande(session).get();
+
+        List<CompletableFuture<Void>> ajouts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ajouts.add(client.ajouterPizza(session, reine, 1, cmd));
+        }
+        CompletableFuture<Void> validation = client.validerCommande(session, cmd);
+        CompletableFuture<List<Commande>> passees = client.getCommandePassees(session);
+
+        validation.get();
+        for (CompletableFuture<Void> ajout : ajouts) {
+            assertTrue(ajout.isDone());
+        }
+        assertEquals(20, cmd.getPizzas().size());
+        assertEquals(List.of(cmd), passees.get());
+    }
+
+    @Test
+    public void testEchecsExceptionnels() throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> client.ouvrirSession("a@b.com", "faux").get());
+        assertTrue(e.getCause() instanceof NonConnecteException);
+
+        e = assertThrows(ExecutionException.class,
+                () -> client.debuterCommande("inconnue").get());
+        assertTrue(e.getCause() instanceof NonConnecteException);
+
+        String session = client.ouvrirSession("a@b.com", "pass").get();
+        Commande cmd = client.debuterCommande(session).get();
+        client.validerCommande(session, cmd).get();
+        e = assertThrows(ExecutionException.class,
+                () -> client.ajouterPizza(session, reine, 1, cmd).get());
+        assertTrue(e.getCause() instanceof CommandeException);
+    }
+
+    @Test
+    public void testErreurTermineLeFutur() throws Exception {
+        Pizzaiolo defaillante = new Pizzaiolo() {
+            @Override
+            public Set<Pizza> getPizzas() {
+                throw new OutOfMemoryError("simulée");
+            }
+        };
+        ClientAsynchrone asynchrone = new ClientAsynchrone(defaillante);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asynchrone.getPizzas().get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof OutOfMemoryError);
+    }
+
+    @Test
+    public void testOrdreApresModificationClient() throws Exception {
+        // Exécuteur manuel qui lance la dernière tâche reçue en premier : seul
+        // le chaînage par client peut garder l'ordre des opérations
+        Deque<Runnable> taches = new ArrayDeque<>();
+        ClientAsynchrone asynchrone = new ClientAsynchrone(p, taches::push);
+        String session = p.ouvrirSession("a@b.com", "pass");
+
+        CompletableFuture<Commande> debut = asynchrone.debuterCommande(session);
+        info.setAdresse("3 rue de Brest");
+        CompletableFuture<List<Commande>> enCours = asynchrone.getCommandesEncours(session);
+        while (!taches.isEmpty()) {
+            taches.pop().run();
+        }
+        assertEquals(List.of(debut.get()), enCours.get());
+    }
+
+    @Test
+    public void testSelectionPlageDePrix() throws Exception {
+        Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.setPrixPizza(marguerite, 9);
+        p.setPrixPizza(reine, 4);
+        String session = client.ouvrirSession("a@b.com", "pass").get();
+        assertEquals(Set.of(marguerite),
+                client.selectionPizzas(session, null, 5.0, 10.0).get());
+        assertEquals(Set.of(reine, marguerite),
+                client.selectionPizzas(session, null, null, 10.0).get());
+    }
+}
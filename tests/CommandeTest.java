@@ -6,6 +6,8 @@ import pizzas.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class CommandeTest {
 
@@ -58,4 +60,24 @@ public class CommandeTest {
 
         assertTrue(c.getPizzas().isEmpty());
     }
+
+    @Test
+    public void testLignes() {
+        InformationPersonnelle info =
+                new InformationPersonnelle("A", "B", "C", 20);
+        Pizza p = new Pizza("Test", TypePizza.VIANDE);
+        Pizza q = new Pizza("Autre", TypePizza.REGIONALE);
+
+        Commande c = new Commande(List.of(p, q, p), info);
+        c.ajouterPizza(p);
+
+        assertEquals(Map.of(p, 3, q, 1), c.getLignes());
+        assertEquals(3, c.getQuantite(p));
+        assertEquals(4, c.getNombrePizzas());
+        assertEquals(List.of(p, p, p, q), c.getPizzas());
+
+        c.retirerPizza(q);
+        assertEquals(0, c.getQuantite(q));
+        assertEquals(Map.of(p, 3), c.getLignes());
+    }
 }
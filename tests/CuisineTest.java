@@ -0,0 +1,101 @@
+package tests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CuisineTest {
+
+    private static final Instant DEBUT = Instant.parse("2026-01-01T12:00:00Z");
+
+    private Pizzaiolo p;
+    private Pizza reine;
+    private Pizza margherita;
+
+    @BeforeEach
+    public void setup() {
+        Clock horloge = Clock.fixed(DEBUT, ZoneOffset.UTC);
+        p = new Pizzaiolo(16, new Cuisine(1, 1, horloge));
+        p.creerIngredient("tomate", 1);
+        reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        margherita = p.creerPizza("Margherita", TypePizza.VEGETARIENNE);
+        p.inscription("a@b.com", "pass",
+                new InformationPersonnelle("Dupont", "Jean", "1 rue de Paris", 43));
+        p.connexion("a@b.com", "pass");
+    }
+
+    @Test
+    public void testDurees() {
+        assertEquals(Duration.ofSeconds(140), Cuisine.dureePreparation(reine));
+        assertEquals(Duration.ofSeconds(300), Cuisine.dureeCuisson(reine));
+        assertEquals(Duration.ofSeconds(120), Cuisine.dureePreparation(margherita));
+        assertEquals(Duration.ofSeconds(240), Cuisine.dureeCuisson(margherita));
+        assertThrows(IllegalArgumentException.class, () -> new Cuisine(0, 1));
+    }
+
+    @Test
+    public void testPlanification() throws Exception {
+        Commande longue = p.debuterCommande();
+        p.ajouterPizza(reine, 2, longue);
+        Commande courte = p.debuterCommande();
+        p.ajouterPizza(margherita, 1, courte);
+        p.validerCommande(longue);
+        p.validerCommande(courte);
+        assertNull(p.getHeurePrete(longue));
+
+        assertEquals(List.of(longue, courte), p.prendreCommandes(10));
+        LocalDateTime debut = LocalDateTime.ofInstant(DEBUT, ZoneOffset.UTC);
+        // La commande la plus courte passe en premier : préparée puis cuite
+        assertEquals(debut.plusSeconds(360), p.getHeurePrete(courte));
+        // Ses deux pizzas attendent que le four se libère
+        assertEquals(debut.plusSeconds(960), p.getHeurePrete(longue));
+    }
+
+    @Test
+    public void testOubliDesCommandesPretes() throws Exception {
+        Instant[] maintenant = {DEBUT};
+        Clock horloge = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return maintenant[0];
+            }
+        };
+        Cuisine cuisine = new Cuisine(1, 1, horloge);
+        Commande premiere = p.debuterCommande();
+        p.ajouterPizza(margherita, 1, premiere);
+        Commande seconde = p.debuterCommande();
+        p.ajouterPizza(margherita, 1, seconde);
+
+        cuisine.planifier(List.of(premiere));
+        assertNotNull(cuisine.getHeurePrete(premiere));
+
+        // Une fois son heure passée, la commande est oubliée
+        maintenant[0] = DEBUT.plusSeconds(360);
+        assertNull(cuisine.getHeurePrete(premiere));
+        cuisine.planifier(List.of(seconde));
+        assertNull(cuisine.getHeurePrete(premiere));
+        assertEquals(LocalDateTime.ofInstant(DEBUT.plusSeconds(720), ZoneOffset.UTC),
+                cuisine.getHeurePrete(seconde));
+    }
+}
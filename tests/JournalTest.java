@@ -0,0 +1,190 @@
+package tests;
+
+import io.Journal;
+import org.junit.jupiter.api.Test;
+import pizzas.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTest {
+
+    private static final InformationPersonnelle INFO =
+            new InformationPersonnelle("Dupont", "Jean", "Paris", 43);
+
+    /**
+     * Crée le menu et le client communs aux tests.
+     */
+    private static Pizza preparer(Pizzaiolo p) {
+        p.creerIngredient("tomate", 1);
+        p.creerIngredient("jambon", 2.5);
+        p.changerPrixIngredient("jambon", 3);
+        p.interdireIngredient("jambon", TypePizza.VEGETARIENNE);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        p.ajouterIngredientPizza(reine, "jambon");
+        p.setPrixPizza(reine, 12);
+        p.inscription("a@b.com", "pass", INFO);
+        return reine;
+    }
+
+    @Test
+    public void testRelecture() throws Exception {
+        Path dossier = Files.createTempDirectory("journal");
+        Path fichier = dossier.resolve("pizzeria.journal");
+        try {
+            Pizzaiolo p = new Pizzaiolo();
+            p.ouvrirJournal(fichier.toString(), Journal.Synchronisation.IMMEDIATE);
+            Pizza reine = preparer(p);
+            Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+            p.ajouterIngredientPizza(marguerite, "tomate");
+
+            String session = p.ouvrirSession("a@b.com", "pass");
+            Commande traitee = p.debuterCommande(session);
+            p.ajouterPizzas(session, Map.of(reine, 2, marguerite, 1), traitee);
+            p.validerCommande(session, traitee);
+            p.commandeNonTraitees();
+            p.ajouterEvaluation(session, reine, 5, "Parfaite");
+            Commande annulee = p.debuterCommande(session);
+            p.annulerCommande(session, annulee);
+            Commande validee = p.debuterCommande(session);
+            p.ajouterPizza(session, reine, 1, validee);
+            p.validerCommande(session, validee);
+            Commande enCours = p.debuterCommande(session);
+            p.ajouterPizza(session, marguerite, 3, enCours);
+            p.fermerJournal();
+
+            Pizzaiolo q = new Pizzaiolo();
+            q.ouvrirJournal(fichier.toString(), Journal.Synchronisation.IMMEDIATE);
+            Pizza reine2 = q.getPizza("Reine");
+            assertEquals(12.0, q.getPrixPizza(reine2));
+            assertEquals(p.calculerPrixMinimalPizza(reine), q.calculerPrixMinimalPizza(reine2));
+            assertEquals(-3, q.ajouterIngredientPizza(q.getPizza("Marguerite"), "jambon"));
+            assertEquals(5.0, q.getNoteMoyenne(reine2));
+            assertEquals(Set.of(INFO), q.ensembleClients());
+            assertEquals(2, q.nombrePizzasCommandees(reine2));
+            assertEquals(p.beneficeToutesCommandes(), q.beneficeToutesCommandes());
+
+            String session2 = q.ouvrirSession("a@b.com", "pass");
+            List<Commande> encours = q.getCommandesEncours(session2);
+            assertEquals(1, encours.size());
+            assertEquals(enCours.getId(), encours.get(0).getId());
+            assertEquals(enCours.getDate(), encours.get(0).getDate());
+            assertEquals(3, encours.get(0).getQuantite(q.getPizza("Marguerite")));
+            List<Commande> aTraiter = q.commandeNonTraitees();
+            assertEquals(1, aTraiter.size());
+            assertEquals(validee.getId(), aTraiter.get(0).getId());
+            assertTrue(q.debuterCommande(session2).getId() > enCours.getId());
+            q.fermerJournal();
+        } finally {
+            for (Path f : Files.list(dossier).toArray(Path[]::new)) {
+                Files.delete(f);
+            }
+            Files.delete(dossier);
+        }
+    }
+
+    @Test
+    public void testSauvegardePuisJournal() throws Exception {
+        Path dossier = Files.createTempDirectory("journal");
+        Path sauvegarde = dossier.resolve("pizzeria.bin");
+        Path fichier = dossier.resolve("pizzeria.journal");
+        try {
+            Pizzaiolo p = new Pizzaiolo();
+            p.ouvrirJournal(fichier.toString(), Journal.Synchronisation.PERIODIQUE);
+            Pizza reine = preparer(p);
+            String session = p.ouvrirSession("a@b.com", "pass");
+            Commande avant = p.debuterCommande(session);
+            p.ajouterPizza(session, reine, 1, avant);
+            p.sauvegarderDonnees(sauvegarde.toString());
+            long tailleVide = Files.size(fichier);
+
+            p.ajouterPizza(session, reine, 2, avant);
+            p.validerCommande(session, avant);
+            p.creerIngredient("olive", 0.5);
+            assertTrue(Files.size(fichier) >= tailleVide);
+            p.fermerJournal();
+
+            // Un lot incomplet en fin de journal est ignoré
+            Files.write(fichier, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+            Pizzaiolo q = new Pizzaiolo();
+            q.chargerDonnees(sauvegarde.toString());
+            q.ouvrirJournal(fichier.toString(), Journal.Synchronisation.AUCUNE);
+            assertEquals(-2, q.creerIngredient("olive", 1));
+            List<Commande> aTraiter = q.commandeNonTraitees();
+            assertEquals(1, aTraiter.size());
+            assertEquals(3, aTraiter.get(0).getQuantite(q.getPizza("Reine")));
+            q.fermerJournal();
+
+            // Le journal ne s'applique pas sans la sauvegarde qui le précède
+            Pizzaiolo r = new Pizzaiolo();
+            assertThrows(IOException.class, () -> r.ouvrirJournal(fichier.toString(),
+                    Journal.Synchronisation.AUCUNE));
+        } finally {
+            for (Path f : Files.list(dossier).toArray(Path[]::new)) {
+                Files.delete(f);
+            }
+            Files.delete(dossier);
+        }
+    }
+
+    @Test
+    public void testSauvegardeEnArrierePlan() throws Exception {
+        Path dossier = Files.createTempDirectory("journal");
+        Path sauvegarde = dossier.resolve("pizzeria.bin");
+        Path fichier = dossier.resolve("pizzeria.journal");
+        try {
+            Pizzaiolo p = new Pizzaiolo();
+            p.ouvrirJournal(fichier.toString(), Journal.Synchronisation.PERIODIQUE);
+            Pizza reine = preparer(p);
+            String session = p.ouvrirSession("a@b.com", "pass");
+            for (int i = 0; i < 500; i++) {
+                Commande cmd = p.debuterCommande(session);
+                p.ajouterPizza(session, reine, 1, cmd);
+                p.validerCommande(session, cmd);
+            }
+            p.commandeNonTraitees();
+            Commande avant = p.debuterCommande(session);
+            p.ajouterPizza(session, reine, 1, avant);
+            long tailleAvant = Files.size(fichier);
+
+            CompletableFuture<Void> fin = p.sauvegarderEnArrierePlan(sauvegarde.toString());
+            // Modifications pendant l'écriture : absentes de la sauvegarde,
+            // elles restent dans le journal
+            p.ajouterPizza(session, reine, 2, avant);
+            p.validerCommande(session, avant);
+            Commande apres = p.debuterCommande(session);
+            fin.join();
+            assertTrue(Files.size(fichier) < tailleAvant);
+            p.ajouterPizza(session, reine, 4, apres);
+            p.fermerJournal();
+
+            Pizzaiolo q = new Pizzaiolo();
+            q.chargerDonnees(sauvegarde.toString());
+            q.ouvrirJournal(fichier.toString(), Journal.Synchronisation.AUCUNE);
+            assertEquals(500, q.commandesDejaTraitees().size());
+            List<Commande> aTraiter = q.commandeNonTraitees();
+            assertEquals(1, aTraiter.size());
+            assertEquals(avant.getId(), aTraiter.get(0).getId());
+            assertEquals(3, aTraiter.get(0).getQuantite(q.getPizza("Reine")));
+            List<Commande> encours = q.getCommandesEncours(q.ouvrirSession("a@b.com", "pass"));
+            assertEquals(1, encours.size());
+            assertEquals(4, encours.get(0).getQuantite(q.getPizza("Reine")));
+            q.fermerJournal();
+        } finally {
+            for (Path f : Files.list(dossier).toArray(Path[]::new)) {
+                Files.delete(f);
+            }
+            Files.delete(dossier);
+        }
+    }
+}
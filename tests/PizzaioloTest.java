@@ -4,6 +4,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import pizzas.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class PizzaioloTest {
@@ -36,12 +49,339 @@ public class PizzaioloTest {
         assertTrue(p.connexion("a@b.com", "pass"));
     }
 
+    @Test
+    public void testRegistreCommandes() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+
+        Commande c1 = p.debuterCommande();
+        Commande c2 = p.debuterCommande();
+        assertNotEquals(c1.getId(), c2.getId());
+        assertSame(c1, p.getCommande(c1.getId()));
+
+        p.annulerCommande(c1);
+        assertNull(p.getCommande(c1.getId()));
+        assertThrows(CommandeException.class, () -> p.validerCommande(c1));
+
+        Commande etrangere = new Commande(new ArrayList<>(), info);
+        assertThrows(CommandeException.class, () -> p.validerCommande(etrangere));
+        p.validerCommande(c2);
+        assertEquals(StatutCommande.VALIDEE, p.getCommande(c2.getId()).getStatut());
+    }
+
+    @Test
+    public void testHistoriqueClient() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        p.inscription("c@d.com", "pass",
+                new InformationPersonnelle("Martin", "Paul", "2 rue de Lyon", 30));
+        p.connexion("a@b.com", "pass");
+        Commande c1 = p.debuterCommande();
+        Commande c2 = p.debuterCommande();
+        Commande c3 = p.debuterCommande();
+        p.validerCommande(c3);
+        p.validerCommande(c1);
+        p.commandeNonTraitees();
+
+        p.connexion("c@d.com", "pass");
+        p.debuterCommande();
+        assertEquals(1, p.getCommandesEncours().size());
+        assertTrue(p.getCommandePassees().isEmpty());
+
+        p.connexion("a@b.com", "pass");
+        Commande c4 = p.debuterCommande();
+        p.validerCommande(c2);
+        assertEquals(List.of(c4), p.getCommandesEncours());
+        assertEquals(List.of(c1, c2, c3), p.getCommandePassees());
+        assertEquals(List.of(c1, c3), p.commandesTraiteesClient(info));
+    }
+
+    @Test
+    public void testHistoriqueApresModificationClient() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande c1 = p.debuterCommande();
+        p.validerCommande(c1);
+
+        info.setAdresse("3 rue de Brest");
+        info.setAge(44);
+        assertEquals(List.of(c1), p.getCommandePassees());
+    }
+
+    @Test
+    public void testArchiveApresModificationClient() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande c1 = p.debuterCommande();
+        p.validerCommande(c1);
+        p.commandeNonTraitees();
+
+        info.setAdresse("3 rue de Brest");
+        assertEquals(List.of(c1), p.commandesTraiteesClient(info));
+        Commande c2 = p.debuterCommande();
+        p.validerCommande(c2);
+        p.commandeNonTraitees();
+        assertEquals(List.of(c1, c2), p.commandesTraiteesClient(info));
+        assertEquals(List.of(c1, c2), p.getCommandePassees());
+        assertEquals(List.of(c1, c2), p.commandesTraiteesClient(
+                new InformationPersonnelle("Dupont", "Jean", "3 rue de Brest", 43)));
+    }
+
+    @Test
+    public void testCommandeEnCoursApresModificationClient() throws Exception {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande cmd = p.debuterCommande();
+
+        info.setAdresse("3 rue de Brest");
+        assertEquals(List.of(cmd), p.getCommandesEncours());
+        p.ajouterPizza(reine, 2, cmd);
+        assertEquals(2, cmd.getQuantite(reine));
+        p.validerCommande(cmd);
+        assertTrue(p.getCommandesEncours().isEmpty());
+    }
+
+    @Test
+    public void testCommandesParStatut() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande c1 = p.debuterCommande();
+        Commande c2 = p.debuterCommande();
+        Commande c3 = p.debuterCommande();
+        p.validerCommande(c2);
+        assertEquals(List.of(c2), p.commandeNonTraitees());
+        assertTrue(p.commandeNonTraitees().isEmpty());
+
+        p.validerCommande(c3);
+        p.validerCommande(c1);
+        assertEquals(List.of(c1, c3), p.commandeNonTraitees());
+        assertEquals(List.of(c1, c2, c3), p.commandesDejaTraitees());
+    }
+
+    @Test
+    public void testAjouterPizzas() throws Exception {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        Pizza regina = p.creerPizza("Regina", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande cmd = p.debuterCommande();
+
+        p.ajouterPizzas(Map.of(reine, 50, regina, 2), cmd);
+        assertEquals(52, cmd.getNombrePizzas());
+        assertThrows(CommandeException.class,
+                () -> p.ajouterPizzas(Map.of(reine, 1, regina, 0), cmd));
+        assertEquals(50, cmd.getQuantite(reine));
+
+        p.validerCommande(cmd);
+        p.commandeNonTraitees();
+        assertEquals(50, p.nombrePizzasCommandees(reine));
+    }
+
+    @Test
+    public void testIdempotence() throws Exception {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", info);
+        String session = p.ouvrirSession("a@b.com", "pass");
+
+        Commande cmd = p.debuterCommande(session, "cle-1");
+        assertSame(cmd, p.debuterCommande(session, "cle-1"));
+        // Une reconnexion ne change pas le client : la clé reste connue
+        String autre = p.ouvrirSession("a@b.com", "pass");
+        assertSame(cmd, p.debuterCommande(autre, "cle-1"));
+        assertEquals(1, p.getCommandesEncours(session).size());
+
+        p.ajouterPizza(session, reine, 2, cmd, "cle-2");
+        p.ajouterPizza(session, reine, 2, cmd, "cle-2");
+        assertEquals(2, cmd.getQuantite(reine));
+
+        // Un échec n'est pas mémorisé
+        assertThrows(CommandeException.class,
+                () -> p.ajouterPizza(session, reine, 0, cmd, "cle-3"));
+        p.ajouterPizza(session, reine, 1, cmd, "cle-3");
+        assertEquals(3, cmd.getQuantite(reine));
+
+        p.validerCommande(session, cmd, "cle-4");
+        p.validerCommande(session, cmd, "cle-4");
+        assertEquals(StatutCommande.VALIDEE, cmd.getStatut());
+    }
+
+    @Test
+    public void testIdempotenceExpiree() throws Exception {
+        Pizzaiolo courte = new Pizzaiolo(16, new Cuisine(1, 1), 100, Duration.ofMillis(50));
+        courte.inscription("a@b.com", "pass", info);
+        String session = courte.ouvrirSession("a@b.com", "pass");
+
+        Commande cmd = courte.debuterCommande(session, "cle");
+        assertSame(cmd, courte.debuterCommande(session, "cle"));
+        Thread.sleep(100);
+        assertNotEquals(cmd.getId(), courte.debuterCommande(session, "cle").getId());
+        assertThrows(IllegalArgumentException.class,
+                () -> new Pizzaiolo(16, new Cuisine(1, 1), 0, Duration.ofHours(1)));
+    }
+
+    @Test
+    public void testFileCuisine() throws Exception {
+        Pizzaiolo petite = new Pizzaiolo(2);
+        petite.inscription("a@b.com", "pass", info);
+        petite.connexion("a@b.com", "pass");
+        Commande c1 = petite.debuterCommande();
+        Commande c2 = petite.debuterCommande();
+        Commande c3 = petite.debuterCommande();
+        petite.validerCommande(c2);
+        petite.validerCommande(c1);
+        assertThrows(CommandeException.class, () -> petite.validerCommande(c3));
+        assertEquals(List.of(c3), petite.getCommandesEncours());
+
+        assertEquals(List.of(c2), petite.prendreCommandes(1));
+        assertEquals(StatutCommande.TRAITEE, c2.getStatut());
+        petite.validerCommande(c3);
+        assertSame(c1, petite.prendreCommande(1, TimeUnit.SECONDS));
+        assertSame(c3, petite.prendreCommande(1, TimeUnit.SECONDS));
+        assertNull(petite.prendreCommande(10, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(c1, c2, c3), petite.commandesDejaTraitees());
+    }
+
+    @Test
+    public void testFluxCommandes() throws Exception {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+
+        List<EvenementCommande.Nature> recus = new CopyOnWriteArrayList<>();
+        CountDownLatch fin = new CountDownLatch(6);
+        p.fluxCommandes().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription abonnement) {
+                abonnement.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(EvenementCommande evenement) {
+                recus.add(evenement.getNature());
+                fin.countDown();
+            }
+
+            @Override
+            public void onError(Throwable erreur) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        Commande c1 = p.debuterCommande();
+        p.ajouterPizza(reine, 2, c1);
+        p.validerCommande(c1);
+        Commande c2 = p.debuterCommande();
+        p.annulerCommande(c2);
+        p.commandeNonTraitees();
+
+        assertTrue(fin.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(EvenementCommande.Nature.CREATION,
+                EvenementCommande.Nature.AJOUT_PIZZA,
+                EvenementCommande.Nature.VALIDATION,
+                EvenementCommande.Nature.CREATION,
+                EvenementCommande.Nature.ANNULATION,
+                EvenementCommande.Nature.TRAITEMENT), recus);
+    }
+
+    @Test
+    public void testFluxCommandesDemande() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+
+        List<Commande> recus = new CopyOnWriteArrayList<>();
+        Flow.Subscription[] abonnement = new Flow.Subscription[1];
+        CountDownLatch deux = new CountDownLatch(2);
+        CountDownLatch trois = new CountDownLatch(3);
+        p.fluxCommandes().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription a) {
+                abonnement[0] = a;
+                a.request(2);
+            }
+
+            @Override
+            public void onNext(EvenementCommande evenement) {
+                recus.add(evenement.getCommande());
+                deux.countDown();
+                trois.countDown();
+            }
+
+            @Override
+            public void onError(Throwable erreur) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        Commande c1 = p.debuterCommande();
+        Commande c2 = p.debuterCommande();
+        Commande c3 = p.debuterCommande();
+        assertTrue(deux.await(5, TimeUnit.SECONDS));
+        // Le troisième événement attend la demande de l'abonné
+        assertFalse(trois.await(100, TimeUnit.MILLISECONDS));
+        abonnement[0].request(1);
+        assertTrue(trois.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(c1, c2, c3), recus);
+    }
+
     @Test
     public void testCreerPizzaOK() {
         Pizza pizza = p.creerPizza("Reine", TypePizza.VIANDE);
         assertNotNull(pizza);
     }
 
+    @Test
+    public void testGetPizzaParNom() {
+        Pizza pizza = p.creerPizza("Reine", TypePizza.VIANDE);
+        assertSame(pizza, p.getPizza("Reine"));
+        assertNull(p.getPizza("Inconnue"));
+        assertNull(p.getPizza(null));
+        assertNull(p.creerPizza("Reine", TypePizza.VEGETARIENNE));
+    }
+
+    @Test
+    public void testCarteFigee() {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        Set<Pizza> avant = p.getPizzas();
+        Set<Ingredient> composition = reine.getIngredients();
+
+        p.creerIngredient("jambon", 2);
+        p.ajouterIngredientPizza(reine, "jambon");
+        p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+
+        assertEquals(Set.of(reine), avant);
+        assertEquals(1, composition.size());
+        assertEquals(2, p.getPizzas().size());
+        assertEquals(4.2, p.getPrixPizza(reine), 0.001);
+        p.ajouterFiltre("jambon");
+        assertEquals(Set.of(reine), p.selectionPizzaFiltres());
+    }
+
+    @Test
+    public void testCarteFigeePrixIngredient() {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        Ingredient tomate = reine.getIngredients().iterator().next();
+
+        p.changerPrixIngredient("tomate", 3);
+
+        assertEquals(1, tomate.getPrix(), 0.001);
+        assertEquals(3, reine.getIngredients().iterator().next().getPrix(), 0.001);
+        assertEquals(4.2, p.getPrixPizza(reine), 0.001);
+    }
+
     @Test
     public void testInterdireIngredient() {
         p.creerIngredient("jambon", 2);
@@ -73,4 +413,345 @@ public class PizzaioloTest {
 
         assertEquals(4.2, prix, 0.01);  // 3 × 1.4 = 4.2
     }
+
+    @Test
+    public void testPrixMinimalApresModifications() {
+        p.creerIngredient("fromage", 2);
+        p.creerIngredient("tomate", 1);
+        Pizza pizza = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(pizza, "fromage");
+        assertEquals(2.8, p.calculerPrixMinimalPizza(pizza), 0.01);
+
+        p.ajouterIngredientPizza(pizza, "tomate");
+        assertEquals(4.2, p.calculerPrixMinimalPizza(pizza), 0.01);
+
+        p.changerPrixIngredient("tomate", 3);
+        assertEquals(7.0, p.calculerPrixMinimalPizza(pizza), 0.01);
+
+        p.retirerIngredientPizza(pizza, "fromage");
+        assertEquals(4.2, p.getPrixPizza(pizza), 0.01);
+    }
+
+    @Test
+    public void testSelectionPizzaFiltres() {
+        p.creerIngredient("fromage", 2);
+        p.creerIngredient("tomate", 1);
+        p.creerIngredient("jambon", 3);
+        Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(marguerite, "fromage");
+        p.ajouterIngredientPizza(marguerite, "tomate");
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "fromage");
+        p.ajouterIngredientPizza(reine, "jambon");
+
+        assertEquals(Set.of(marguerite, reine), p.selectionPizzaFiltres());
+
+        p.ajouterFiltre("fromage", "inconnu");
+        assertEquals(Set.of(marguerite, reine), p.selectionPizzaFiltres());
+        p.ajouterFiltre(TypePizza.VIANDE);
+        assertEquals(Set.of(reine), p.selectionPizzaFiltres());
+
+        p.supprimerFiltres();
+        p.ajouterFiltre("tomate");
+        p.retirerIngredientPizza(marguerite, "tomate");
+        assertTrue(p.selectionPizzaFiltres().isEmpty());
+
+        p.supprimerFiltres();
+        p.ajouterFiltre(5.0);
+        assertEquals(Set.of(marguerite), p.selectionPizzaFiltres());
+    }
+
+    @Test
+    public void testFiltrePlageDePrix() {
+        p.creerIngredient("fromage", 2);
+        p.creerIngredient("jambon", 3);
+        Pizza fromage = p.creerPizza("Fromage", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(fromage, "fromage");
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "fromage");
+        p.ajouterIngredientPizza(reine, "jambon");
+
+        p.ajouterFiltre(3.0, 8.0);
+        assertEquals(Set.of(reine), p.selectionPizzaFiltres());
+
+        p.changerPrixIngredient("jambon", 5);
+        assertTrue(p.selectionPizzaFiltres().isEmpty());
+
+        p.setPrixPizza(fromage, 4.5);
+        assertEquals(Set.of(fromage), p.selectionPizzaFiltres());
+
+        p.ajouterFiltre(2.0, 1.0);
+        assertEquals(Set.of(fromage), p.selectionPizzaFiltres());
+    }
+
+    @Test
+    public void testPlageDePrixApresChangements() throws Exception {
+        p.inscription("a@b.com", "pass", info);
+        String s = p.ouvrirSession("a@b.com", "pass");
+        for (int i = 0; i < 5; i++) {
+            p.creerIngredient("ing" + i, 1 + i);
+        }
+        List<Pizza> pizzas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Pizza pizza = p.creerPizza("P" + i, TypePizza.VIANDE);
+            if (i % 2 == 0) {
+                p.setPrixPizza(pizza, i % 17);
+            } else {
+                p.ajouterIngredientPizza(pizza, "ing" + (i % 5));
+            }
+            pizzas.add(pizza);
+        }
+        for (int i = 0; i < 200; i += 6) {
+            p.setPrixPizza(pizzas.get(i), (i * 7) % 23);
+        }
+        p.changerPrixIngredient("ing3", 9);
+        p.changerPrixIngredient("ing1", 0.5);
+
+        for (double[] plage : new double[][] {{3, 9}, {0, 4}, {16, 22}, {9.5, 9.9}, {5, 5}}) {
+            Set<Pizza> attendues = new java.util.HashSet<>();
+            for (Pizza pizza : pizzas) {
+                double prix = p.getPrixPizza(pizza);
+                if (prix >= plage[0] && prix <= plage[1]) {
+                    attendues.add(pizza);
+                }
+            }
+            assertEquals(attendues, p.selectionPizzas(s, null, plage[0], plage[1]));
+        }
+        assertEquals(200, p.selectionPizzas(s, null, null, 22.0).size());
+        assertTrue(p.selectionPizzas(s, TypePizza.VEGETARIENNE, 0.0, 22.0).isEmpty());
+    }
+
+    @Test
+    public void testClassementVentes() throws Exception {
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        Pizza calzone = p.creerPizza("Calzone", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+
+        Commande c1 = p.debuterCommande();
+        p.ajouterPizza(marguerite, 2, c1);
+        p.ajouterPizza(reine, 1, c1);
+        p.validerCommande(c1);
+        Commande c2 = p.debuterCommande();
+        p.ajouterPizza(reine, 3, c2);
+        p.validerCommande(c2);
+        assertEquals(0, p.nombrePizzasCommandees(reine));
+
+        p.commandeNonTraitees();
+        assertEquals(4, p.nombrePizzasCommandees(reine));
+        assertEquals(2, p.nombrePizzasCommandees(marguerite));
+        assertEquals(List.of(reine, marguerite, calzone),
+                p.classementPizzasParNombreCommandes());
+        assertEquals(List.of(reine), p.topPizzas(1));
+        assertTrue(p.topPizzas(0).isEmpty());
+        assertEquals(3, p.topPizzas(10).size());
+    }
+
+    @Test
+    public void testEvaluations() throws Exception {
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        InformationPersonnelle autre =
+                new InformationPersonnelle("Martin", "Paul", "2 rue de Lyon", 30);
+        p.inscription("a@b.com", "pass", info);
+        p.inscription("c@d.com", "pass", autre);
+        for (String email : new String[] {"a@b.com", "c@d.com"}) {
+            p.connexion(email, "pass");
+            Commande c = p.debuterCommande();
+            p.ajouterPizza(reine, 1, c);
+            assertThrows(CommandeException.class, () -> p.ajouterEvaluation(reine, 4, null));
+            p.validerCommande(c);
+        }
+
+        assertEquals(-1, p.getNoteMoyenne(reine));
+        assertTrue(p.ajouterEvaluation(reine, 2, "Bof"));
+        assertFalse(p.ajouterEvaluation(reine, 5, null));
+        p.connexion("a@b.com", "pass");
+        assertTrue(p.ajouterEvaluation(reine, 5, "Parfaite"));
+        assertEquals(3.5, p.getNoteMoyenne(reine), 0.001);
+        assertEquals(2, p.getEvaluationsPizza(reine).size());
+    }
+
+    @Test
+    public void testEvaluationApresModificationClient() throws Exception {
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande c = p.debuterCommande();
+        p.ajouterPizza(reine, 1, c);
+        p.validerCommande(c);
+
+        info.setAdresse("3 rue de Brest");
+        assertTrue(p.ajouterEvaluation(reine, 4, null));
+        info.setAge(44);
+        assertFalse(p.ajouterEvaluation(reine, 1, null));
+        assertEquals(1, p.getEvaluationsPizza(reine).size());
+    }
+
+    @Test
+    public void testBeneficesParClient() throws Exception {
+        p.creerIngredient("fromage", 2);
+        Pizza fromage = p.creerPizza("Fromage", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(fromage, "fromage");
+        p.setPrixPizza(fromage, 4.8);
+        InformationPersonnelle autre =
+                new InformationPersonnelle("Martin", "Paul", "2 rue de Lyon", 30);
+        p.inscription("a@b.com", "pass", info);
+        p.inscription("c@d.com", "pass", autre);
+        p.connexion("a@b.com", "pass");
+        Commande c = p.debuterCommande();
+        p.ajouterPizza(fromage, 3, c);
+        p.validerCommande(c);
+        p.commandeNonTraitees();
+
+        assertEquals(6.0, p.beneficeToutesCommandes(), 0.001);
+        assertEquals(6.0, p.beneficeParClient().get(info), 0.001);
+        assertEquals(0.0, p.beneficeParClient().get(autre), 0.001);
+        assertEquals(3, p.nombrePizzasCommandeesParClient().get(info));
+        assertEquals(0, p.nombrePizzasCommandeesParClient().get(autre));
+
+        p.setPrixPizza(fromage, 5.8);
+        assertEquals(9.0, p.beneficeParClient().get(info), 0.001);
+        p.changerPrixIngredient("fromage", 3);
+        assertEquals(4.8, p.beneficeToutesCommandes(), 0.001);
+    }
+
+    @Test
+    public void testBeneficesApresModificationClient() throws Exception {
+        p.creerIngredient("fromage", 2);
+        Pizza fromage = p.creerPizza("Fromage", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(fromage, "fromage");
+        p.setPrixPizza(fromage, 4.8);
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande c = p.debuterCommande();
+        p.ajouterPizza(fromage, 3, c);
+        p.validerCommande(c);
+        p.commandeNonTraitees();
+
+        info.setAdresse("3 rue de Brest");
+        assertEquals(6.0, p.beneficeParClient().get(info), 0.001);
+        assertEquals(3, p.nombrePizzasCommandeesParClient().get(info));
+        p.changerPrixIngredient("fromage", 3);
+        assertEquals(1.8, p.beneficeParClient().get(info), 0.001);
+    }
+
+    @Test
+    public void testBeneficesPrixIngredientPartage() throws Exception {
+        p.creerIngredient("fromage", 2);
+        Pizza fromage = p.creerPizza("Fromage", TypePizza.VEGETARIENNE);
+        Pizza calzone = p.creerPizza("Calzone", TypePizza.VEGETARIENNE);
+        for (Pizza pizza : List.of(fromage, calzone)) {
+            p.ajouterIngredientPizza(pizza, "fromage");
+            p.setPrixPizza(pizza, 4.8);
+        }
+        p.inscription("a@b.com", "pass", info);
+        p.connexion("a@b.com", "pass");
+        Commande c = p.debuterCommande();
+        p.ajouterPizzas(Map.of(fromage, 3, calzone, 1), c);
+        p.validerCommande(c);
+        p.commandeNonTraitees();
+        assertEquals(8.0, p.beneficeParClient().get(info), 0.001);
+
+        p.changerPrixIngredient("fromage", 3);
+        assertEquals(2.4, p.beneficeParClient().get(info), 0.001);
+        assertEquals(2.4, p.beneficeToutesCommandes(), 0.001);
+    }
+
+    @Test
+    public void testSessionsConcurrentes() throws Exception {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        InformationPersonnelle autre =
+                new InformationPersonnelle("Martin", "Paul", "2 rue de Lyon", 30);
+        p.inscription("a@b.com", "pass", info);
+        p.inscription("c@d.com", "pass", autre);
+
+        String s1 = p.ouvrirSession("a@b.com", "pass");
+        String s2 = p.ouvrirSession("c@d.com", "pass");
+        assertNull(p.ouvrirSession("c@d.com", "faux"));
+        assertNotEquals(s1, s2);
+
+        p.ajouterFiltreType(s1, TypePizza.VIANDE);
+        assertEquals(Set.of(reine), p.selectionPizzaFiltres(s1));
+        assertEquals(2, p.selectionPizzaFiltres(s2).size());
+        assertEquals(Set.of(reine), p.selectionPizzas(s2, null, null, 2.0, "tomate"));
+        assertEquals(1, p.selectionPizzas(s1, TypePizza.VEGETARIENNE, null, null).size());
+        assertEquals(Set.of(reine), p.selectionPizzaFiltres(s1));
+        assertEquals(2, p.selectionPizzaFiltres(s2).size());
+        assertThrows(NonConnecteException.class,
+                () -> p.selectionPizzas("inconnue", null, null, null));
+
+        Commande c2 = p.debuterCommande(s2);
+        assertThrows(CommandeException.class, () -> p.ajouterPizza(s1, reine, 1, c2));
+        assertNull(p.getCommande(s1, c2.getId()));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String session = i % 2 == 0 ? s1 : s2;
+            taches.add(pool.submit(() -> {
+                Commande c = p.debuterCommande(session);
+                p.ajouterPizza(session, reine, 2, c);
+                p.validerCommande(session, c);
+                return null;
+            }));
+        }
+        for (Future<?> t : taches) {
+            t.get();
+        }
+        pool.shutdown();
+
+        assertEquals(25, p.getCommandePassees(s1).size());
+        assertEquals(25, p.getCommandePassees(s2).size());
+        assertEquals(50, p.commandeNonTraitees().size());
+        assertEquals(100, p.nombrePizzasCommandees(reine));
+
+        p.fermerSession(s1);
+        assertThrows(NonConnecteException.class, () -> p.debuterCommande(s1));
+        assertEquals(1, p.getCommandesEncours(s2).size());
+    }
+
+    @Test
+    public void testArchiveCommandesTraitees() throws Exception {
+        p.creerIngredient("tomate", 1);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        p.ajouterIngredientPizza(marguerite, "tomate");
+        p.inscription("a@b.com", "pass", info);
+        InformationPersonnelle autre = new InformationPersonnelle("Martin", "Paul", "Lyon", 30);
+        p.inscription("c@d.com", "pass", autre);
+        String s1 = p.ouvrirSession("a@b.com", "pass");
+        String s2 = p.ouvrirSession("c@d.com", "pass");
+
+        List<Commande> passees = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String session = i % 3 == 0 ? s2 : s1;
+            Commande c = p.debuterCommande(session);
+            p.ajouterPizzas(session, Map.of(reine, 1 + i % 4, marguerite, 2), c);
+            passees.add(c);
+        }
+        // Validation, donc traitement, dans l'ordre inverse des identifiants
+        for (int i = passees.size() - 1; i >= 0; i--) {
+            p.validerCommande(i % 3 == 0 ? s2 : s1, passees.get(i));
+        }
+        Commande derniere = passees.get(passees.size() - 2);
+        p.prendreCommandes(100);
+        assertEquals(200, p.commandeNonTraitees().size());
+
+        List<Commande> traitees = p.commandesDejaTraitees();
+        assertEquals(passees, traitees);
+        assertEquals(StatutCommande.TRAITEE, traitees.get(42).getStatut());
+        assertThrows(UnsupportedOperationException.class, () -> traitees.remove(0));
+        assertEquals(100, p.commandesTraiteesClient(autre).size());
+        assertEquals(derniere, p.getCommande(s1, derniere.getId()));
+        assertNull(p.getCommande(s2, derniere.getId()));
+        assertEquals(200, p.getCommandePassees(s1).size());
+        assertEquals(p.beneficeCommandes(derniere),
+                p.beneficeCommandes(p.getCommande(s1, derniere.getId())));
+        assertTrue(p.beneficeCommandes(derniere) >= 0);
+    }
 }
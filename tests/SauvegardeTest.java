@@ -0,0 +1,219 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import pizzas.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SauvegardeTest {
+
+    @Test
+    public void testSauvegardeChargement() throws Exception {
+        Pizzaiolo p = new Pizzaiolo();
+        p.creerIngredient("tomate", 1);
+        p.creerIngredient("jambon", 2.5);
+        p.interdireIngredient("jambon", TypePizza.VEGETARIENNE);
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.ajouterIngredientPizza(reine, "tomate");
+        p.ajouterIngredientPizza(reine, "jambon");
+        p.setPrixPizza(reine, 12);
+        Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(marguerite, "tomate");
+
+        InformationPersonnelle info = new InformationPersonnelle("Dupont", "Jean", "Paris", 43);
+        p.inscription("a@b.com", "pass", info);
+        String session = p.ouvrirSession("a@b.com", "pass");
+        Commande traitee = p.debuterCommande(session);
+        p.ajouterPizza(session, reine, 3, traitee);
+        p.validerCommande(session, traitee);
+        p.commandeNonTraitees();
+        p.ajouterEvaluation(session, reine, 4, "Très bonne");
+        Commande validee = p.debuterCommande(session);
+        p.ajouterPizza(session, marguerite, 1, validee);
+        p.validerCommande(session, validee);
+        Commande enCours = p.debuterCommande(session);
+        p.ajouterPizza(session, marguerite, 2, enCours);
+
+        Path fichier = Files.createTempFile("pizzeria", ".bin");
+        try {
+            p.sauvegarderDonnees(fichier.toString());
+            Pizzaiolo q = new Pizzaiolo();
+            q.chargerDonnees(fichier.toString());
+
+            Pizza reine2 = q.getPizza("Reine");
+            assertEquals(2, q.getPizzas().size());
+            assertEquals(12.0, q.getPrixPizza(reine2));
+            assertEquals(p.calculerPrixMinimalPizza(reine),
+                    q.calculerPrixMinimalPizza(reine2));
+            Pizza vege = q.creerPizza("Vege", TypePizza.VEGETARIENNE);
+            assertEquals(-3, q.ajouterIngredientPizza(vege, "jambon"));
+            assertEquals(4.0, q.getNoteMoyenne(reine2));
+
+            assertEquals(Set.of(info), q.ensembleClients());
+            assertEquals(3, q.nombrePizzasCommandees(reine2));
+            assertEquals(p.beneficeToutesCommandes(), q.beneficeToutesCommandes());
+            assertEquals(1, q.commandesDejaTraitees().size());
+
+            String session2 = q.ouvrirSession("a@b.com", "pass");
+            assertNotNull(session2);
+            List<Commande> encours = q.getCommandesEncours(session2);
+            assertEquals(1, encours.size());
+            assertEquals(enCours.getId(), encours.get(0).getId());
+            assertEquals(enCours.getDate(), encours.get(0).getDate());
+            assertEquals(2, encours.get(0).getQuantite(q.getPizza("Marguerite")));
+
+            List<Commande> aTraiter = q.commandeNonTraitees();
+            assertEquals(1, aTraiter.size());
+            assertEquals(validee.getId(), aTraiter.get(0).getId());
+            assertTrue(q.debuterCommande(session2).getId() > enCours.getId());
+        } finally {
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    @Test
+    public void testClientsHomonymes() throws Exception {
+        Pizzaiolo p = new Pizzaiolo();
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        p.inscription("a@b.com", "pass", new InformationPersonnelle("Dupont", "Jean", "Paris", 43));
+        p.inscription("c@d.com", "pass", new InformationPersonnelle("Dupont", "Jean", "Paris", 43));
+        String session = p.ouvrirSession("c@d.com", "pass");
+        Commande cmd = p.debuterCommande(session);
+        p.ajouterPizza(session, reine, 1, cmd);
+        p.validerCommande(session, cmd);
+
+        Path fichier = Files.createTempFile("pizzeria", ".bin");
+        try {
+            p.sauvegarderDonnees(fichier.toString());
+            Pizzaiolo q = new Pizzaiolo();
+            q.chargerDonnees(fichier.toString());
+            assertTrue(q.getCommandePassees(q.ouvrirSession("a@b.com", "pass")).isEmpty());
+            assertEquals(1, q.getCommandePassees(q.ouvrirSession("c@d.com", "pass")).size());
+        } finally {
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    @Test
+    public void testModificationsPendantSauvegarde() throws Exception {
+        Pizzaiolo p = new Pizzaiolo();
+        Pizza reine = p.creerPizza("Reine", TypePizza.VIANDE);
+        for (int i = 0; i < 200_000; i++) {
+            reine.ajouternote(new Evaluation(
+                    new InformationPersonnelle("Nom" + i, "Jean", "Paris", 30), 3, null));
+        }
+        Path fichier = Files.createTempFile("pizzeria", ".bin");
+        try {
+            p.sauvegarderDonnees(fichier.toString());
+
+            // Les modifications n'attendent que la capture de l'état, le temps
+            // de l'appel : ni une copie des évaluations, ni l'écriture du fichier
+            AtomicBoolean fini = new AtomicBoolean();
+            AtomicLong modifications = new AtomicLong();
+            Thread modificateur = new Thread(() -> {
+                while (!fini.get()) {
+                    p.setPrixPizza(reine, 10 + modifications.incrementAndGet() % 2);
+                }
+            });
+            modificateur.start();
+            long[] captures = new long[5];
+            long[] durees = new long[5];
+            for (int i = 0; i < captures.length; i++) {
+                long debut = System.nanoTime();
+                CompletableFuture<Void> sauvegarde =
+                        p.sauvegarderEnArrierePlan(fichier.toString());
+                captures[i] = System.nanoTime() - debut;
+                sauvegarde.join();
+                durees[i] = System.nanoTime() - debut;
+            }
+            fini.set(true);
+            modificateur.join();
+            Arrays.sort(captures);
+            Arrays.sort(durees);
+            assertTrue(captures[2] < durees[2] / 10, "capture de " + captures[2] / 1000
+                    + " µs pour une sauvegarde de " + durees[2] / 1000 + " µs");
+            assertTrue(modifications.get() > 0);
+
+            Pizzaiolo q = new Pizzaiolo();
+            q.chargerDonnees(fichier.toString());
+            assertEquals(200_000, q.getEvaluationsPizza(q.getPizza("Reine")).size());
+        } finally {
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    @Test
+    public void testChargementParPhases() throws Exception {
+        Pizzaiolo p = new Pizzaiolo();
+        p.creerIngredient("tomate", 1);
+        Pizza marguerite = p.creerPizza("Marguerite", TypePizza.VEGETARIENNE);
+        p.ajouterIngredientPizza(marguerite, "tomate");
+        p.setPrixPizza(marguerite, 8);
+        InformationPersonnelle info = new InformationPersonnelle("Dupont", "Jean", "Paris", 43);
+        p.inscription("a@b.com", "pass", info);
+        String session = p.ouvrirSession("a@b.com", "pass");
+        for (int i = 0; i < 1000; i++) {
+            Commande cmd = p.debuterCommande(session);
+            p.ajouterPizza(session, marguerite, 1, cmd);
+            p.validerCommande(session, cmd);
+        }
+        p.commandeNonTraitees();
+
+        Path fichier = Files.createTempFile("pizzeria", ".bin");
+        try {
+            p.sauvegarderDonnees(fichier.toString());
+            Pizzaiolo q = new Pizzaiolo();
+            assertNull(q.getRapportChargement());
+            q.chargerDonnees(fichier.toString());
+            RapportChargement rapport = q.getRapportChargement();
+            assertNotNull(rapport.getDuree(RapportChargement.Phase.MENU));
+            assertNotNull(rapport.getDuree(RapportChargement.Phase.CLIENTS));
+            assertNotNull(rapport.getDuree(RapportChargement.Phase.COMMANDES));
+
+            // La pizzeria prend des commandes pendant le chargement de l'historique
+            String session2 = q.ouvrirSession("a@b.com", "pass");
+            Commande nouvelle = q.debuterCommande(session2);
+            q.ajouterPizza(session2, q.getPizza("Marguerite"), 2, nouvelle);
+            q.validerCommande(session2, nouvelle);
+            q.commandeNonTraitees();
+
+            List<Commande> traitees = q.commandesDejaTraitees();
+            assertTrue(rapport.estTermine());
+            assertNotNull(rapport.attendre().getDuree(RapportChargement.Phase.HISTORIQUE));
+            assertEquals(1001, traitees.size());
+            assertEquals(nouvelle.getId(), traitees.get(1000).getId());
+            for (int i = 1; i < traitees.size(); i++) {
+                assertTrue(traitees.get(i - 1).getId() < traitees.get(i).getId());
+            }
+            assertEquals(1002, q.nombrePizzasCommandees(q.getPizza("Marguerite")));
+            assertEquals(1001, q.getCommandePassees(session2).size());
+        } finally {
+            Files.deleteIfExists(fichier);
+        }
+    }
+
+    @Test
+    public void testFichierInvalide() throws Exception {
+        Path fichier = Files.createTempFile("pizzeria", ".bin");
+        try {
+            Files.write(fichier, new byte[] {1, 2, 3, 4, 5});
+            assertThrows(IOException.class, () -> new Pizzaiolo().chargerDonnees(fichier.toString()));
+
+            Pizzaiolo p = new Pizzaiolo();
+            p.creerIngredient("tomate", 1);
+            assertThrows(IllegalStateException.class, () -> p.chargerDonnees(fichier.toString()));
+        } finally {
+            Files.deleteIfExists(fichier);
+        }
+    }
+}
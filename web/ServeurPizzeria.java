@@ -0,0 +1,987 @@
+package web;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import pizzas.Carte;
+import pizzas.Commande;
+import pizzas.CommandeException;
+import pizzas.InformationPersonnelle;
+import pizzas.Ingredient;
+import pizzas.NonConnecteException;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Serveur HTTP exposant les services client ({@link pizzas.InterClientSession})
+ * et pizzaïolo ({@link pizzas.InterPizzaiolo}) d'une pizzeria.
+ * <p>
+ * Chaque requête est traitée dans son propre thread virtuel lorsque la JVM en
+ * dispose, et dans un pool de threads extensible sinon. Les paramètres sont
+ * passés dans l'URL ou, pour les requêtes POST, dans un corps au format
+ * {@code application/x-www-form-urlencoded} ; le mot de passe n'est accepté
+ * que dans le corps, pour ne pas apparaître dans les journaux d'URL. Les
+ * réponses sont écrites en JSON au fil de l'eau, sans construire le document
+ * complet en mémoire. Les services client attendent le
+ * paramètre {@code session} obtenu par {@code /connexion}. Les services qui
+ * modifient une commande acceptent un paramètre facultatif {@code cle} : un
+ * client qui rejoue sa requête avec la même clé obtient le résultat de la
+ * première sans que l'opération soit répétée.
+ * <p>
+ * Par défaut, le serveur n'écoute que sur l'interface locale. Les services du
+ * pizzaïolo exigent l'en-tête {@code Authorization: Bearer <jeton>} lorsqu'un
+ * jeton est configuré ; sans jeton, ils ne sont acceptés que depuis la machine
+ * locale.
+ * <p>
+ * Codes de retour : 200 en cas de succès, 400 si un paramètre est absent ou
+ * mal formé, 401 si la session n'est pas ouverte, 403 si un service du
+ * pizzaïolo est demandé sans autorisation, 404 si le service ou la ressource
+ * n'existe pas, 409 si la pizzeria refuse l'opération et 500 en cas d'erreur
+ * imprévue, qui est alors tracée.
+ */
+public class ServeurPizzeria {
+
+    /**
+     * Traitement d'un service : lit les paramètres de la requête et écrit la
+     * réponse.
+     */
+    @FunctionalInterface
+    private interface Service {
+
+        /**
+         * Traite une requête.
+         *
+         * @param req la requête
+         * @param rep l'écrivain de la réponse
+         * @throws Exception en cas d'échec du service
+         */
+        void traiter(Requete req, Json rep) throws Exception;
+    }
+
+    /** Paramètre manquant ou mal formé dans une requête. */
+    private static class ParametreException extends RuntimeException {
+
+        /** Identifiant de sérialisation. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Crée l'exception.
+         *
+         * @param message la description du problème
+         */
+        ParametreException(String message) {
+            super(message);
+        }
+    }
+
+    /** Ressource demandée inexistante. */
+    private static class IntrouvableException extends RuntimeException {
+
+        /** Identifiant de sérialisation. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Crée l'exception.
+         *
+         * @param message la description du problème
+         */
+        IntrouvableException(String message) {
+            super(message);
+        }
+    }
+
+    /** Service du pizzaïolo demandé sans autorisation. */
+    private static class InterditException extends RuntimeException {
+
+        /** Identifiant de sérialisation. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Crée l'exception.
+         */
+        InterditException() {
+            super("Service réservé au pizzaïolo.");
+        }
+    }
+
+    /** Traces des erreurs imprévues. */
+    private static final System.Logger TRACES = System.getLogger(ServeurPizzeria.class.getName());
+
+    /** Taille maximale acceptée pour le corps d'une requête, en octets. */
+    private static final int TAILLE_MAX_CORPS = 64 * 1024;
+
+    /** La pizzeria servie. */
+    private final Pizzaiolo pizzeria;
+
+    /**
+     * Jeton exigé pour les services du pizzaïolo, ou {@code null} pour ne les
+     * accepter que depuis la machine locale.
+     */
+    private final byte[] jetonPizzaiolo;
+
+    /** Serveur HTTP sous-jacent. */
+    private final HttpServer serveur;
+
+    /** Exécuteur des requêtes. */
+    private final ExecutorService executeur;
+
+    /** Services disponibles, indexés par méthode HTTP et chemin. */
+    private final Map<String, Service> routes = new HashMap<>();
+
+    /**
+     * Crée un serveur pour une pizzeria, à l'écoute sur l'interface locale
+     * seulement. Le serveur ne répond qu'après {@link #demarrer()}.
+     *
+     * @param pizzeria la pizzeria servie
+     * @param port     le port d'écoute (0 pour un port libre quelconque)
+     * @throws IOException si le port ne peut pas être ouvert
+     */
+    public ServeurPizzeria(Pizzaiolo pizzeria, int port) throws IOException {
+        this(pizzeria, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null);
+    }
+
+    /**
+     * Crée un serveur pour une pizzeria. Le serveur ne répond qu'après
+     * {@link #demarrer()}.
+     *
+     * @param pizzeria       la pizzeria servie
+     * @param adresse        l'adresse et le port d'écoute
+     * @param jetonPizzaiolo le jeton exigé pour les services du pizzaïolo, ou
+     *                       {@code null} pour ne les accepter que depuis la
+     *                       machine locale
+     * @throws IOException si l'adresse ne peut pas être ouverte
+     */
+    public ServeurPizzeria(Pizzaiolo pizzeria, InetSocketAddress adresse, String jetonPizzaiolo)
+            throws IOException {
+        this.pizzeria = pizzeria;
+        this.jetonPizzaiolo = jetonPizzaiolo == null ? null
+                : jetonPizzaiolo.getBytes(StandardCharsets.UTF_8);
+        this.serveur = HttpServer.create(adresse, 0);
+        this.executeur = creerExecuteur();
+        serveur.setExecutor(executeur);
+        serveur.createContext("/", this::repondre);
+        declarerServicesClient();
+        declarerServicesPizzaiolo();
+    }
+
+    /**
+     * Crée l'exécuteur des requêtes : un thread virtuel par requête si la JVM
+     * le permet (Java 21 et plus), un pool de threads extensible sinon.
+     *
+     * @return l'exécuteur
+     */
+    private static ExecutorService creerExecuteur() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Démarre le serveur.
+     */
+    public void demarrer() {
+        serveur.start();
+    }
+
+    /**
+     * Arrête le serveur en laissant au plus une seconde aux requêtes en cours
+     * pour se terminer.
+     */
+    public void arreter() {
+        serveur.stop(1);
+        executeur.shutdown();
+        try {
+            executeur.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retourne le port d'écoute du serveur.
+     *
+     * @return le port d'écoute
+     */
+    public int getPort() {
+        return serveur.getAddress().getPort();
+    }
+
+    // -------------------------------------------------------------------------
+    //  Déclaration des services
+    // -------------------------------------------------------------------------
+
+    /**
+     * Déclare un service.
+     *
+     * @param methode la méthode HTTP acceptée
+     * @param chemin  le chemin du service
+     * @param service le traitement du service
+     */
+    private void route(String methode, String chemin, Service service) {
+        routes.put(methode + " " + chemin, service);
+    }
+
+    /**
+     * Déclare un service réservé au pizzaïolo.
+     *
+     * @param methode la méthode HTTP acceptée
+     * @param chemin  le chemin du service
+     * @param service le traitement du service
+     */
+    private void routePizzaiolo(String methode, String chemin, Service service) {
+        route(methode, chemin, (req, rep) -> {
+            if (!req.pizzaiolo) {
+                throw new InterditException();
+            }
+            service.traiter(req, rep);
+        });
+    }
+
+    /**
+     * Déclare les services destinés aux clients.
+     */
+    private void declarerServicesClient() {
+        route("POST", "/inscription", (req, rep) -> {
+            int code = pizzeria.inscription(req.texte("email"), req.secret("mdp"),
+                    new InformationPersonnelle(req.texte("nom"), req.texte("prenom"),
+                            req.texte("adresse"), req.entier("age")));
+            rep.objet().champ("code", code).fin();
+        });
+        route("POST", "/connexion", (req, rep) -> {
+            String session = pizzeria.ouvrirSession(req.texte("email"), req.secret("mdp"));
+            if (session == null) {
+                throw new NonConnecteException();
+            }
+            rep.objet().champ("session", session).fin();
+        });
+        route("POST", "/deconnexion", (req, rep) -> {
+            pizzeria.fermerSession(req.texte("session"));
+            rep.objet().fin();
+        });
+        route("GET", "/pizzas", (req, rep) -> {
+            Carte carte = pizzeria.getCarte();
+            ecrirePizzas(rep, carte, carte.pizzas());
+        });
+        route("GET", "/pizzas/selection", (req, rep) -> {
+            Set<Pizza> selection = pizzeria.selectionPizzas(req.texte("session"),
+                    req.present("type") ? req.type("type") : null,
+                    req.present("prixMin") ? req.reel("prixMin") : 0.0,
+                    req.present("prixMax") ? req.reel("prixMax") : null,
+                    req.present("ingredients")
+                            ? req.texte("ingredients").split(",") : new String[0]);
+            // Carte lue après la sélection : les pizzas n'étant jamais
+            // retirées, elle les contient toutes.
+            ecrirePizzas(rep, pizzeria.getCarte(), selection);
+        });
+        route("POST", "/commandes", (req, rep) -> ecrireCommande(rep,
+                pizzeria.debuterCommande(req.texte("session"), req.optionnel("cle"))));
+        route("POST", "/commandes/ajouter", (req, rep) -> {
+            String session = req.texte("session");
+            Commande cmd = commande(session, req);
+            pizzeria.ajouterPizza(session, pizza(req.texte("pizza")), req.entier("nombre"), cmd,
+                    req.optionnel("cle"));
+            ecrireCommande(rep, cmd);
+        });
+        route("POST", "/commandes/valider", (req, rep) -> {
+            String session = req.texte("session");
+            Commande cmd = commande(session, req);
+            pizzeria.validerCommande(session, cmd, req.optionnel("cle"));
+            ecrireCommande(rep, cmd);
+        });
+        route("POST", "/commandes/annuler", (req, rep) -> {
+            String session = req.texte("session");
+            pizzeria.annulerCommande(session, commande(session, req), req.optionnel("cle"));
+            rep.objet().fin();
+        });
+        route("GET", "/commandes/encours", (req, rep) ->
+                ecrireCommandes(rep, pizzeria.getCommandesEncours(req.texte("session"))));
+        route("GET", "/commandes/passees", (req, rep) ->
+                ecrireCommandes(rep, pizzeria.getCommandePassees(req.texte("session"))));
+        route("POST", "/evaluations", (req, rep) -> {
+            String commentaire = req.present("commentaire") ? req.texte("commentaire") : null;
+            rep.objet().champ("ajoutee", pizzeria.ajouterEvaluation(req.texte("session"),
+                    pizza(req.texte("pizza")), req.entier("note"), commentaire)).fin();
+        });
+    }
+
+    /**
+     * Déclare les services destinés au pizzaïolo.
+     */
+    private void declarerServicesPizzaiolo() {
+        routePizzaiolo("POST", "/ingredients", (req, rep) -> rep.objet()
+                .champ("code", pizzeria.creerIngredient(req.texte("nom"), req.reel("prix")))
+                .fin());
+        routePizzaiolo("POST", "/ingredients/prix", (req, rep) -> rep.objet()
+                .champ("code", pizzeria.changerPrixIngredient(req.texte("nom"), req.reel("prix")))
+                .fin());
+        routePizzaiolo("POST", "/pizzas", (req, rep) -> {
+            Pizza p = pizzeria.creerPizza(req.texte("nom"), req.type("type"));
+            if (p == null) {
+                throw new CommandeException("La pizza ne peut pas être créée.");
+            }
+            ecrirePizzas(rep, pizzeria.getCarte(), List.of(p));
+        });
+        routePizzaiolo("POST", "/pizzas/ingredient", (req, rep) -> rep.objet()
+                .champ("code", pizzeria.ajouterIngredientPizza(pizza(req.texte("pizza")),
+                        req.texte("ingredient")))
+                .fin());
+        routePizzaiolo("POST", "/pizzas/prix", (req, rep) -> rep.objet()
+                .champ("fixe", pizzeria.setPrixPizza(pizza(req.texte("pizza")), req.reel("prix")))
+                .fin());
+        routePizzaiolo("POST", "/cuisine/prendre", (req, rep) ->
+                ecrireCommandes(rep, pizzeria.prendreCommandes(req.entier("max"))));
+        routePizzaiolo("POST", "/cuisine/attendre", (req, rep) -> {
+            Commande c = pizzeria.prendreCommande(req.entier("delai"), TimeUnit.MILLISECONDS);
+            ecrireCommandes(rep, c == null ? List.of() : List.of(c));
+        });
+        routePizzaiolo("GET", "/classement", (req, rep) -> {
+            int k = req.present("k") ? req.entier("k") : Integer.MAX_VALUE;
+            rep.tableau();
+            for (Pizza p : pizzeria.topPizzas(k)) {
+                rep.objet()
+                        .champ("nom", p.getNom())
+                        .champ("ventes", pizzeria.nombrePizzasCommandees(p))
+                        .fin();
+            }
+            rep.fin();
+        });
+    }
+
+    /**
+     * Retourne la pizza en vente portant un nom.
+     *
+     * @param nom le nom de la pizza
+     * @return la pizza
+     * @throws IntrouvableException si aucune pizza de ce nom n'est en vente
+     */
+    private Pizza pizza(String nom) {
+        Pizza p = pizzeria.getPizza(nom);
+        if (p == null) {
+            throw new IntrouvableException("Pizza inconnue : " + nom);
+        }
+        return p;
+    }
+
+    /**
+     * Retourne la commande du client de la session désignée par le paramètre
+     * {@code id} de la requête.
+     *
+     * @param session le jeton de la session
+     * @param req     la requête
+     * @return la commande
+     * @throws NonConnecteException si la session n'est pas ouverte
+     * @throws IntrouvableException si le client n'a aucune commande de cet
+     *                              identifiant
+     */
+    private Commande commande(String session, Requete req) throws NonConnecteException {
+        Commande cmd = pizzeria.getCommande(session, req.entierLong("id"));
+        if (cmd == null) {
+            throw new IntrouvableException("Commande inconnue : " + req.texte("id"));
+        }
+        return cmd;
+    }
+
+    // -------------------------------------------------------------------------
+    //  Écriture des réponses
+    // -------------------------------------------------------------------------
+
+    /**
+     * Écrit un tableau de pizzas avec leur prix de vente et leurs ingrédients,
+     * tous lus dans une même version de la carte.
+     *
+     * @param rep    l'écrivain de la réponse
+     * @param carte  la carte où lire prix et compositions
+     * @param pizzas les pizzas à écrire, toutes en vente dans la carte
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrirePizzas(Json rep, Carte carte, Collection<Pizza> pizzas)
+            throws IOException {
+        rep.tableau();
+        for (Pizza p : pizzas) {
+            rep.objet()
+                    .champ("nom", p.getNom())
+                    .champ("type", p.getTypePizza().name())
+                    .champ("prix", carte.prixVente(p))
+                    .champ("note", p.getNoteMoyenne())
+                    .cle("ingredients").tableau();
+            for (Ingredient ing : carte.composition(p)) {
+                rep.valeur(ing.getNom());
+            }
+            rep.fin().fin();
+        }
+        rep.fin();
+    }
+
+    /**
+     * Écrit une commande avec son statut et ses pizzas.
+     *
+     * @param rep l'écrivain de la réponse
+     * @param cmd la commande à écrire
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrireCommande(Json rep, Commande cmd) throws IOException {
+        rep.objet()
+                .champ("id", cmd.getId())
+                .champ("date", cmd.getDate().toString())
+                .champ("statut", cmd.getStatut().name())
+                .cle("pizzas").tableau();
+        for (Pizza p : cmd.getPizzas()) {
+            rep.valeur(p.getNom());
+        }
+        rep.fin().fin();
+    }
+
+    /**
+     * Écrit un tableau de commandes.
+     *
+     * @param rep       l'écrivain de la réponse
+     * @param commandes les commandes à écrire
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void ecrireCommandes(Json rep, List<Commande> commandes) throws IOException {
+        rep.tableau();
+        for (Commande cmd : commandes) {
+            ecrireCommande(rep, cmd);
+        }
+        rep.fin();
+    }
+
+    // -------------------------------------------------------------------------
+    //  Traitement des échanges HTTP
+    // -------------------------------------------------------------------------
+
+    /**
+     * Traite un échange HTTP : recherche le service, l'exécute et transforme
+     * ses exceptions en codes d'erreur.
+     *
+     * @param echange l'échange HTTP
+     */
+    private void repondre(HttpExchange echange) {
+        try (echange) {
+            Service service = routes.get(echange.getRequestMethod() + " "
+                    + echange.getRequestURI().getPath());
+            if (service == null) {
+                erreur(echange, 404, "Service inconnu.");
+                return;
+            }
+            // Les erreurs surviennent avant la première écriture : la réponse
+            // n'est engagée qu'au premier caractère écrit.
+            Json rep = new Json(echange);
+            try {
+                Requete req = new Requete(echange.getRequestURI().getRawQuery(),
+                        lireCorps(echange), autoriserPizzaiolo(echange));
+                service.traiter(req, rep);
+            } catch (ParametreException | NumberFormatException e) {
+                erreur(echange, 400, e.getMessage());
+                return;
+            } catch (NonConnecteException e) {
+                erreur(echange, 401, "Session non ouverte.");
+                return;
+            } catch (InterditException e) {
+                erreur(echange, 403, e.getMessage());
+                return;
+            } catch (IntrouvableException e) {
+                erreur(echange, 404, e.getMessage());
+                return;
+            } catch (CommandeException e) {
+                erreur(echange, 409, e.getMessage());
+                return;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                TRACES.log(System.Logger.Level.ERROR, "Échec de "
+                        + echange.getRequestMethod() + " " + echange.getRequestURI().getPath(), e);
+                // Une réponse déjà engagée ne peut plus changer de code : on
+                // ne peut que fermer l'échange.
+                if (!rep.engagee()) {
+                    erreur(echange, 500, "Erreur interne.");
+                }
+                return;
+            }
+            rep.terminer();
+        } catch (IOException e) {
+            // Le client est parti pendant l'écriture de la réponse
+            TRACES.log(System.Logger.Level.DEBUG, "Réponse interrompue", e);
+        }
+    }
+
+    /**
+     * Lit le corps d'une requête POST.
+     *
+     * @param echange l'échange HTTP
+     * @return le corps brut, ou {@code null} si la requête n'est pas un POST
+     * @throws IOException        en cas d'erreur de lecture
+     * @throws ParametreException si le corps dépasse la taille maximale
+     */
+    private static String lireCorps(HttpExchange echange) throws IOException {
+        if (!"POST".equals(echange.getRequestMethod())) {
+            return null;
+        }
+        byte[] corps = echange.getRequestBody().readNBytes(TAILLE_MAX_CORPS + 1);
+        if (corps.length > TAILLE_MAX_CORPS) {
+            throw new ParametreException("Corps de requête trop volumineux.");
+        }
+        return new String(corps, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Indique si un échange peut utiliser les services du pizzaïolo : il doit
+     * présenter le jeton configuré ou, à défaut de jeton, venir de la machine
+     * locale.
+     *
+     * @param echange l'échange HTTP
+     * @return {@code true} si les services du pizzaïolo sont autorisés
+     */
+    private boolean autoriserPizzaiolo(HttpExchange echange) {
+        if (jetonPizzaiolo == null) {
+            return echange.getRemoteAddress().getAddress().isLoopbackAddress();
+        }
+        String autorisation = echange.getRequestHeaders().getFirst("Authorization");
+        String prefixe = "Bearer ";
+        if (autorisation == null || !autorisation.startsWith(prefixe)) {
+            return false;
+        }
+        // Comparaison en temps constant pour ne rien révéler du jeton
+        return MessageDigest.isEqual(jetonPizzaiolo,
+                autorisation.substring(prefixe.length()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Envoie une réponse d'erreur.
+     *
+     * @param echange l'échange HTTP
+     * @param code    le code HTTP
+     * @param message le message d'erreur
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private static void erreur(HttpExchange echange, int code, String message)
+            throws IOException {
+        Json rep = new Json(echange, code);
+        rep.objet().champ("erreur", message == null ? "" : message).fin();
+        rep.terminer();
+    }
+
+    /**
+     * Paramètres d'une requête, lus dans la chaîne de requête de l'URL et dans
+     * le corps. Un paramètre présent aux deux endroits prend la valeur du
+     * corps.
+     */
+    private static class Requete {
+
+        /** Valeurs des paramètres, indexées par nom. */
+        private final Map<String, String> parametres = new HashMap<>();
+
+        /** Valeurs des paramètres du corps seul, indexées par nom. */
+        private final Map<String, String> parametresCorps = new HashMap<>();
+
+        /** Vrai si la requête peut utiliser les services du pizzaïolo. */
+        private final boolean pizzaiolo;
+
+        /**
+         * Décode la chaîne de requête et le corps d'une requête.
+         *
+         * @param requete   la chaîne de requête brute, ou {@code null}
+         * @param corps     le corps brut, ou {@code null}
+         * @param pizzaiolo vrai si la requête peut utiliser les services du
+         *                  pizzaïolo
+         */
+        Requete(String requete, String corps, boolean pizzaiolo) {
+            this.pizzaiolo = pizzaiolo;
+            decoder(requete, parametres);
+            decoder(corps, parametresCorps);
+            parametres.putAll(parametresCorps);
+        }
+
+        /**
+         * Décode une suite de couples {@code nom=valeur} séparés par
+         * {@code &}.
+         *
+         * @param couples     la suite brute, ou {@code null}
+         * @param destination la map où ranger les valeurs
+         */
+        private static void decoder(String couples, Map<String, String> destination) {
+            if (couples == null || couples.isEmpty()) {
+                return;
+            }
+            for (String couple : couples.split("&")) {
+                int egal = couple.indexOf('=');
+                if (egal > 0) {
+                    destination.put(decoder(couple.substring(0, egal)),
+                            decoder(couple.substring(egal + 1)));
+                }
+            }
+        }
+
+        /**
+         * Décode un composant d'URL.
+         *
+         * @param s le composant encodé
+         * @return le composant décodé
+         */
+        private static String decoder(String s) {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Indique si un paramètre est présent.
+         *
+         * @param nom le nom du paramètre
+         * @return {@code true} si le paramètre est présent
+         */
+        boolean present(String nom) {
+            return parametres.containsKey(nom);
+        }
+
+        /**
+         * Retourne la valeur d'un paramètre facultatif.
+         *
+         * @param nom le nom du paramètre
+         * @return la valeur du paramètre, ou {@code null} s'il est absent
+         */
+        String optionnel(String nom) {
+            return parametres.get(nom);
+        }
+
+        /**
+         * Retourne la valeur d'un paramètre obligatoire.
+         *
+         * @param nom le nom du paramètre
+         * @return la valeur du paramètre
+         * @throws ParametreException si le paramètre est absent
+         */
+        String texte(String nom) {
+            String valeur = parametres.get(nom);
+            if (valeur == null) {
+                throw new ParametreException("Paramètre manquant : " + nom);
+            }
+            return valeur;
+        }
+
+        /**
+         * Retourne la valeur d'un paramètre obligatoire qui ne doit pas
+         * apparaître dans l'URL, comme un mot de passe.
+         *
+         * @param nom le nom du paramètre
+         * @return la valeur du paramètre
+         * @throws ParametreException si le paramètre est absent du corps
+         */
+        String secret(String nom) {
+            String valeur = parametresCorps.get(nom);
+            if (valeur == null) {
+                throw new ParametreException("Paramètre manquant dans le corps : " + nom);
+            }
+            return valeur;
+        }
+
+        /**
+         * Retourne la valeur entière d'un paramètre obligatoire.
+         *
+         * @param nom le nom du paramètre
+         * @return la valeur du paramètre
+         * @throws ParametreException    si le paramètre est absent
+         * @throws NumberFormatException si la valeur n'est pas un entier
+         */
+        int entier(String nom) {
+            return Integer.parseInt(texte(nom));
+        }
+
+        /**
+         * Retourne la valeur entière longue d'un paramètre obligatoire.
+         *
+         * @param nom le nom du paramètre
+         * @return la valeur du paramètre
+         * @throws ParametreException    si le paramètre est absent
+         * @throws NumberFormatException si la valeur n'est pas un entier
+         */
+        long entierLong(String nom) {
+            return Long.parseLong(texte(nom));
+        }
+
+        /**
+         * Retourne la valeur réelle d'un paramètre obligatoire.
+         *
+         * @param nom le nom du paramètre
+         * @return la valeur du paramètre
+         * @throws ParametreException    si le paramètre est absent
+         * @throws NumberFormatException si la valeur n'est pas un nombre
+         */
+        double reel(String nom) {
+            return Double.parseDouble(texte(nom));
+        }
+
+        /**
+         * Retourne le type de pizza désigné par un paramètre obligatoire.
+         *
+         * @param nom le nom du paramètre
+         * @return le type de pizza
+         * @throws ParametreException si le paramètre est absent ou ne désigne
+         *                            aucun type de pizza
+         */
+        TypePizza type(String nom) {
+            try {
+                return TypePizza.valueOf(texte(nom));
+            } catch (IllegalArgumentException e) {
+                throw new ParametreException("Type de pizza inconnu : " + texte(nom));
+            }
+        }
+    }
+
+    /**
+     * Écrivain JSON écrivant directement dans le corps de la réponse HTTP.
+     * Les en-têtes sont envoyés au premier caractère écrit ; le corps est
+     * alors transmis par morceaux au fur et à mesure de l'écriture.
+     */
+    private static class Json {
+
+        /** L'échange HTTP dont on écrit la réponse. */
+        private final HttpExchange echange;
+
+        /** Code HTTP de la réponse. */
+        private final int code;
+
+        /** Flux du corps de la réponse, ouvert au premier caractère écrit. */
+        private Writer sortie;
+
+        /** Caractères fermant les objets et tableaux ouverts, du plus externe au plus interne. */
+        private final StringBuilder fermetures = new StringBuilder();
+
+        /** Niveaux ouverts dans lesquels aucun élément n'a encore été écrit. */
+        private final BitSet premiers = new BitSet();
+
+        /** Vrai si une clé vient d'être écrite et attend sa valeur. */
+        private boolean apresCle;
+
+        /**
+         * Crée un écrivain de réponse réussie.
+         *
+         * @param echange l'échange HTTP
+         */
+        Json(HttpExchange echange) {
+            this(echange, 200);
+        }
+
+        /**
+         * Crée un écrivain de réponse.
+         *
+         * @param echange l'échange HTTP
+         * @param code    le code HTTP de la réponse
+         */
+        Json(HttpExchange echange, int code) {
+            this.echange = echange;
+            this.code = code;
+        }
+
+        /**
+         * Retourne le flux de sortie, en envoyant les en-têtes au premier
+         * appel.
+         *
+         * @return le flux du corps de la réponse
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        private Writer sortie() throws IOException {
+            if (sortie == null) {
+                echange.getResponseHeaders().set("Content-Type",
+                        "application/json; charset=utf-8");
+                echange.sendResponseHeaders(code, 0);
+                sortie = new BufferedWriter(new OutputStreamWriter(
+                        echange.getResponseBody(), StandardCharsets.UTF_8));
+            }
+            return sortie;
+        }
+
+        /**
+         * Indique si la réponse est engagée, c'est-à-dire si ses en-têtes
+         * sont partis.
+         *
+         * @return {@code true} si un caractère a déjà été écrit
+         */
+        boolean engagee() {
+            return sortie != null;
+        }
+
+        /**
+         * Écrit le séparateur qui précède un nouvel élément.
+         *
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        private void separer() throws IOException {
+            if (apresCle) {
+                apresCle = false;
+                return;
+            }
+            int niveau = fermetures.length();
+            if (niveau > 0) {
+                if (premiers.get(niveau)) {
+                    premiers.clear(niveau);
+                } else {
+                    sortie().write(',');
+                }
+            }
+        }
+
+        /**
+         * Ouvre un niveau.
+         *
+         * @param ouvrant le caractère ouvrant
+         * @param fermant le caractère fermant
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        private Json ouvrir(char ouvrant, char fermant) throws IOException {
+            separer();
+            sortie().write(ouvrant);
+            fermetures.append(fermant);
+            premiers.set(fermetures.length());
+            return this;
+        }
+
+        /**
+         * Ouvre un objet.
+         *
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json objet() throws IOException {
+            return ouvrir('{', '}');
+        }
+
+        /**
+         * Ouvre un tableau.
+         *
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json tableau() throws IOException {
+            return ouvrir('[', ']');
+        }
+
+        /**
+         * Ferme l'objet ou le tableau ouvert en dernier.
+         *
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json fin() throws IOException {
+            int niveau = fermetures.length();
+            sortie().write(fermetures.charAt(niveau - 1));
+            fermetures.setLength(niveau - 1);
+            premiers.clear(niveau);
+            return this;
+        }
+
+        /**
+         * Écrit une clé de l'objet ouvert.
+         *
+         * @param cle la clé
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json cle(String cle) throws IOException {
+            valeur(cle);
+            sortie().write(':');
+            apresCle = true;
+            return this;
+        }
+
+        /**
+         * Écrit une chaîne.
+         *
+         * @param valeur la chaîne
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json valeur(String valeur) throws IOException {
+            separer();
+            Writer w = sortie();
+            w.write('"');
+            for (int i = 0; i < valeur.length(); i++) {
+                char c = valeur.charAt(i);
+                if (c == '"' || c == '\\') {
+                    w.write('\\');
+                    w.write(c);
+                } else if (c < 0x20) {
+                    w.write(String.format("\\u%04x", (int) c));
+                } else {
+                    w.write(c);
+                }
+            }
+            w.write('"');
+            return this;
+        }
+
+        /**
+         * Écrit un champ textuel de l'objet ouvert.
+         *
+         * @param cle    la clé
+         * @param valeur la valeur
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json champ(String cle, String valeur) throws IOException {
+            return cle(cle).valeur(valeur);
+        }
+
+        /**
+         * Écrit un champ numérique de l'objet ouvert.
+         *
+         * @param cle    la clé
+         * @param valeur la valeur
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json champ(String cle, double valeur) throws IOException {
+            cle(cle);
+            separer();
+            sortie().write(valeur == Math.rint(valeur) && !Double.isInfinite(valeur)
+                    ? Long.toString((long) valeur) : Double.toString(valeur));
+            return this;
+        }
+
+        /**
+         * Écrit un champ booléen de l'objet ouvert.
+         *
+         * @param cle    la clé
+         * @param valeur la valeur
+         * @return cet écrivain
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        Json champ(String cle, boolean valeur) throws IOException {
+            cle(cle);
+            separer();
+            sortie().write(Boolean.toString(valeur));
+            return this;
+        }
+
+        /**
+         * Termine la réponse.
+         *
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        void terminer() throws IOException {
+            sortie().flush();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Accès aux services de la pizzeria par HTTP.
+ */
+package web;
+